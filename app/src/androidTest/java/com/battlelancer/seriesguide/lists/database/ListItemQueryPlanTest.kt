@@ -0,0 +1,121 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.lists.database
+
+import android.content.Context
+import android.os.SystemClock
+import androidx.room.Room
+import androidx.sqlite.db.SimpleSQLiteQuery
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.ListItemTypes
+import com.battlelancer.seriesguide.provider.SgRoomDatabase
+import com.battlelancer.seriesguide.shows.tools.ShowTestHelper
+import com.google.common.truth.Truth.assertThat
+import com.google.common.truth.Truth.assertWithMessage
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Checks that loading the items of a list with [SgListItemWithDetails.buildSelect] only looks up
+ * the items of that list, using a database with [LIST_COUNT] lists of [ITEMS_PER_LIST] items.
+ */
+@RunWith(AndroidJUnit4::class)
+class ListItemQueryPlanTest {
+
+    private lateinit var db: SgRoomDatabase
+
+    @Before
+    fun createSeededDb() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        db = Room
+            .inMemoryDatabaseBuilder(context, SgRoomDatabase::class.java)
+            .addCallback(SgRoomDatabase.SgRoomCallback(context))
+            .allowMainThreadQueries()
+            .build()
+        insertListsWithItems()
+        db.openHelper.writableDatabase.execSQL("ANALYZE")
+    }
+
+    @After
+    fun closeDb() {
+        db.close()
+    }
+
+    @Test
+    fun listItemsWithDetails_onlyItemsOfList() {
+        val listId = listId(LIST_COUNT / 2)
+        val query = SimpleSQLiteQuery(
+            SgListItemWithDetails.buildSelect(SgListItemWithDetails.SORT_TITLE),
+            arrayOf(listId)
+        )
+
+        val start = SystemClock.elapsedRealtime()
+        val items = runBlocking { db.sgListHelper().getListItemsWithDetails(query).first() }
+        println("Loaded ${items.size} list items in ${SystemClock.elapsedRealtime() - start} ms")
+
+        // Excludes movies that are not in the database
+        assertThat(items).hasSize(SHOWS_PER_LIST)
+        assertThat(items.map { it.listId }.distinct()).containsExactly(listId)
+        assertThat(items.map { it.type }.distinct()).containsExactly(ListItemTypes.TMDB_SHOW)
+        assertThat(items.all { it.showId != null && it.showId > 0 }).isTrue()
+    }
+
+    @Test
+    fun listItemsWithDetails_noFullListItemsScan() {
+        val sql = SgListItemWithDetails.buildSelect(SgListItemWithDetails.SORT_TITLE)
+        val query = SimpleSQLiteQuery("EXPLAIN QUERY PLAN $sql", arrayOf(listId(0)))
+        val details = db.openHelper.readableDatabase.query(query).use { cursor ->
+            val detailIndex = cursor.getColumnIndexOrThrow("detail")
+            buildList {
+                while (cursor.moveToNext()) add(cursor.getString(detailIndex))
+            }
+        }
+
+        assertWithMessage("Full table scans:\n" + details.joinToString("\n"))
+            .that(details.filter { FULL_SCAN.matches(it) })
+            .isEmpty()
+    }
+
+    private fun insertListsWithItems() {
+        db.runInTransaction {
+            for (showTmdbId in 1..SHOWS_PER_LIST) {
+                db.sgShow2Helper().insertShow(
+                    ShowTestHelper.showToInsert().copy(tmdbId = showTmdbId)
+                )
+            }
+            for (listNumber in 0 until LIST_COUNT) {
+                val listId = listId(listNumber)
+                db.sgListHelper().insertList(SgList(listId = listId, name = listId))
+                val showItems = (1..SHOWS_PER_LIST).map {
+                    SgListItem(it, ListItemTypes.TMDB_SHOW, listId)
+                }
+                // Movies are not added to the database
+                val movieItems = (1..ITEMS_PER_LIST - SHOWS_PER_LIST).map {
+                    SgListItem(it, ListItemTypes.TMDB_MOVIE, listId)
+                }
+                db.sgListHelper().insertListItems(showItems + movieItems)
+            }
+        }
+        assertThat(db.sgListHelper().getListsCount()).isEqualTo(LIST_COUNT)
+    }
+
+    private fun listId(number: Int) = "list-$number"
+
+    companion object {
+        private const val LIST_COUNT = 50
+        private const val ITEMS_PER_LIST = 500
+        private const val SHOWS_PER_LIST = 400
+
+        /**
+         * Matches plan details of a full scan without using an index, the format changed with
+         * SQLite 3.36 from `SCAN TABLE name` to `SCAN name`.
+         */
+        private val FULL_SCAN = Regex("^SCAN (TABLE )?listitems( AS \\w+)?$")
+    }
+}
@@ -463,6 +463,71 @@ class MigrationTest {
         }
     }
 
+    @Test
+    fun migrationFrom55To56_addsEpisodeIndexes() {
+        migrationTestHelper
+            .createDatabase(TEST_DB_NAME, SgRoomDatabase.VERSION_55_MOVIE_SLUG_DOUBLE_RATING)
+            .close()
+
+        // Also validates all indexes of the new schema exist.
+        val db = getMigratedDatabase(SgRoomDatabase.VERSION_56_EPISODE_INDEXES)
+        db.query("SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = 'sg_episode'")
+            .use { cursor ->
+                val indexNames = mutableListOf<String>()
+                while (cursor.moveToNext()) indexNames.add(cursor.getString(0))
+                assertThat(indexNames).containsAtLeast(
+                    "index_sg_episode_series_id_episode_season_number_episode_number",
+                    "index_sg_episode_series_id_episode_watched_episode_firstairedms_episode_season_number",
+                    "index_sg_episode_episode_firstairedms",
+                    "index_sg_episode_episode_tmdb_id"
+                )
+            }
+    }
+
+    @Test
+    fun migrationFrom56To57_searchTableUpdatedByTriggers() {
+        val dbOld = migrationTestHelper
+            .createDatabase(TEST_DB_NAME, SgRoomDatabase.VERSION_56_EPISODE_INDEXES)
+        val showId = RoomDatabaseTestHelper.insertShow49(SHOW49, dbOld)
+        val seasonId = RoomDatabaseTestHelper.insertSeason49(SEASON49, showId, dbOld)
+        RoomDatabaseTestHelper.insertEpisode49(EPISODE49, showId, seasonId, SEASON49.number, dbOld)
+        dbOld.close()
+
+        val db = getMigratedDatabase(SgRoomDatabase.VERSION_57_EPISODE_SEARCH_TRIGGERS)
+        // Existing episodes are added when migrating.
+        assertThat(countSearchResults(db, "Title")).isEqualTo(1)
+
+        // Changes to episodes are applied right away.
+        db.execSQL("UPDATE sg_episode SET episode_title = 'Changed'")
+        assertThat(countSearchResults(db, "Title")).isEqualTo(0)
+        assertThat(countSearchResults(db, "Changed")).isEqualTo(1)
+
+        db.execSQL("DELETE FROM sg_episode")
+        assertThat(countSearchResults(db, "Changed")).isEqualTo(0)
+    }
+
+    @Test
+    fun migrationFrom57To58_addsEpisodeContentHash() {
+        val dbOld = migrationTestHelper
+            .createDatabase(TEST_DB_NAME, SgRoomDatabase.VERSION_57_EPISODE_SEARCH_TRIGGERS)
+        val showId = RoomDatabaseTestHelper.insertShow49(SHOW49, dbOld)
+        val seasonId = RoomDatabaseTestHelper.insertSeason49(SEASON49, showId, dbOld)
+        RoomDatabaseTestHelper.insertEpisode49(EPISODE49, showId, seasonId, SEASON49.number, dbOld)
+        dbOld.close()
+
+        val db = getMigratedDatabase(SgRoomDatabase.VERSION_58_EPISODE_CONTENT_HASH)
+        assertTestData_sg_show_sg_season_sg_episode(showId, seasonId, db)
+        // Existing episodes have no content hash, so the next update writes them.
+        queryAndAssert(db, "SELECT episode_content_hash FROM sg_episode") {
+            assertThat(it.isNull(0)).isTrue()
+        }
+    }
+
+    private fun countSearchResults(db: SupportSQLiteDatabase, term: String): Int {
+        return db.query("SELECT docid FROM searchtable WHERE searchtable MATCH ?", arrayOf(term))
+            .use { it.count }
+    }
+
     private fun Cursor.getInt(columnName: String): Int? =
         getIntOrNull(getColumnIndexOrThrow(columnName))
 
@@ -532,7 +597,8 @@ class MigrationTest {
             SgRoomDatabase.MIGRATION_47_48,
             SgRoomDatabase.MIGRATION_48_49,
             SgRoomDatabase.MIGRATION_49_50, // not tested, just adds a new table
-            SgRoomDatabase.MIGRATION_54_55
+            SgRoomDatabase.MIGRATION_54_55,
+            SgRoomDatabase.MIGRATION_56_57
         )
     }
 
@@ -0,0 +1,403 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.shows.database
+
+import android.content.Context
+import androidx.lifecycle.LiveData
+import androidx.lifecycle.Observer
+import androidx.room.Room
+import androidx.sqlite.db.SimpleSQLiteQuery
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.battlelancer.seriesguide.provider.SgRoomDatabase
+import com.battlelancer.seriesguide.shows.episodes.EpisodeFlags
+import com.battlelancer.seriesguide.shows.tools.ShowTestHelper
+import com.battlelancer.seriesguide.shows.tools.ShowTestHelper.episodeToInsert
+import com.google.common.truth.Truth.assertThat
+import com.google.common.truth.Truth.assertWithMessage
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.lang.reflect.InvocationTargetException
+import java.lang.reflect.Method
+import java.lang.reflect.ParameterizedType
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.coroutines.Continuation
+import kotlin.coroutines.intrinsics.suspendCoroutineUninterceptedOrReturn
+import kotlin.reflect.KFunction2
+
+/**
+ * Runs `EXPLAIN QUERY PLAN` for the queries of [SgEpisode2Helper] and [SgShow2Helper] against a
+ * seeded and analyzed database and fails if any of them does a full scan of the episode or
+ * season table.
+ *
+ * As `@Query` is not retained at runtime, calls each DAO method that only takes simple parameters
+ * and captures the SQL it runs using a query callback. Read methods are found and called using
+ * reflection, write methods are called directly so renaming them breaks this test at compile time.
+ */
+@RunWith(AndroidJUnit4::class)
+class EpisodeQueryPlanTest {
+
+    private lateinit var db: SgRoomDatabase
+    private val capturedQueries = mutableListOf<Pair<String, List<Any?>>>()
+
+    @Before
+    fun createSeededDb() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        db = Room
+            .inMemoryDatabaseBuilder(context, SgRoomDatabase::class.java)
+            .addCallback(SgRoomDatabase.SgRoomCallback(context))
+            .setQueryCallback({ sqlQuery, bindArgs ->
+                synchronized(capturedQueries) { capturedQueries.add(sqlQuery to bindArgs) }
+            }, { it.run() })
+            .allowMainThreadQueries()
+            .build()
+        insertShowsWithEpisodes()
+        db.openHelper.writableDatabase.execSQL("ANALYZE")
+    }
+
+    @After
+    fun closeDb() {
+        db.close()
+    }
+
+    @Test
+    fun episodeHelper_noFullTableScans() {
+        val helper = db.sgEpisode2Helper()
+        val writes = episodeHelperWrites(helper)
+        assertNoFullTableScans(
+            helper,
+            SgEpisode2Helper::class.java,
+            writes,
+            allowed = setOf(
+                // Aggregate all episodes
+                "getStats",
+                "getStatsWithoutSpecials",
+                "countNotWatchedEpisodesOfShows",
+                // Only used once to migrate legacy data
+                "getEpisodeIdByTvdbId"
+            )
+        )
+    }
+
+    @Test
+    fun showHelper_noFullTableScans() {
+        val helper = db.sgShow2Helper()
+        assertNoFullTableScans(
+            helper,
+            SgShow2Helper::class.java,
+            showHelperWrites(helper),
+            allowed = setOf(
+                // Aggregate all episodes
+                "countShowsFinishedWatching",
+                "countShowsFinishedWatchingWithoutSpecials",
+                "getStats"
+            )
+        )
+    }
+
+    /**
+     * A write method to call directly, [name] is taken from a reference to it. Does not check
+     * the plan if not [checkPlan], like for writes that affect all rows.
+     */
+    private class Write(val name: String, val checkPlan: Boolean = true, val call: () -> Unit)
+
+    private fun episodeHelperWrites(h: SgEpisode2Helper): List<Write> = listOf(
+        Write(h::updateRating.name) { h.updateRating(SEED_ID, 1.0, 1) },
+        Write(h::updateUserRating.name) { h.updateUserRating(SEED_ID, 1) },
+        Write(h::updateUserRatingByTmdbId.name) { h.updateUserRatingByTmdbId(1, 1) },
+        Write(h::updateImdbId.name) { h.updateImdbId(SEED_ID, "value") },
+        Write(h::setNotWatchedAndRemovePlays.name) { h.setNotWatchedAndRemovePlays(SEED_ID) },
+        Write(h::setWatchedAndAddPlay.name) { h.setWatchedAndAddPlay(SEED_ID) },
+        Write(h::setSkipped.name) { h.setSkipped(SEED_ID) },
+        Write(h::setWatchedUpToAndAddPlay.name) { h.setWatchedUpToAndAddPlay(SEED_ID, SEED_ID, 1) },
+        Write(h::setSeasonNotWatchedAndRemovePlays.name) {
+            h.setSeasonNotWatchedAndRemovePlays(SEED_ID)
+        },
+        Write(h::setSeasonNotWatchedExcludeSkipped.name) {
+            h.setSeasonNotWatchedExcludeSkipped(SEED_ID)
+        },
+        Write(h::setSeasonsNotWatchedExcludeSkipped.name) {
+            h.setSeasonsNotWatchedExcludeSkipped(listOf(SEED_ID))
+        },
+        Write(h::setShowNotWatchedExcludeSkipped.name) {
+            h.setShowNotWatchedExcludeSkipped(SEED_ID)
+        },
+        Write(h::setShowsNotWatchedExcludeSkipped.name) {
+            h.setShowsNotWatchedExcludeSkipped(listOf(SEED_ID))
+        },
+        Write(h::setSeasonWatched.name) { h.setSeasonWatched(SEED_ID) },
+        Write(h::setSeasonWatchedAndAddPlay.name) { h.setSeasonWatchedAndAddPlay(SEED_ID) },
+        Write(h::setSeasonSkipped.name) { h.setSeasonSkipped(SEED_ID) },
+        Write(h::setShowNotWatchedAndRemovePlays.name) {
+            h.setShowNotWatchedAndRemovePlays(SEED_ID)
+        },
+        Write(h::setShowWatchedAndAddPlay.name) { h.setShowWatchedAndAddPlay(SEED_ID, SEED_ID) },
+        Write(h::updateCollected.name) { h.updateCollected(SEED_ID, true) },
+        Write(h::updateCollectedOfSeason.name) { h.updateCollectedOfSeason(SEED_ID, true) },
+        Write(h::updateCollectedOfSeasons.name) {
+            h.updateCollectedOfSeasons(listOf(SEED_ID), true)
+        },
+        Write(h::updateCollectedOfShow.name) { h.updateCollectedOfShow(SEED_ID, true) },
+        Write(h::updateCollectedOfShows.name) { h.updateCollectedOfShows(listOf(SEED_ID), true) },
+        Write(h::updateCollectedOfShowExcludeSpecials.name) {
+            h.updateCollectedOfShowExcludeSpecials(SEED_ID, true)
+        },
+        Write(h::updateWatchedByNumber.name) { h.updateWatchedByNumber(SEED_ID, 1, 1, 1, 1) },
+        Write(h::updateCollectedByNumber.name) { h.updateCollectedByNumber(SEED_ID, 1, 1, true) },
+        Write(h::updateWatchedByNumbers.name) {
+            h.updateWatchedByNumbers(SEED_ID, 1, listOf(1, 2), 1, 1)
+        },
+        Write(h::updateCollectedByNumbers.name) {
+            h.updateCollectedByNumbers(SEED_ID, 1, listOf(1, 2), true)
+        },
+        // Affects all episodes
+        Write(h::resetLastUpdatedForAll.name, checkPlan = false) { h.resetLastUpdatedForAll() },
+        Write(h::resetLastUpdatedForShow.name) { h.resetLastUpdatedForShow(SEED_ID) },
+        // Delete last, so the other writes still find episodes.
+        Write(h::deleteEpisode.name) { h.deleteEpisode(SEED_ID) },
+        Write(h::deleteEpisodes.name) { h.deleteEpisodes(listOf(SEED_ID)) },
+        Write(h::deleteEpisodesWithoutTmdbId.name) { h.deleteEpisodesWithoutTmdbId(SEED_ID) },
+        Write(h::deleteEpisodesOfSeason.name) { h.deleteEpisodesOfSeason(SEED_ID) },
+        Write(h::deleteEpisodesOfSeasons.name) { h.deleteEpisodesOfSeasons(listOf(SEED_ID)) },
+        Write(h::deleteEpisodesOfShow.name) { runBlocking { h.deleteEpisodesOfShow(SEED_ID) } },
+        // Affects all episodes
+        Write(h::deleteAllEpisodes.name, checkPlan = false) { h.deleteAllEpisodes() }
+    )
+
+    private fun showHelperWrites(h: SgShow2Helper): List<Write> {
+        // Overloaded, pick the one taking simple parameters.
+        val updateLastWatchedMsIfLater: KFunction2<Long, Long, Unit> =
+            h::updateLastWatchedMsIfLater
+        return listOf(
+            Write(h::updateMissingPosterByTmdbId.name) {
+                h.updateMissingPosterByTmdbId(1, "value")
+            },
+            Write(h::setShowFavorite.name) { h.setShowFavorite(SEED_ID, true) },
+            Write(h::setShowNotify.name) { h.setShowNotify(SEED_ID, true) },
+            Write(h::setShowHidden.name) { h.setShowHidden(SEED_ID, true) },
+            Write(h::makeHiddenVisible.name) { h.makeHiddenVisible() },
+            Write(h::updateCustomReleaseTime.name) {
+                h.updateCustomReleaseTime(SEED_ID, 1, 1, "value")
+            },
+            Write(h::updateLanguage.name) { h.updateLanguage(SEED_ID, "value") },
+            Write(h::updateTmdbId.name) { h.updateTmdbId(SEED_ID, 1) },
+            Write(h::updateUserNote.name) { h.updateUserNote(SEED_ID, "value", SEED_ID) },
+            Write(h::setHexagonMergeNotCompletedForAll.name) {
+                h.setHexagonMergeNotCompletedForAll()
+            },
+            Write(h::setHexagonMergeNotCompleted.name) { h.setHexagonMergeNotCompleted(SEED_ID) },
+            Write(h::setHexagonMergeCompleted.name) { h.setHexagonMergeCompleted(SEED_ID) },
+            Write(updateLastWatchedMsIfLater.name) {
+                h.updateLastWatchedMsIfLater(SEED_ID, SEED_ID)
+            },
+            Write(h::updateLastWatchedEpisodeId.name) {
+                h.updateLastWatchedEpisodeId(SEED_ID, SEED_ID)
+            },
+            Write(h::updateLastWatchedEpisodeIdAndTime.name) {
+                h.updateLastWatchedEpisodeIdAndTime(SEED_ID, SEED_ID, true)
+            },
+            Write(h::setLastUpdated.name) { h.setLastUpdated(SEED_ID, SEED_ID) },
+            Write(h::resetLastUpdated.name) { runBlocking { h.resetLastUpdated() } },
+            Write(h::updateUserRating.name) { h.updateUserRating(SEED_ID, 1) },
+            Write(h::updateUserRatingByTmdbId.name) { h.updateUserRatingByTmdbId(1, 1) },
+            Write(h::migrateCanceledShowStatus.name) { h.migrateCanceledShowStatus() },
+            // Delete last, so the other writes still find shows.
+            Write(h::deleteShow.name) { runBlocking { h.deleteShow(SEED_ID) } },
+            Write(h::deleteAllShows.name) { h.deleteAllShows() }
+        )
+    }
+
+    /**
+     * Calls the read methods of [daoClass] using reflection, then all [writes], and checks the
+     * plans of their statements unless the method is [allowed] to do a full table scan.
+     */
+    private fun assertNoFullTableScans(
+        dao: Any,
+        daoClass: Class<*>,
+        writes: List<Write>,
+        allowed: Set<String>
+    ) {
+        val fullScans = mutableListOf<String>()
+        val notCalledDirectly = mutableListOf<String>()
+        val writeNames = writes.mapTo(HashSet()) { it.name }
+        var checkedMethods = 0
+
+        fun check(name: String, queries: List<Pair<String, List<Any?>>>) {
+            assertWithMessage("No queries captured for $name").that(queries).isNotEmpty()
+            checkedMethods++
+            for ((sql, bindArgs) in queries) {
+                for (detail in explainQueryPlan(sql, bindArgs)) {
+                    if (FULL_SCAN.matches(detail)) {
+                        fullScans.add("$name: $detail\n  $sql")
+                    }
+                }
+            }
+        }
+
+        for (method in daoClass.methods.sortedBy { it.name }) {
+            if (method.name in writeNames) continue
+            val args = argumentsFor(method) ?: continue
+            if (method.name in allowed) continue
+
+            val queries = captureQueries { invoke(dao, method, args) }
+            if (queries.any { (sql, _) -> isWriteStatement(sql) }) {
+                notCalledDirectly.add(method.name)
+            }
+            check(method.name, queries)
+        }
+        for (write in writes) {
+            val queries = captureQueries {
+                try {
+                    write.call()
+                } catch (e: Exception) {
+                    // Only the statements matter, not if there are rows for the arguments.
+                    println("${write.name} threw $e")
+                }
+            }
+            if (write.checkPlan) check(write.name, queries)
+        }
+        println("Checked query plans of $checkedMethods methods of ${daoClass.simpleName}")
+        assertWithMessage("Write methods to call directly").that(notCalledDirectly).isEmpty()
+        assertWithMessage("Full table scans:\n" + fullScans.joinToString("\n"))
+            .that(fullScans).isEmpty()
+    }
+
+    private fun captureQueries(block: () -> Unit): List<Pair<String, List<Any?>>> {
+        synchronized(capturedQueries) { capturedQueries.clear() }
+        block()
+        return synchronized(capturedQueries) { capturedQueries.toList() }
+            .filter { (sql, _) -> isCheckedStatement(sql) }
+    }
+
+    /**
+     * Returns arguments for [method], or null if it has parameters this can not provide, like
+     * entities or raw queries.
+     */
+    private fun argumentsFor(method: Method): Array<Any?>? {
+        val isSuspend = method.parameterTypes.lastOrNull() == Continuation::class.java
+        val parameterCount = method.parameterTypes.size - if (isSuspend) 1 else 0
+        return Array(parameterCount) { index ->
+            when (val type = method.genericParameterTypes[index]) {
+                Long::class.javaPrimitiveType, Long::class.javaObjectType -> SEED_ID
+                Int::class.javaPrimitiveType, Int::class.javaObjectType -> 1
+                Boolean::class.javaPrimitiveType, Boolean::class.javaObjectType -> true
+                Double::class.javaPrimitiveType, Double::class.javaObjectType -> 1.0
+                String::class.java -> "value"
+                is ParameterizedType -> when {
+                    type.rawType != List::class.java -> return null
+                    type.actualTypeArguments[0] == Long::class.javaObjectType -> listOf(SEED_ID)
+                    type.actualTypeArguments[0] == Int::class.javaObjectType -> listOf(1, 2)
+                    else -> return null
+                }
+
+                else -> return null
+            }
+        }
+    }
+
+    private fun invoke(dao: Any, method: Method, args: Array<Any?>) {
+        val isSuspend = method.parameterTypes.lastOrNull() == Continuation::class.java
+        try {
+            val result = if (isSuspend) {
+                runBlocking {
+                    suspendCoroutineUninterceptedOrReturn<Any?> { continuation ->
+                        method.invoke(dao, *args, continuation)
+                    }
+                }
+            } else {
+                method.invoke(dao, *args)
+            }
+            if (result is LiveData<*>) awaitValue(result)
+        } catch (e: Exception) {
+            // Only the statements matter, not if there are results for the arguments.
+            val cause = if (e is InvocationTargetException) e.targetException else e
+            println("${method.name} threw $cause")
+        }
+    }
+
+    /**
+     * Observes [liveData] until it loaded its first value so its query runs.
+     */
+    private fun awaitValue(liveData: LiveData<*>) {
+        val latch = CountDownLatch(1)
+        val observer = Observer<Any?> { latch.countDown() }
+        val instrumentation = InstrumentationRegistry.getInstrumentation()
+        instrumentation.runOnMainSync { liveData.observeForever(observer) }
+        latch.await(5, TimeUnit.SECONDS)
+        instrumentation.runOnMainSync { liveData.removeObserver(observer) }
+    }
+
+    private fun isWriteStatement(sql: String): Boolean {
+        val statement = sql.trimStart().uppercase()
+        return statement.startsWith("UPDATE") || statement.startsWith("DELETE")
+    }
+
+    private fun isCheckedStatement(sql: String): Boolean {
+        val statement = sql.trimStart().uppercase()
+        return (statement.startsWith("SELECT") || statement.startsWith("UPDATE")
+                || statement.startsWith("DELETE") || statement.startsWith("WITH"))
+                && !sql.contains("room_table_modification_log")
+    }
+
+    private fun explainQueryPlan(sql: String, bindArgs: List<Any?>): List<String> {
+        val query = SimpleSQLiteQuery("EXPLAIN QUERY PLAN $sql", bindArgs.toTypedArray())
+        return db.openHelper.readableDatabase.query(query).use { cursor ->
+            val detailIndex = cursor.getColumnIndexOrThrow("detail")
+            buildList {
+                while (cursor.moveToNext()) add(cursor.getString(detailIndex))
+            }
+        }
+    }
+
+    private fun insertShowsWithEpisodes() {
+        val releaseMs = System.currentTimeMillis()
+        var episodeTmdbId = 1
+        db.runInTransaction {
+            for (showNumber in 1..SHOW_COUNT) {
+                val showId = db.sgShow2Helper().insertShow(
+                    ShowTestHelper.showToInsert().copy(tmdbId = showNumber)
+                )
+                for (seasonNumber in 0 until SEASONS_PER_SHOW) {
+                    val season = ShowTestHelper.seasonToInsert(showId, seasonNumber)
+                    val seasonId = db.sgSeason2Helper().insertSeason(season)
+                    val episodes = (1..EPISODES_PER_SEASON).map { number ->
+                        season.episodeToInsert(
+                            seasonId,
+                            number,
+                            releaseMs + (seasonNumber * EPISODES_PER_SEASON + number) * WEEK_MS
+                        ).copy(
+                            tmdbId = episodeTmdbId++,
+                            watched = if (number % 2 == 0) {
+                                EpisodeFlags.WATCHED
+                            } else {
+                                EpisodeFlags.UNWATCHED
+                            }
+                        )
+                    }
+                    db.sgEpisode2Helper().insertEpisodes(episodes)
+                }
+            }
+        }
+        assertThat(db.sgShow2Helper().getShowIdsLong()).hasSize(SHOW_COUNT)
+    }
+
+    companion object {
+        private const val SHOW_COUNT = 40
+        private const val SEASONS_PER_SHOW = 6
+        private const val EPISODES_PER_SEASON = 20
+        private const val WEEK_MS = 7 * 24 * 60 * 60 * 1000L
+        private const val SEED_ID = 1L
+
+        /**
+         * Matches plan details of a full scan without using an index, the format changed with
+         * SQLite 3.36 from `SCAN TABLE name` to `SCAN name`.
+         */
+        private val FULL_SCAN = Regex("^SCAN (TABLE )?(sg_episode|sg_season)( AS \\w+)?$")
+    }
+}
@@ -0,0 +1,167 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2025 Uwe Trottmann
+
+package com.battlelancer.seriesguide.shows.database
+
+import android.content.Context
+import android.os.SystemClock
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.battlelancer.seriesguide.provider.SgRoomDatabase
+import com.battlelancer.seriesguide.shows.episodes.EpisodeFlags
+import com.battlelancer.seriesguide.shows.tools.ShowTestHelper
+import com.battlelancer.seriesguide.shows.tools.ShowTestHelper.episodeToInsert
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Tests [SgEpisode2Helper.updateWatchedAndCollectedByNumber] and compares its performance to
+ * updating one episode at a time.
+ */
+@RunWith(AndroidJUnit4::class)
+class SgEpisode2HelperFlagsTest {
+
+    private lateinit var db: SgRoomDatabase
+
+    @Before
+    fun switchToInMemoryDb() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        SgRoomDatabase.switchToInMemory(context)
+        db = SgRoomDatabase.getInstance(context)
+    }
+
+    @After
+    fun closeDb() {
+        db.close()
+    }
+
+    @Test
+    fun updateWatchedAndCollectedByNumber() {
+        val showId = insertShowWithEpisodes(episodeCount = 2 * EPISODES_PER_SEASON)
+        val episodeHelper = db.sgEpisode2Helper()
+
+        episodeHelper.updateWatchedAndCollectedByNumber(
+            listOf(
+                SgEpisode2WatchedUpdateByNumber(showId, 1, 1, EpisodeFlags.WATCHED, 1),
+                SgEpisode2WatchedUpdateByNumber(showId, 2, 1, EpisodeFlags.WATCHED, 2),
+                SgEpisode2WatchedUpdateByNumber(showId, 3, 1, EpisodeFlags.SKIPPED, 0),
+                // Last update for an episode wins
+                SgEpisode2WatchedUpdateByNumber(showId, 4, 1, EpisodeFlags.WATCHED, 1),
+                SgEpisode2WatchedUpdateByNumber(showId, 4, 1, EpisodeFlags.UNWATCHED, 0),
+                // Other season
+                SgEpisode2WatchedUpdateByNumber(showId, 1, 2, EpisodeFlags.WATCHED, 1),
+            ),
+            listOf(
+                SgEpisode2CollectedUpdateByNumber(showId, 1, 1, true),
+                SgEpisode2CollectedUpdateByNumber(showId, 5, 1, true),
+                SgEpisode2CollectedUpdateByNumber(showId, 5, 1, false),
+            )
+        )
+
+        assertEpisode(showId, 1, 1, EpisodeFlags.WATCHED, 1, true)
+        assertEpisode(showId, 1, 2, EpisodeFlags.WATCHED, 2, false)
+        assertEpisode(showId, 1, 3, EpisodeFlags.SKIPPED, 0, false)
+        assertEpisode(showId, 1, 4, EpisodeFlags.UNWATCHED, 0, false)
+        assertEpisode(showId, 1, 5, EpisodeFlags.UNWATCHED, 0, false)
+        assertEpisode(showId, 1, 6, EpisodeFlags.UNWATCHED, 0, false)
+        assertEpisode(showId, 2, 1, EpisodeFlags.WATCHED, 1, false)
+        assertEpisode(showId, 2, 2, EpisodeFlags.UNWATCHED, 0, false)
+    }
+
+    private fun assertEpisode(
+        showId: Long,
+        season: Int,
+        number: Int,
+        watchedExpected: Int,
+        playsExpected: Int,
+        collectedExpected: Boolean
+    ) {
+        val episodeHelper = db.sgEpisode2Helper()
+        val episode = episodeHelper
+            .getEpisode(episodeHelper.getEpisodeIdByNumber(showId, season, number))!!
+        assertThat(episode.watched).isEqualTo(watchedExpected)
+        assertThat(episode.plays).isEqualTo(playsExpected)
+        assertThat(episode.collected).isEqualTo(collectedExpected)
+    }
+
+    /**
+     * Not a precise benchmark, but prints how long applying flags for all episodes of a show takes
+     * one by one compared to [SgEpisode2Helper.updateWatchedAndCollectedByNumber].
+     */
+    @Test
+    fun benchmarkUpdateWatchedAndCollectedByNumber() {
+        for (episodeCount in listOf(1_000, 10_000, 100_000)) {
+            val showId = insertShowWithEpisodes(episodeCount)
+            val episodeHelper = db.sgEpisode2Helper()
+
+            val watched = ArrayList<SgEpisode2WatchedUpdateByNumber>(episodeCount)
+            val collected = ArrayList<SgEpisode2CollectedUpdateByNumber>(episodeCount)
+            for (i in 0 until episodeCount) {
+                val season = i / EPISODES_PER_SEASON + 1
+                val number = i % EPISODES_PER_SEASON + 1
+                watched.add(
+                    SgEpisode2WatchedUpdateByNumber(showId, number, season, EpisodeFlags.WATCHED, 1)
+                )
+                collected.add(SgEpisode2CollectedUpdateByNumber(showId, number, season, true))
+            }
+
+            val startOneByOne = SystemClock.elapsedRealtime()
+            db.runInTransaction {
+                for (episode in watched) {
+                    episodeHelper.updateWatchedByNumber(
+                        episode.showId,
+                        episode.seasonNumber,
+                        episode.episodeNumber,
+                        episode.watched,
+                        episode.plays
+                    )
+                }
+                for (episode in collected) {
+                    episodeHelper.updateCollectedByNumber(
+                        episode.showId,
+                        episode.seasonNumber,
+                        episode.episodeNumber,
+                        episode.collected
+                    )
+                }
+            }
+            val durationOneByOne = SystemClock.elapsedRealtime() - startOneByOne
+
+            // Reset flags
+            episodeHelper.setShowNotWatchedAndRemovePlays(showId)
+            episodeHelper.updateCollectedOfShow(showId, false)
+
+            val startGrouped = SystemClock.elapsedRealtime()
+            episodeHelper.updateWatchedAndCollectedByNumber(watched, collected)
+            val durationGrouped = SystemClock.elapsedRealtime() - startGrouped
+
+            println("$episodeCount episodes: one by one $durationOneByOne ms, grouped $durationGrouped ms")
+            assertThat(episodeHelper.countWatchedEpisodesOfShow(showId)).isEqualTo(episodeCount)
+
+            db.clearAllTables()
+        }
+    }
+
+    private fun insertShowWithEpisodes(episodeCount: Int): Long {
+        val showId = db.sgShow2Helper().insertShow(ShowTestHelper.showToInsert())
+        val seasonCount = (episodeCount + EPISODES_PER_SEASON - 1) / EPISODES_PER_SEASON
+        db.runInTransaction {
+            for (seasonNumber in 1..seasonCount) {
+                val season = ShowTestHelper.seasonToInsert(showId, seasonNumber)
+                val seasonId = db.sgSeason2Helper().insertSeason(season)
+                val firstNumber = (seasonNumber - 1) * EPISODES_PER_SEASON
+                val episodes = (1..minOf(EPISODES_PER_SEASON, episodeCount - firstNumber))
+                    .map { season.episodeToInsert(seasonId, it, 0) }
+                db.sgEpisode2Helper().insertEpisodes(episodes)
+            }
+        }
+        return showId
+    }
+
+    companion object {
+        private const val EPISODES_PER_SEASON = 50
+    }
+}
@@ -155,4 +155,70 @@ class NextEpisodeUpdaterTest {
         assertThat(showWithNext.unwatchedCount).isEqualTo(1)
     }
 
-}
\ No newline at end of file
+    @Test
+    fun updateForShows_allShows_updatesChangedShows() {
+        val showHelper = db.sgShow2Helper()
+        val episodeHelper = db.sgEpisode2Helper()
+
+        // Show where all episodes are watched.
+        val showWatchedId = showHelper.insertShow(showToInsert())
+        val seasonWatched = seasonToInsert(showWatchedId, 1)
+        val seasonWatchedId = db.sgSeason2Helper().insertSeason(seasonWatched)
+        episodeHelper.insertEpisode(
+            seasonWatched.episodeToInsert(seasonWatchedId, 1, 11000)
+                .copy(watched = EpisodeFlags.WATCHED, plays = 1)
+        )
+
+        // Show where no episodes are watched.
+        val showNotWatchedId = showHelper.insertShow(showToInsert().copy(tmdbId = 5160))
+        val seasonNotWatched = seasonToInsert(showNotWatchedId, 1)
+        val seasonNotWatchedId = db.sgSeason2Helper().insertSeason(seasonNotWatched)
+        val episode1Id = episodeHelper.insertEpisode(
+            seasonNotWatched.episodeToInsert(seasonNotWatchedId, 1, 11000)
+        )
+        episodeHelper.insertEpisode(
+            seasonNotWatched.episodeToInsert(seasonNotWatchedId, 2, 12000)
+        )
+
+        val nextEpisodeUpdater = NextEpisodeUpdater(context, showHelper, episodeHelper)
+        nextEpisodeUpdater.updateForShows(null)
+
+        val showWatched = showHelper.getShow(showWatchedId)!!
+        assertThat(showWatched.nextEpisode).isEmpty()
+        assertThat(showWatched.unwatchedCount).isEqualTo(0)
+        val showNotWatched = showHelper.getShow(showNotWatchedId)!!
+        assertThat(showNotWatched.nextEpisode).isEqualTo(episode1Id.toString())
+        assertThat(showNotWatched.unwatchedCount).isEqualTo(2)
+
+        // Watch first episode, only the changed show should change.
+        episodeHelper.setWatchedAndAddPlay(episode1Id)
+        nextEpisodeUpdater.updateForShows(null)
+
+        assertThat(showHelper.getShow(showWatchedId)).isEqualTo(showWatched)
+        assertThat(showHelper.getShow(showNotWatchedId)!!.unwatchedCount).isEqualTo(1)
+    }
+
+    @Test
+    fun updateForShows_allShows_replacesNullValues() {
+        val showHelper = db.sgShow2Helper()
+        val episodeHelper = db.sgEpisode2Helper()
+
+        // Show without episodes, so no next episode, but next episode values are NULL.
+        val showId = showHelper.insertShow(
+            showToInsert().copy(
+                nextEpisode = null,
+                nextAirdateMs = null,
+                nextText = null,
+                unwatchedCount = 0
+            )
+        )
+
+        NextEpisodeUpdater(context, showHelper, episodeHelper).updateForShows(null)
+
+        val show = showHelper.getShow(showId)!!
+        assertThat(show.nextEpisode).isEmpty()
+        assertThat(show.nextAirdateMs).isEqualTo(NextEpisodeUpdater.UNKNOWN_NEXT_RELEASE_DATE)
+        assertThat(show.nextText).isEmpty()
+    }
+
+}
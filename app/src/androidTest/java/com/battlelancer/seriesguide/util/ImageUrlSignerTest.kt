@@ -0,0 +1,98 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.util
+
+import android.os.SystemClock
+import android.util.Base64
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import javax.crypto.Mac
+import javax.crypto.spec.SecretKeySpec
+
+/**
+ * Tests [ImageUrlSigner] and compares its throughput to signing with a new [Mac] for each URL
+ * under a lock, like before.
+ */
+class ImageUrlSignerTest {
+
+    private val signer = ImageUrlSigner(CACHE_URL, SECRET)
+
+    @Test
+    fun buildSignedUrl() {
+        val imageUrl = "https://example.com/poster.jpg"
+
+        val signedUrl = signer.buildSignedUrl(imageUrl)
+
+        assertThat(signedUrl).isEqualTo("$CACHE_URL/s${signWithNewMac(imageUrl)}/$imageUrl")
+        // Cached URL is identical
+        assertThat(signer.buildSignedUrl(imageUrl)).isSameInstanceAs(signedUrl)
+    }
+
+    @Test
+    fun sign_fromMultipleThreads() {
+        val urls = (1..100).map { "https://example.com/$it.jpg" }
+        val executor = Executors.newFixedThreadPool(THREADS)
+        val results = urls.map { url -> executor.submit<String?> { signer.sign(url) } }
+        executor.shutdown()
+
+        results.forEachIndexed { index, result ->
+            assertThat(result.get()).isEqualTo(signWithNewMac(urls[index]))
+        }
+    }
+
+    /**
+     * Not a precise benchmark, but prints how many URLs per second are signed with the previous
+     * approach, with [ImageUrlSigner.sign] and with [ImageUrlSigner.buildSignedUrl] with all URLs
+     * cached.
+     */
+    @Test
+    fun benchmarkSigning() {
+        val urls = (1..URL_COUNT).map { "https://example.com/posters/$it.jpg" }
+        val lock = Any()
+
+        val perSecondPrevious = measureThroughput(urls) { url ->
+            synchronized(lock) { signWithNewMac(url) }
+        }
+        val perSecondThreadLocal = measureThroughput(urls) { url -> signer.sign(url) }
+        urls.forEach { signer.buildSignedUrl(it) }
+        val perSecondCached = measureThroughput(urls) { url -> signer.buildSignedUrl(url) }
+
+        println(
+            "Signed URLs per second with $THREADS threads: new Mac with lock $perSecondPrevious," +
+                    " thread local Mac $perSecondThreadLocal, cached $perSecondCached"
+        )
+    }
+
+    private fun measureThroughput(urls: List<String>, sign: (String) -> String?): Long {
+        val executor = Executors.newFixedThreadPool(THREADS)
+        val start = SystemClock.elapsedRealtime()
+        for (thread in 0 until THREADS) {
+            executor.execute {
+                for (url in urls) sign(url)
+            }
+        }
+        executor.shutdown()
+        executor.awaitTermination(1, TimeUnit.MINUTES)
+        val durationMs = (SystemClock.elapsedRealtime() - start).coerceAtLeast(1)
+        return THREADS * urls.size * 1000L / durationMs
+    }
+
+    private fun signWithNewMac(data: String): String {
+        val mac = Mac.getInstance("HmacSHA256")
+        mac.init(SecretKeySpec(SECRET.toByteArray(), "HmacSHA256"))
+        return Base64.encodeToString(
+            mac.doFinal(data.toByteArray()),
+            Base64.NO_WRAP or Base64.URL_SAFE
+        )
+    }
+
+    companion object {
+        private const val CACHE_URL = "https://cache.example.com"
+        private const val SECRET = "test-secret"
+        private const val THREADS = 4
+        private const val URL_COUNT = 2000
+    }
+}
@@ -25,7 +25,10 @@ import com.battlelancer.seriesguide.notifications.NotificationService
 import com.battlelancer.seriesguide.settings.AppSettings
 import com.battlelancer.seriesguide.settings.DisplaySettings
 import com.battlelancer.seriesguide.util.Errors
+import com.battlelancer.seriesguide.util.LargeDataConnectionState
 import com.battlelancer.seriesguide.util.PackageTools
+import com.battlelancer.seriesguide.util.PosterCache
+import com.battlelancer.seriesguide.util.PosterCacheInterceptor
 import com.battlelancer.seriesguide.util.SgPicassoRequestHandler
 import com.battlelancer.seriesguide.util.ThemeUtils
 import com.google.android.gms.common.GooglePlayServicesNotAvailableException
@@ -221,6 +224,7 @@ class SgApp : Application() {
     private fun initializePicasso() {
         val builder = OkHttpClient.Builder()
             .cache(HttpClientModule.getImageDiskCache(this))
+            .addInterceptor(PosterCacheInterceptor(PosterCache.getInstance(this)))
             .trustLetsEncryptAndroidNOrLower()
         val downloader = OkHttp3Downloader(builder.build())
         val picasso = Picasso.Builder(this)
@@ -232,6 +236,8 @@ class SgApp : Application() {
         } catch (ignored: IllegalStateException) {
             // instance was already set
         }
+        // Know if images may be downloaded before loading the first one.
+        LargeDataConnectionState.start(this)
     }
 
     @RequiresApi(api = Build.VERSION_CODES.O)
@@ -0,0 +1,257 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.appwidget
+
+import android.content.Context
+import android.text.format.DateUtils
+import androidx.sqlite.db.SimpleSQLiteQuery
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.SgShow2Columns
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables
+import com.battlelancer.seriesguide.provider.SgRoomDatabase
+import com.battlelancer.seriesguide.settings.AdvancedSettings
+import com.battlelancer.seriesguide.settings.DisplaySettings
+import com.battlelancer.seriesguide.settings.WidgetSettings
+import com.battlelancer.seriesguide.settings.WidgetSettings.WidgetTheme
+import com.battlelancer.seriesguide.shows.ShowsDistillationSettings
+import com.battlelancer.seriesguide.shows.database.SgEpisode2WithShow
+import com.battlelancer.seriesguide.shows.episodes.EpisodeFlags
+import com.battlelancer.seriesguide.shows.episodes.EpisodeTools
+import com.battlelancer.seriesguide.util.ImageTools
+import com.battlelancer.seriesguide.util.TextTools
+import com.battlelancer.seriesguide.util.TimeTools
+import timber.log.Timber
+import java.util.Date
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Values displayed by a list widget item, already formatted.
+ */
+data class ListWidgetItem(
+    val episodeId: Long?,
+    val episodeDescription: String,
+    val releaseTime: String,
+    val networkAndTime: String,
+    val showTitle: String,
+    val posterUrl: String?,
+    val episodeFlag: Int
+)
+
+/**
+ * Everything a list widget displays: its settings and items.
+ */
+data class ListWidgetSnapshot(
+    val widgetType: Int,
+    val theme: WidgetTheme,
+    val isLargeFont: Boolean,
+    val isHideWatchButton: Boolean,
+    val items: List<ListWidgetItem>
+)
+
+/**
+ * Loads and keeps the [ListWidgetSnapshot] of each list widget.
+ *
+ * [refresh] loads a new snapshot and compares it to the kept one, so [ListWidgetProvider] only
+ * has to update widgets where something displayed has changed (like the relative release time
+ * text). [get] returns the kept snapshot for [ListWidgetRemoteViewsFactory], so it does not
+ * have to load it again.
+ */
+object ListWidgetData {
+
+    private val snapshots = ConcurrentHashMap<Int, ListWidgetSnapshot>()
+
+    /**
+     * Returns the kept snapshot, or loads it. Must not be called on the main thread.
+     */
+    fun get(context: Context, appWidgetId: Int): ListWidgetSnapshot {
+        snapshots[appWidgetId]?.let { return it }
+        return load(context, appWidgetId).also { snapshots[appWidgetId] = it }
+    }
+
+    /**
+     * Loads a new snapshot and returns if it is different from the kept one, or if posters it
+     * displays are not loaded (like if loading them failed before), so they are loaded again.
+     * Must not be called on the main thread.
+     */
+    fun refresh(context: Context, appWidgetId: Int): Boolean {
+        val snapshot = load(context, appWidgetId)
+        val previous = snapshots.put(appWidgetId, snapshot)
+        return snapshot != previous
+                || ListWidgetPosterCache.isMissingAny(snapshot.items, snapshot.isLargeFont)
+    }
+
+    /**
+     * Drops the kept snapshot, for example if widget settings have changed.
+     */
+    fun invalidate(appWidgetId: Int) {
+        snapshots.remove(appWidgetId)
+    }
+
+    private fun load(context: Context, appWidgetId: Int): ListWidgetSnapshot {
+        Timber.d("load for appWidgetId=%d", appWidgetId)
+        val widgetType = WidgetSettings.getWidgetListType(context, appWidgetId)
+        val isLargeFont = WidgetSettings.isLargeFont(context, appWidgetId)
+        val items = when (widgetType) {
+            WidgetSettings.Type.SHOWS -> getShows(context, appWidgetId)
+            WidgetSettings.Type.RECENT ->
+                getUpcomingElseRecentEpisodes(context, appWidgetId, isUpcomingElseRecent = false)
+
+            WidgetSettings.Type.UPCOMING ->
+                getUpcomingElseRecentEpisodes(context, appWidgetId, isUpcomingElseRecent = true)
+
+            else -> throw UnsupportedOperationException("Widget type not supported")
+        }
+        return ListWidgetSnapshot(
+            widgetType,
+            WidgetSettings.getTheme(context, appWidgetId),
+            isLargeFont,
+            WidgetSettings.isHideWatchButton(context, appWidgetId),
+            items
+        )
+    }
+
+    private fun getShows(context: Context, appWidgetId: Int): List<ListWidgetItem> {
+        // Exclude hidden and without next episode.
+        val selection = StringBuilder(SgShow2Columns.SELECTION_NO_HIDDEN)
+            .append(" AND ").append(SgShow2Columns.SELECTION_HAS_NEXT_EPISODE)
+
+        // Optionally only favorites.
+        if (WidgetSettings.isOnlyFavoriteShows(context, appWidgetId)) {
+            selection.append(" AND ").append(SgShow2Columns.SELECTION_FAVORITES)
+        }
+
+        // If next episode is in the future and upcoming range is not all,
+        // exclude if too far into the future.
+        val timeInAnHour = System.currentTimeMillis() + DateUtils.HOUR_IN_MILLIS
+        val upcomingLimitInDays = AdvancedSettings.getUpcomingLimitInDays(context)
+        if (upcomingLimitInDays != -1) {
+            val maxReleaseDate =
+                (timeInAnHour + upcomingLimitInDays * DateUtils.DAY_IN_MILLIS)
+            selection.append(" AND ")
+                .append(SgShow2Columns.NEXTAIRDATEMS)
+                .append("<=")
+                .append(maxReleaseDate)
+        }
+
+        // Sort based on user preference.
+        val orderClause = ShowsDistillationSettings.getSortQuery2(
+            WidgetSettings.getWidgetShowsSortOrderId(context, appWidgetId),
+            false,
+            DisplaySettings.isSortOrderIgnoringArticles(context)
+        )
+
+        // Run query
+        val query = "SELECT * FROM ${Tables.SG_SHOW}" +
+                " WHERE $selection" +
+                " ORDER BY $orderClause" +
+                " LIMIT ${ListWidgetRemoteViewsFactory.WIDGET_ITEMS_LIMIT}"
+        val shows = SgRoomDatabase.getInstance(context).sgShow2Helper()
+            .getShows(SimpleSQLiteQuery(query))
+
+        return shows.map { show ->
+            val hasNextEpisode = show.nextText.isNotEmpty()
+            val actualRelease =
+                if (hasNextEpisode) TimeTools.applyUserOffset(context, show.nextAirdateMs) else null
+            buildItem(
+                context,
+                show.nextEpisode?.toLongOrNull(),
+                show.nextText,
+                actualRelease,
+                show.network,
+                show.title,
+                show.posterSmall,
+                EpisodeFlags.UNWATCHED // next episode always not watched
+            )
+        }
+    }
+
+    private fun getUpcomingElseRecentEpisodes(
+        context: Context,
+        appWidgetId: Int,
+        isUpcomingElseRecent: Boolean
+    ): List<ListWidgetItem> {
+        val query = SgEpisode2WithShow.buildEpisodesWithShowQuery(
+            context,
+            isUpcomingElseRecent,
+            isInfiniteCalendar = WidgetSettings.isInfinite(context, appWidgetId),
+            isOnlyFavorites = WidgetSettings.isOnlyFavoriteShows(context, appWidgetId),
+            isOnlyUnwatched = WidgetSettings.isHidingWatchedEpisodes(context, appWidgetId),
+            isOnlyCollected = WidgetSettings.isOnlyCollectedEpisodes(context, appWidgetId),
+            isOnlyPremieres = WidgetSettings.isOnlyPremieres(context, appWidgetId)
+        )
+        val episodes = SgRoomDatabase.getInstance(context).sgEpisode2Helper()
+            .getEpisodesWithShow(
+                SimpleSQLiteQuery("$query LIMIT ${ListWidgetRemoteViewsFactory.WIDGET_ITEMS_LIMIT}")
+            )
+
+        val preventSpoilers = DisplaySettings.preventSpoilers(context)
+        return episodes.map { episode ->
+            val titleOrNull = if (preventSpoilers && EpisodeTools.isUnwatched(episode.watched)) {
+                null
+            } else {
+                episode.episodetitle
+            }
+            val episodeDescription = TextTools.getNextEpisodeString(
+                context,
+                episode.season,
+                episode.episodenumber,
+                titleOrNull
+            )
+            buildItem(
+                context,
+                episode.id,
+                episodeDescription,
+                actualRelease = TimeTools.applyUserOffset(context, episode.episode_firstairedms),
+                episode.network,
+                episode.seriestitle,
+                episode.series_poster_small,
+                episode.watched
+            )
+        }
+    }
+
+    private fun buildItem(
+        context: Context,
+        episodeId: Long?,
+        episodeDescription: String,
+        actualRelease: Date?,
+        network: String?,
+        showTitle: String,
+        posterPath: String?,
+        episodeFlag: Int
+    ): ListWidgetItem {
+        // Relative release time.
+        val releaseTime = when {
+            actualRelease == null -> ""
+            DisplaySettings.isDisplayExactDate(context) -> {
+                // "Fri Oct 31"
+                val day = TimeTools.formatToLocalDay(actualRelease)
+                val date = TimeTools.formatToLocalDateShort(context, actualRelease)
+                "$day $date"
+            }
+
+            else -> {
+                // "Fri 2 days ago"
+                TimeTools.formatToLocalDayAndRelativeTime(context, actualRelease)
+            }
+        }
+
+        // Absolute release time and network (if any).
+        val absoluteTime = if (actualRelease != null) {
+            TimeTools.formatToLocalTime(context, actualRelease)
+        } else {
+            ""
+        }
+
+        return ListWidgetItem(
+            episodeId,
+            episodeDescription,
+            releaseTime,
+            TextTools.dotSeparate(network, absoluteTime),
+            showTitle,
+            ImageTools.tmdbOrTvdbPosterUrl(posterPath, context),
+            episodeFlag
+        )
+    }
+
+}
@@ -0,0 +1,80 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.appwidget
+
+import android.content.Context
+import android.graphics.Bitmap
+import androidx.collection.LruCache
+import com.battlelancer.seriesguide.R
+import com.battlelancer.seriesguide.util.ImageTools
+import timber.log.Timber
+
+/**
+ * Keeps poster bitmaps decoded at the size displayed by list widgets, shared by all widgets.
+ * Bounded by the byte size of the bitmaps.
+ *
+ * Picasso does not store bitmaps loaded synchronously in its memory cache, so without this every
+ * widget update would decode every poster again.
+ */
+object ListWidgetPosterCache {
+
+    private val cache = object : LruCache<String, Bitmap>(
+        (Runtime.getRuntime().maxMemory() / 32).toInt()
+    ) {
+        override fun sizeOf(key: String, value: Bitmap): Int = value.byteCount
+    }
+
+    private fun key(posterUrl: String, isLargeFont: Boolean): String =
+        if (isLargeFont) "large:$posterUrl" else "small:$posterUrl"
+
+    /**
+     * Returns the cached poster, or loads and caches it. Returns null if loading failed.
+     * Must not be called on the main thread.
+     */
+    fun get(context: Context, posterUrl: String, isLargeFont: Boolean): Bitmap? {
+        val key = key(posterUrl, isLargeFont)
+        cache[key]?.let { return it }
+
+        val poster = try {
+            ImageTools.loadWithPicasso(context, posterUrl)
+                .centerCrop()
+                .resizeDimen(
+                    if (isLargeFont) {
+                        R.dimen.widget_poster_width_large
+                    } else {
+                        R.dimen.widget_poster_width
+                    },
+                    if (isLargeFont) {
+                        R.dimen.widget_poster_height_large
+                    } else {
+                        R.dimen.widget_poster_height
+                    }
+                )
+                .get()
+        } catch (e: Exception) {
+            Timber.e(e, "Failed to load poster")
+            null
+        }
+        // Do not cache failures, try again with the next update.
+        if (poster != null) cache.put(key, poster)
+        return poster
+    }
+
+    /**
+     * Returns if any poster of [items] is not cached, for example because loading it failed.
+     */
+    fun isMissingAny(items: List<ListWidgetItem>, isLargeFont: Boolean): Boolean =
+        items.any { it.posterUrl != null && cache[key(it.posterUrl, isLargeFont)] == null }
+
+    /**
+     * Loads the posters of [items] not cached, so binding items does not have to.
+     * Must not be called on the main thread.
+     */
+    fun preload(context: Context, items: List<ListWidgetItem>, isLargeFont: Boolean) {
+        for (item in items) {
+            if (item.posterUrl != null) get(context, item.posterUrl, isLargeFont)
+        }
+    }
+
+}
@@ -59,6 +59,8 @@ class ListWidgetPreferenceActivity : BaseThemeActivity() {
      * Called by [ListWidgetPreferenceFragment] to update a widget once preferences have changed.
      */
     fun updateWidget() {
+        // Settings have changed, load all data again.
+        ListWidgetData.invalidate(appWidgetId)
         val appWidgetManager = AppWidgetManager.getInstance(this)
         ListWidgetProvider.updateWidget(this, appWidgetManager, appWidgetId)
 
@@ -20,6 +20,7 @@ import android.widget.RemoteViews
 import androidx.core.app.TaskStackBuilder
 import androidx.core.content.getSystemService
 import com.battlelancer.seriesguide.R
+import com.battlelancer.seriesguide.SgApp
 import com.battlelancer.seriesguide.settings.WidgetSettings
 import com.battlelancer.seriesguide.settings.WidgetSettings.WidgetTheme
 import com.battlelancer.seriesguide.shows.ShowsActivityImpl
@@ -28,6 +29,8 @@ import com.battlelancer.seriesguide.shows.episodes.EpisodesActivity
 import com.battlelancer.seriesguide.ui.ShowsActivity
 import com.battlelancer.seriesguide.util.AndroidTools
 import com.battlelancer.seriesguide.util.PendingIntentCompat
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
 import timber.log.Timber
 import java.util.Random
 
@@ -64,9 +67,26 @@ class ListWidgetProvider : AppWidgetProvider() {
             if (appWidgetIds.isEmpty()) {
                 return
             }
-            // Just rebuild all RemoteViews, not just those of collection items. The scroll position
-            // is kept, so usability should also be fine.
-            onUpdate(context, appWidgetManager, appWidgetIds)
+            // Only update widgets where anything displayed has changed, loading the data of all
+            // widgets is fast compared to updating them.
+            val pendingResult = goAsync()
+            SgApp.coroutineScope.launch(Dispatchers.IO) {
+                try {
+                    val changedAppWidgetIds = appWidgetIds.filter {
+                        ListWidgetData.refresh(context, it)
+                    }
+                    Timber.d(
+                        "Data of %d of %d widget(s) changed",
+                        changedAppWidgetIds.size,
+                        appWidgetIds.size
+                    )
+                    // Just rebuild all RemoteViews, not just those of collection items. The scroll
+                    // position is kept, so usability should also be fine.
+                    updateWidgets(context, appWidgetManager, changedAppWidgetIds.toIntArray())
+                } finally {
+                    pendingResult.finish()
+                }
+            }
         } else if (ACTION_CLICK_ITEM == intent.action) {
             if (intent.extras?.containsKey(EXTRA_EPISODE_FLAG) == true) {
                 // Change watched flag
@@ -107,10 +127,24 @@ class ListWidgetProvider : AppWidgetProvider() {
         }
     }
 
+    override fun onDeleted(context: Context, appWidgetIds: IntArray) {
+        appWidgetIds.forEach { ListWidgetData.invalidate(it) }
+    }
+
     override fun onUpdate(
         context: Context,
         appWidgetManager: AppWidgetManager,
         appWidgetIds: IntArray
+    ) {
+        // Requested by the system, for example if a widget was added, load all data again.
+        appWidgetIds.forEach { ListWidgetData.invalidate(it) }
+        updateWidgets(context, appWidgetManager, appWidgetIds)
+    }
+
+    private fun updateWidgets(
+        context: Context,
+        appWidgetManager: AppWidgetManager,
+        appWidgetIds: IntArray
     ) {
         for (appWidgetId in appWidgetIds) {
             // On Android 16, how the system updates collection widgets has significantly changed
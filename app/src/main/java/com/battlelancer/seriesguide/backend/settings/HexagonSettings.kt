@@ -37,6 +37,10 @@ object HexagonSettings {
         "com.battlelancer.seriesguide.hexagon.v2.lastsync.movies"
     private const val KEY_LAST_SYNC_LISTS =
         "com.battlelancer.seriesguide.hexagon.v2.lastsync.lists"
+    private const val KEY_EPISODES_UPLOAD_SHOW_ID =
+        "com.battlelancer.seriesguide.hexagon.v2.upload.episodes.show"
+    private const val KEY_EPISODES_UPLOAD_AFTER_ID =
+        "com.battlelancer.seriesguide.hexagon.v2.upload.episodes.after"
 
     /**
      * If Cloud is enabled and Cloud specific actions should be performed or UI be shown.
@@ -139,6 +143,8 @@ object HexagonSettings {
         editor.remove(KEY_LAST_SYNC_SHOWS)
         editor.remove(KEY_LAST_SYNC_MOVIES)
         editor.remove(KEY_LAST_SYNC_LISTS)
+        editor.remove(KEY_EPISODES_UPLOAD_SHOW_ID)
+        editor.remove(KEY_EPISODES_UPLOAD_AFTER_ID)
         return editor.commit()
             .also { Timber.i("Sync state reset") }
     }
@@ -208,6 +214,36 @@ object HexagonSettings {
         }
     }
 
+    /**
+     * Returns the row ID of the last episode of [showId] that was uploaded to Cloud, if an upload
+     * of its episodes did not complete. Otherwise 0.
+     */
+    fun getEpisodesUploadResumeAfterId(context: Context, showId: Long): Long {
+        val prefs = PreferenceManager.getDefaultSharedPreferences(context)
+        if (prefs.getLong(KEY_EPISODES_UPLOAD_SHOW_ID, 0) != showId) return 0
+        return prefs.getLong(KEY_EPISODES_UPLOAD_AFTER_ID, 0)
+    }
+
+    /**
+     * Stores up to which episode the episodes of [showId] were uploaded, or if [afterId] is 0
+     * removes it. Only removes it if it is stored for [showId], so uploading other shows keeps
+     * the resume point of a show that failed to upload.
+     */
+    fun setEpisodesUploadResumeAfterId(context: Context, showId: Long, afterId: Long) {
+        val prefs = PreferenceManager.getDefaultSharedPreferences(context)
+        if (afterId > 0) {
+            prefs.edit {
+                putLong(KEY_EPISODES_UPLOAD_SHOW_ID, showId)
+                putLong(KEY_EPISODES_UPLOAD_AFTER_ID, afterId)
+            }
+        } else if (prefs.getLong(KEY_EPISODES_UPLOAD_SHOW_ID, 0) == showId) {
+            prefs.edit {
+                remove(KEY_EPISODES_UPLOAD_SHOW_ID)
+                remove(KEY_EPISODES_UPLOAD_AFTER_ID)
+            }
+        }
+    }
+
     fun getLastShowsSyncTime(context: Context): Long {
         return getLastSyncTime(context, KEY_LAST_SYNC_SHOWS)
     }
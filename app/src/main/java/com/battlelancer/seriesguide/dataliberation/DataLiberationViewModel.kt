@@ -87,7 +87,7 @@ class DataLiberationViewModel(application: Application) : BaseDataLiberationView
                 importShows,
                 importLists,
                 importMovies
-            )
+            ).also { it.progressListener = this }
         }
     }
 
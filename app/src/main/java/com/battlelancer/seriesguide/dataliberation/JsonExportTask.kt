@@ -20,6 +20,7 @@ import com.battlelancer.seriesguide.movies.database.MovieHelper
 import com.battlelancer.seriesguide.movies.database.SgMovie
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.ListItemTypes
 import com.battlelancer.seriesguide.provider.SgRoomDatabase
+import com.battlelancer.seriesguide.shows.database.SgEpisode2
 import com.battlelancer.seriesguide.shows.database.SgEpisode2Helper
 import com.battlelancer.seriesguide.shows.database.SgSeason2Helper
 import com.battlelancer.seriesguide.shows.database.SgShow2
@@ -281,6 +282,11 @@ open class JsonExportTask(
         val list = ArrayList<Season>()
 
         val seasons = sgSeason2Helper.getSeasonsForExport(showId)
+        if (seasons.isEmpty()) return list
+
+        // Get episodes of all seasons with a single query instead of one query per season.
+        val episodesBySeason = sgEpisode2Helper.getEpisodesOfShowForExport(showId)
+            .groupBy { it.seasonId }
 
         for (sgSeason in seasons) {
             val season = Season()
@@ -288,7 +294,7 @@ open class JsonExportTask(
             season.tvdb_id = sgSeason.tvdbId
             season.season = sgSeason.number
 
-            season.episodes = getEpisodes(sgSeason.id)
+            season.episodes = mapEpisodes(episodesBySeason[sgSeason.id].orEmpty())
 
             // Do not export season to JSON if it has no episodes
             if (season.episodes.isNotEmpty()) {
@@ -301,9 +307,8 @@ open class JsonExportTask(
     /**
      * Returns possibly empty list of episodes for season.
      */
-    private fun getEpisodes(seasonId: Long): List<Episode> {
-        val list = ArrayList<Episode>()
-        val episodes = sgEpisode2Helper.getEpisodesForExport(seasonId)
+    private fun mapEpisodes(episodes: List<SgEpisode2>): List<Episode> {
+        val list = ArrayList<Episode>(episodes.size)
 
         for (episodeDb in episodes) {
             val episodeExport = Episode()
@@ -95,6 +95,12 @@ class JsonImportTask(
     var errorCause: String? = null
         private set
 
+    /**
+     * If set, receives progress updates based on how much of the backup file was read.
+     * Note: called on the thread running the import.
+     */
+    var progressListener: JsonExportTask.OnTaskProgressListener? = null
+
     // Note: Path or NIO APIs require Android 8 (API 26) or coreLibraryDesugaring
     private var testBackupFileShows: File? = null
     private var testBackupFileMovies: File? = null
@@ -191,8 +197,8 @@ class JsonImportTask(
             }
         }
 
-        // Renew search table
-        SeriesGuideDatabase.rebuildFtsTable(context)
+        // Search table was updated while inserting, merge the many small index segments
+        SeriesGuideDatabase.optimizeFtsTable(context)
 
         return SUCCESS
     }
@@ -462,6 +468,7 @@ class JsonImportTask(
         }
 
         val gson = Gson()
+        val progress = ReadProgress(inputStream)
 
         JsonReader(InputStreamReader(inputStream, "UTF-8"))
             .use { reader ->
@@ -471,6 +478,7 @@ class JsonImportTask(
                         while (reader.hasNext()) {
                             val show = gson.fromJson<Show>(reader, Show::class.java)
                             addShowToDatabase(show)
+                            progress.update()
                         }
                     }
 
@@ -478,6 +486,7 @@ class JsonImportTask(
                         while (reader.hasNext()) {
                             val list = gson.fromJson<List>(reader, List::class.java)
                             addListToDatabase(list)
+                            progress.update()
                         }
                     }
 
@@ -485,11 +494,31 @@ class JsonImportTask(
                         while (reader.hasNext()) {
                             val movie = gson.fromJson<Movie>(reader, Movie::class.java)
                             addMovieToDatabase(movie)
+                            progress.update()
                         }
                     }
                 }
                 reader.endArray()
+                progress.update()
+            }
+    }
+
+    /**
+     * Reports progress in percent of bytes read from [inputStream] to [progressListener], but only
+     * if it has changed. As the reader buffers this is slightly ahead of what was imported.
+     */
+    private inner class ReadProgress(private val inputStream: FileInputStream) {
+        private val totalBytes = inputStream.channel.size()
+        private var lastPercent = -1
+
+        fun update() {
+            val listener = progressListener ?: return
+            val percent = (inputStream.channel.position() * 100 / totalBytes).toInt()
+            if (percent != lastPercent) {
+                lastPercent = percent
+                listener.onProgressUpdate(100, percent)
             }
+        }
     }
 
     /**
@@ -581,7 +610,13 @@ class JsonImportTask(
         importedShows++
     }
 
+    /**
+     * Inserts seasons, and episodes of all seasons in batches of up to [EPISODE_BATCH_SIZE]
+     * instead of one batch per season. This reduces the number of insert calls, e.g. for
+     * shows with many short seasons.
+     */
     private fun insertSeasonsAndEpisodes(show: Show, showId: Long) {
+        var episodeBatch = ArrayList<SgEpisode2>()
         for (season in show.seasons) {
             if ((season.tmdb_id == null || season.tmdb_id!!.isEmpty())
                 && (season.tvdb_id == null || season.tvdb_id!! <= 0)) {
@@ -599,27 +634,23 @@ class JsonImportTask(
 
             // If inserted, insert episodes.
             if (seasonId != -1L) {
-                val episodes = buildEpisodeBatch(season, showId, seasonId)
-                sgEpisode2Helper.insertEpisodes(episodes)
+                for (episode in season.episodes) {
+                    if ((episode.tmdb_id == null || episode.tmdb_id!! <= 0)
+                        && (episode.tvdb_id == null || episode.tvdb_id!! <= 0)) {
+                        // valid id is required
+                        continue
+                    }
+                    episodeBatch.add(episode.toSgEpisodeForImport(showId, seasonId, season.season))
+                    if (episodeBatch.size == EPISODE_BATCH_SIZE) {
+                        sgEpisode2Helper.insertEpisodes(episodeBatch)
+                        episodeBatch = ArrayList()
+                    }
+                }
             }
         }
-    }
-
-    private fun buildEpisodeBatch(
-        season: Season,
-        showId: Long,
-        seasonId: Long
-    ): ArrayList<SgEpisode2> {
-        val episodeBatch = ArrayList<SgEpisode2>()
-        for (episode in season.episodes) {
-            if ((episode.tmdb_id == null || episode.tmdb_id!! <= 0)
-                && (episode.tvdb_id == null || episode.tvdb_id!! <= 0)) {
-                // valid id is required
-                continue
-            }
-            episodeBatch.add(episode.toSgEpisodeForImport(showId, seasonId, season.season))
+        if (episodeBatch.isNotEmpty()) {
+            sgEpisode2Helper.insertEpisodes(episodeBatch)
         }
-        return episodeBatch
     }
 
     private fun addListToDatabase(list: List) {
@@ -676,5 +707,10 @@ class JsonImportTask(
         private const val ERROR_FILE_ACCESS = -3
 
         private const val SUMMARY_ITEM_LIMIT = 50
+
+        /**
+         * Maximum number of episodes to insert at once.
+         */
+        private const val EPISODE_BATCH_SIZE = 500
     }
 }
\ No newline at end of file
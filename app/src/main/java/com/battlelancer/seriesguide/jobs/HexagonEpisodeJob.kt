@@ -15,11 +15,16 @@ import com.uwetrottmann.seriesguide.backend.episodes.model.SgCloudEpisode
 import com.uwetrottmann.seriesguide.backend.episodes.model.SgCloudEpisodeList
 import java.io.IOException
 
+/**
+ * Uploads the episode flags of one or more jobs of the same [action] for the same show. If there
+ * are multiple jobs, the flags of later jobs override those of earlier jobs for the same episode,
+ * so only the net effect is uploaded.
+ */
 class HexagonEpisodeJob(
     private val hexagonTools: HexagonTools,
     action: JobAction,
-    jobInfo: SgJobInfo
-) : BaseNetworkEpisodeJob(action, jobInfo) {
+    private val jobInfos: List<SgJobInfo>
+) : BaseNetworkEpisodeJob(action, jobInfos.last()) {
 
     override fun execute(context: Context): NetworkJobResult {
         val showTmdbIdOrZero = SgRoomDatabase.getInstance(context).sgShow2Helper()
@@ -83,30 +88,46 @@ class HexagonEpisodeJob(
      * Builds a list of episodes ready to upload to hexagon. However, the show id is not set.
      * It should be set in the wrapping entity.
      */
-    private fun getEpisodesForHexagon(): MutableList<SgCloudEpisode> {
-        val isWatchedNotCollected = when (action) {
-            JobAction.EPISODE_WATCHED_FLAG -> true
-            JobAction.EPISODE_COLLECTION -> false
-            else -> throw IllegalArgumentException("Action $action not supported.")
-        }
+    private fun getEpisodesForHexagon(): MutableList<SgCloudEpisode> =
+        buildEpisodesForHexagon(action, jobInfos)
 
-        val episodes: MutableList<SgCloudEpisode> = ArrayList()
-        for (i in 0 until jobInfo.episodesLength()) {
-            val episodeInfo = jobInfo.episodes(i)
+    companion object {
 
-            val episode = SgCloudEpisode()
-            episode.seasonNumber = episodeInfo.season()
-            episode.episodeNumber = episodeInfo.number()
-            if (isWatchedNotCollected) {
-                episode.watchedFlag = jobInfo.flagValue()
-                // Always upload (regardless if watched, skipped or not watched).
-                // Also ensures legacy data slowly adds the new plays field.
-                episode.plays = episodeInfo.plays()
-            } else {
-                episode.isInCollection = EpisodeTools.isCollected(jobInfo.flagValue())
+        /**
+         * Builds the list of episodes to upload for all [jobInfos], in order. If an episode is
+         * contained in multiple jobs, only keeps the values of the last job.
+         */
+        fun buildEpisodesForHexagon(
+            action: JobAction,
+            jobInfos: List<SgJobInfo>
+        ): MutableList<SgCloudEpisode> {
+            val isWatchedNotCollected = when (action) {
+                JobAction.EPISODE_WATCHED_FLAG -> true
+                JobAction.EPISODE_COLLECTION -> false
+                else -> throw IllegalArgumentException("Action $action not supported.")
+            }
+
+            // Key by season and episode number, later jobs replace values of earlier ones.
+            val episodes = LinkedHashMap<Pair<Int, Int>, SgCloudEpisode>()
+            for (jobInfo in jobInfos) {
+                for (i in 0 until jobInfo.episodesLength()) {
+                    val episodeInfo = jobInfo.episodes(i)
+
+                    val episode = SgCloudEpisode()
+                    episode.seasonNumber = episodeInfo.season()
+                    episode.episodeNumber = episodeInfo.number()
+                    if (isWatchedNotCollected) {
+                        episode.watchedFlag = jobInfo.flagValue()
+                        // Always upload (regardless if watched, skipped or not watched).
+                        // Also ensures legacy data slowly adds the new plays field.
+                        episode.plays = episodeInfo.plays()
+                    } else {
+                        episode.isInCollection = EpisodeTools.isCollected(jobInfo.flagValue())
+                    }
+                    episodes[Pair(episodeInfo.season(), episodeInfo.number())] = episode
+                }
             }
-            episodes.add(episode)
+            return ArrayList(episodes.values)
         }
-        return episodes
     }
-}
\ No newline at end of file
+}
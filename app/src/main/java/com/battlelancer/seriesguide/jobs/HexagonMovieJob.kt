@@ -12,28 +12,35 @@ import com.battlelancer.seriesguide.jobs.episodes.JobAction.MOVIE_WATCHED_REMOVE
 import com.battlelancer.seriesguide.jobs.episodes.JobAction.MOVIE_WATCHED_SET
 import com.battlelancer.seriesguide.jobs.episodes.JobAction.MOVIE_WATCHLIST_ADD
 import com.battlelancer.seriesguide.jobs.episodes.JobAction.MOVIE_WATCHLIST_REMOVE
+import com.battlelancer.seriesguide.sync.HexagonMovieSync
 import com.battlelancer.seriesguide.util.Errors
 import com.google.api.client.http.HttpResponseException
 import com.uwetrottmann.seriesguide.backend.movies.model.Movie
 import com.uwetrottmann.seriesguide.backend.movies.model.MovieList
 import java.io.IOException
 
+/**
+ * Uploads the movie changes of one or more [jobs], in batches. If there are multiple jobs for the
+ * same movie, combines their changes so the movie is only uploaded once with its net state.
+ *
+ * If the upload fails, the result describes the last job.
+ */
 class HexagonMovieJob(
     private val hexagonTools: HexagonTools,
-    action: JobAction,
-    jobInfo: SgJobInfo
-) : BaseNetworkMovieJob(action, jobInfo) {
+    private val jobs: List<Pair<JobAction, SgJobInfo>>
+) : BaseNetworkMovieJob(jobs.last().first, jobs.last().second) {
 
     override fun execute(context: Context): NetworkJobResult {
-        val uploadWrapper = MovieList()
-        uploadWrapper.movies = getMovieForHexagon()
-
         try {
             val moviesService = hexagonTools.moviesService ?: return buildResult(
                 context,
                 ERROR_HEXAGON_AUTH
             )
-            moviesService.save(uploadWrapper).execute()
+            buildMoviesForHexagon(jobs).chunked(HexagonMovieSync.MAX_BATCH_SIZE).forEach {
+                val uploadWrapper = MovieList()
+                uploadWrapper.movies = it
+                moviesService.save(uploadWrapper).execute()
+            }
         } catch (e: HttpResponseException) {
             Errors.logAndReportHexagon("save movie", e)
             val code = e.statusCode
@@ -50,28 +57,37 @@ class HexagonMovieJob(
         return buildResult(context, SUCCESS)
     }
 
-    private fun getMovieForHexagon(): List<Movie> {
-        val movie = Movie()
-        movie.tmdbId = jobInfo.movieTmdbId()
+    companion object {
 
-        when (action) {
-            MOVIE_COLLECTION_ADD -> movie.isInCollection = true
-            MOVIE_COLLECTION_REMOVE -> movie.isInCollection = false
-            MOVIE_WATCHLIST_ADD -> movie.isInWatchlist = true
-            MOVIE_WATCHLIST_REMOVE -> movie.isInWatchlist = false
-            MOVIE_WATCHED_SET -> {
-                movie.isWatched = true
-                movie.plays = jobInfo.plays()
-            }
-            MOVIE_WATCHED_REMOVE -> {
-                movie.isWatched = false
-                movie.plays = 0
+        /**
+         * Builds one movie per TMDB ID of all [jobs], in order. Applies the changes of all jobs of
+         * a movie, so later jobs override values set by earlier ones.
+         */
+        fun buildMoviesForHexagon(jobs: List<Pair<JobAction, SgJobInfo>>): List<Movie> {
+            val movies = LinkedHashMap<Int, Movie>()
+            for ((action, jobInfo) in jobs) {
+                val movieTmdbId = jobInfo.movieTmdbId()
+                val movie = movies.getOrPut(movieTmdbId) {
+                    Movie().also { it.tmdbId = movieTmdbId }
+                }
+
+                when (action) {
+                    MOVIE_COLLECTION_ADD -> movie.isInCollection = true
+                    MOVIE_COLLECTION_REMOVE -> movie.isInCollection = false
+                    MOVIE_WATCHLIST_ADD -> movie.isInWatchlist = true
+                    MOVIE_WATCHLIST_REMOVE -> movie.isInWatchlist = false
+                    MOVIE_WATCHED_SET -> {
+                        movie.isWatched = true
+                        movie.plays = jobInfo.plays()
+                    }
+                    MOVIE_WATCHED_REMOVE -> {
+                        movie.isWatched = false
+                        movie.plays = 0
+                    }
+                    else -> throw IllegalArgumentException("Action $action not supported.")
+                }
             }
-            else -> throw IllegalArgumentException("Action $action not supported.")
+            return ArrayList(movies.values)
         }
-
-        val movies = ArrayList<Movie>()
-        movies.add(movie)
-        return movies
     }
 }
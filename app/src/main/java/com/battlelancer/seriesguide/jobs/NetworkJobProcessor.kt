@@ -28,34 +28,61 @@ import java.nio.ByteBuffer
  * Based on the job result shows an error notification and maybe removes the job.
  * If the job isn't removed, will stop processing further jobs. The job will be tried
  * again the next time jobs are processed.
+ *
+ * As Cloud stores the current state of an episode or movie, jobs for Cloud are coalesced
+ * before uploading: all jobs of the same action for a show are uploaded together and all movie
+ * jobs are uploaded in batches, only sending the net effect of all jobs. If Cloud rejects such an
+ * upload, uploads the jobs one by one, so only the rejected jobs are not sent to Trakt.
+ *
+ * If uploading to Cloud fails and should be retried, only processes jobs for Trakt that are older
+ * than the first job not uploaded to Cloud.
  */
 class NetworkJobProcessor(private val context: Context) {
 
     private val shouldSendToHexagon = HexagonSettings.isEnabled(context)
     private val shouldSendToTrakt = TraktCredentials.get(context).hasCredentials()
 
+    private class QueuedJob(
+        val id: Long,
+        val action: JobAction,
+        val createdAt: Long,
+        val jobInfo: SgJobInfo
+    )
+
+    /**
+     * A [networkJob] that uploads the net effect of all [jobs].
+     */
+    private class CoalescedJob(
+        val jobs: List<QueuedJob>,
+        val networkJob: NetworkJob
+    )
+
     fun process() {
-        // query for jobs
-        val query = context.contentResolver
-            .query(Jobs.CONTENT_URI, Jobs.PROJECTION, null, null, Jobs.SORT_OLDEST)
-            ?: return  // query failed
+        val jobs = getJobs() ?: return // query failed
+
+        // upload to hexagon, skip Trakt for jobs that failed and can't retry
+        val jobsFailedAtHexagon = HashSet<Long>()
+        val jobsToProcess = if (shouldSendToHexagon) {
+            val jobsNotUploaded = HashSet<Long>()
+            if (doHexagonJobs(jobs, jobsFailedAtHexagon, jobsNotUploaded)) {
+                jobs
+            } else {
+                Timber.e("Cloud jobs failed, will retry with next sync, stop at first not uploaded")
+                // to avoid ordering issues only process jobs before the first one not uploaded
+                jobs.takeWhile { !jobsNotUploaded.contains(it.id) }
+            }
+        } else {
+            jobs
+        }
 
         // process jobs, starting with oldest
         val jobsToRemove: MutableList<Long> = ArrayList()
-        while (query.moveToNext()) {
-            val jobId = query.getLong(0)
-            val typeId = query.getInt(1)
-            val action = JobAction.fromId(typeId)
-
-            if (action != JobAction.UNKNOWN) {
-                Timber.d("Running job %d: action = %s", jobId, action)
+        for (job in jobsToProcess) {
+            val jobId = job.id
+            if (job.action != JobAction.UNKNOWN && !jobsFailedAtHexagon.contains(jobId)) {
+                Timber.d("Running job %d: action = %s", jobId, job.action)
 
-                val createdAt = query.getLong(2)
-                val jobInfoArr = query.getBlob(3)
-                val jobInfoBuffered = ByteBuffer.wrap(jobInfoArr)
-                val jobInfo = SgJobInfo.getRootAsSgJobInfo(jobInfoBuffered)
-
-                if (!doNetworkJob(jobId, action, createdAt, jobInfo)) {
+                if (!doTraktJob(job)) {
                     Timber.e(
                         "Job %d failed, will retry with next sync, stop processing jobs",
                         jobId
@@ -66,7 +93,6 @@ class NetworkJobProcessor(private val context: Context) {
             }
             jobsToRemove.add(jobId)
         }
-        query.close()
 
         // remove completed jobs
         if (jobsToRemove.isNotEmpty()) {
@@ -75,40 +101,177 @@ class NetworkJobProcessor(private val context: Context) {
     }
 
     /**
-     * Returns true if the job can be removed, false if it should be retried later.
+     * Returns all jobs, starting with oldest, or null if the query failed.
      */
-    private fun doNetworkJob(
-        jobId: Long,
-        action: JobAction,
-        createdAt: Long,
-        jobInfo: SgJobInfo
+    private fun getJobs(): List<QueuedJob>? {
+        val query = context.contentResolver
+            .query(Jobs.CONTENT_URI, Jobs.PROJECTION, null, null, Jobs.SORT_OLDEST)
+            ?: return null
+
+        val jobs = ArrayList<QueuedJob>(query.count)
+        while (query.moveToNext()) {
+            val jobInfoArr = query.getBlob(3)
+            val jobInfoBuffered = ByteBuffer.wrap(jobInfoArr)
+            jobs.add(
+                QueuedJob(
+                    id = query.getLong(0),
+                    action = JobAction.fromId(query.getInt(1)),
+                    createdAt = query.getLong(2),
+                    jobInfo = SgJobInfo.getRootAsSgJobInfo(jobInfoBuffered)
+                )
+            )
+        }
+        query.close()
+        return jobs
+    }
+
+    /**
+     * Uploads the net effect of all [jobs] to Cloud. Adds the IDs of jobs that failed, but can't
+     * retry, to [jobsFailed].
+     *
+     * Returns false if any upload failed and should be retried later, then adds the IDs of jobs
+     * not uploaded to [jobsNotUploaded].
+     */
+    private fun doHexagonJobs(
+        jobs: List<QueuedJob>,
+        jobsFailed: MutableSet<Long>,
+        jobsNotUploaded: MutableSet<Long>
     ): Boolean {
-        // upload to hexagon
-        if (shouldSendToHexagon) {
-            if (!AndroidUtils.isNetworkConnected(context)) {
+        val hexagonTools = SgApp.getServicesComponent(context).hexagonTools()
+        val coalescedJobs = coalesceHexagonJobs(hexagonTools, jobs)
+        if (coalescedJobs.isEmpty()) return true
+        Timber.i(
+            "Coalesced %d jobs into %d Cloud uploads",
+            coalescedJobs.sumOf { it.jobs.size },
+            coalescedJobs.size
+        )
+
+        for ((index, coalescedJob) in coalescedJobs.withIndex()) {
+            if (!doHexagonJob(hexagonTools, coalescedJob, jobsFailed, jobsNotUploaded)) {
+                coalescedJobs.drop(index + 1)
+                    .forEach { remaining -> remaining.jobs.mapTo(jobsNotUploaded) { it.id } }
                 return false
             }
-            val hexagonTools = SgApp.getServicesComponent(context).hexagonTools()
-            val hexagonJob = getHexagonJobForAction(hexagonTools, action, jobInfo)
-            if (hexagonJob != null) {
-                val result = hexagonJob.execute(context)
-                if (!result.successful) {
-                    showNotification(jobId, createdAt, result)
-                    return result.jobRemovable
+        }
+        return true
+    }
+
+    /**
+     * Uploads [coalescedJob]. If Cloud rejects it and it contains multiple jobs, uploads them one
+     * by one instead, so only the jobs that are rejected are added to [jobsFailed].
+     *
+     * Returns false if the upload failed and should be retried later, then adds the IDs of jobs
+     * not uploaded to [jobsNotUploaded].
+     */
+    private fun doHexagonJob(
+        hexagonTools: HexagonTools,
+        coalescedJob: CoalescedJob,
+        jobsFailed: MutableSet<Long>,
+        jobsNotUploaded: MutableSet<Long>
+    ): Boolean {
+        if (!AndroidUtils.isNetworkConnected(context)) {
+            coalescedJob.jobs.mapTo(jobsNotUploaded) { it.id }
+            return false
+        }
+        val result = coalescedJob.networkJob.execute(context)
+        if (result.successful) return true
+
+        if (!result.jobRemovable) {
+            // The result describes the last job.
+            val lastJob = coalescedJob.jobs.last()
+            showNotification(lastJob.id, lastJob.createdAt, result)
+            coalescedJob.jobs.mapTo(jobsNotUploaded) { it.id }
+            return false
+        }
+
+        if (coalescedJob.jobs.size == 1) {
+            val job = coalescedJob.jobs.single()
+            showNotification(job.id, job.createdAt, result)
+            jobsFailed.add(job.id)
+            return true
+        }
+
+        // Find the rejected jobs, uploading each job again is fine as Cloud stores the state.
+        Timber.e("Cloud rejected %d coalesced jobs, uploading one by one", coalescedJob.jobs.size)
+        for ((index, job) in coalescedJob.jobs.withIndex()) {
+            val singleJob = CoalescedJob(listOf(job), buildHexagonJob(hexagonTools, listOf(job)))
+            if (!doHexagonJob(hexagonTools, singleJob, jobsFailed, jobsNotUploaded)) {
+                coalescedJob.jobs.drop(index + 1).mapTo(jobsNotUploaded) { it.id }
+                return false
+            }
+        }
+        return true
+    }
+
+    /**
+     * Groups episode jobs by show and action, and all movie jobs into a single job.
+     */
+    private fun coalesceHexagonJobs(
+        hexagonTools: HexagonTools,
+        jobs: List<QueuedJob>
+    ): List<CoalescedJob> {
+        val episodeJobs = LinkedHashMap<Pair<Long, JobAction>, MutableList<QueuedJob>>()
+        val movieJobs = ArrayList<QueuedJob>()
+        for (job in jobs) {
+            when (job.action) {
+                JobAction.EPISODE_COLLECTION,
+                JobAction.EPISODE_WATCHED_FLAG -> {
+                    episodeJobs.getOrPut(Pair(job.jobInfo.showId(), job.action)) { ArrayList() }
+                        .add(job)
+                }
+
+                JobAction.MOVIE_COLLECTION_ADD,
+                JobAction.MOVIE_COLLECTION_REMOVE,
+                JobAction.MOVIE_WATCHLIST_ADD,
+                JobAction.MOVIE_WATCHLIST_REMOVE,
+                JobAction.MOVIE_WATCHED_SET,
+                JobAction.MOVIE_WATCHED_REMOVE -> {
+                    movieJobs.add(job)
+                }
+
+                else -> {
+                    // Action not supported by hexagon.
                 }
             }
         }
 
-        // upload to trakt
+        val coalescedJobs = ArrayList<CoalescedJob>(episodeJobs.size + 1)
+        for (jobsOfShow in episodeJobs.values) {
+            coalescedJobs.add(CoalescedJob(jobsOfShow, buildHexagonJob(hexagonTools, jobsOfShow)))
+        }
+        if (movieJobs.isNotEmpty()) {
+            coalescedJobs.add(CoalescedJob(movieJobs, buildHexagonJob(hexagonTools, movieJobs)))
+        }
+        return coalescedJobs
+    }
+
+    /**
+     * Builds a job uploading the net effect of [jobs], which must either all be episode jobs of
+     * the same show and action, or all be movie jobs.
+     */
+    private fun buildHexagonJob(hexagonTools: HexagonTools, jobs: List<QueuedJob>): NetworkJob {
+        val action = jobs.first().action
+        return if (action == JobAction.EPISODE_COLLECTION
+            || action == JobAction.EPISODE_WATCHED_FLAG) {
+            HexagonEpisodeJob(hexagonTools, action, jobs.map { it.jobInfo })
+        } else {
+            HexagonMovieJob(hexagonTools, jobs.map { Pair(it.action, it.jobInfo) })
+        }
+    }
+
+    /**
+     * Returns true if the job can be removed, false if it should be retried later.
+     */
+    private fun doTraktJob(job: QueuedJob): Boolean {
         if (shouldSendToTrakt) {
             if (!AndroidUtils.isNetworkConnected(context)) {
                 return false
             }
-            val traktJob = getTraktJobForAction(action, jobInfo, createdAt)
+            val traktJob = getTraktJobForAction(job.action, job.jobInfo, job.createdAt)
             if (traktJob != null) {
                 val result = traktJob.execute(context)
                 // may need to show notification if successful (for not found error)
-                showNotification(jobId, createdAt, result)
+                showNotification(job.id, job.createdAt, result)
                 if (!result.successful) {
                     return result.jobRemovable
                 }
@@ -117,31 +280,6 @@ class NetworkJobProcessor(private val context: Context) {
         return true
     }
 
-    private fun getHexagonJobForAction(
-        hexagonTools: HexagonTools, action: JobAction,
-        jobInfo: SgJobInfo
-    ): NetworkJob? {
-        return when (action) {
-            JobAction.EPISODE_COLLECTION,
-            JobAction.EPISODE_WATCHED_FLAG -> {
-                HexagonEpisodeJob(hexagonTools, action, jobInfo)
-            }
-
-            JobAction.MOVIE_COLLECTION_ADD,
-            JobAction.MOVIE_COLLECTION_REMOVE,
-            JobAction.MOVIE_WATCHLIST_ADD,
-            JobAction.MOVIE_WATCHLIST_REMOVE,
-            JobAction.MOVIE_WATCHED_SET,
-            JobAction.MOVIE_WATCHED_REMOVE -> {
-                HexagonMovieJob(hexagonTools, action, jobInfo)
-            }
-
-            else -> {
-                null // Action not supported by hexagon.
-            }
-        }
-    }
-
     private fun getTraktJobForAction(
         action: JobAction,
         jobInfo: SgJobInfo,
@@ -184,33 +184,43 @@ data class SgListItemWithDetails(
         private const val ITEMS_COLUMNS: String =
             "${ListItems.LIST_ITEM_ID},${Lists.LIST_ID},${ListItems.TYPE},${ListItems.ITEM_REF_ID}"
 
+        /**
+         * Numbered parameter for the list ID, so every branch of [LIST_ITEMS_WITH_DETAILS] can
+         * filter by it with a single bind argument.
+         */
+        private const val LIST_ID_ARG = "?1"
+
+        /**
+         * Filters by list first, so each branch only looks up the items of one list using the
+         * list ID index instead of joining all list items.
+         */
         private const val SELECT_LIST_ITEMS_MAP_ROW_ID: String =
             "SELECT ${ListItems._ID} AS $ITEM_ROW_ID,$ITEMS_COLUMNS " +
-                    "FROM ${Tables.LIST_ITEMS}"
+                    "FROM ${Tables.LIST_ITEMS} WHERE ${Lists.LIST_ID}=$LIST_ID_ARG"
 
         private const val SELECT_TMDB_MOVIES: String =
             "($SELECT_LIST_ITEMS_MAP_ROW_ID " +
-                    "WHERE ${ListItems.TYPE}=${ListItemTypes.TMDB_MOVIE}) " +
+                    "AND ${ListItems.TYPE}=${ListItemTypes.TMDB_MOVIE}) " +
                     "AS ${Tables.LIST_ITEMS}"
 
         private const val SELECT_TMDB_SHOWS: String =
             "($SELECT_LIST_ITEMS_MAP_ROW_ID " +
-                    "WHERE ${ListItems.TYPE}=${ListItemTypes.TMDB_SHOW}) " +
+                    "AND ${ListItems.TYPE}=${ListItemTypes.TMDB_SHOW}) " +
                     "AS ${Tables.LIST_ITEMS}"
 
         private const val SELECT_TVDB_SHOWS: String =
             "($SELECT_LIST_ITEMS_MAP_ROW_ID " +
-                    "WHERE ${ListItems.TYPE}=${ListItemTypes.TVDB_SHOW}) " +
+                    "AND ${ListItems.TYPE}=${ListItemTypes.TVDB_SHOW}) " +
                     "AS ${Tables.LIST_ITEMS}"
 
         private const val SELECT_TVDB_SEASONS: String =
             "($SELECT_LIST_ITEMS_MAP_ROW_ID " +
-                    "WHERE ${ListItems.TYPE}=${ListItemTypes.SEASON}) " +
+                    "AND ${ListItems.TYPE}=${ListItemTypes.SEASON}) " +
                     "AS ${Tables.LIST_ITEMS}"
 
         private const val SELECT_TVDB_EPISODES: String =
             "($SELECT_LIST_ITEMS_MAP_ROW_ID " +
-                    "WHERE ${ListItems.TYPE}=${ListItemTypes.EPISODE}) " +
+                    "AND ${ListItems.TYPE}=${ListItemTypes.EPISODE}) " +
                     "AS ${Tables.LIST_ITEMS}"
 
         /**
@@ -283,6 +293,11 @@ data class SgListItemWithDetails(
          * Using left outer join so joined show or movie data will be null/0 if there is no match.
          * Can then use this to not display list items for shows or movies that aren't added to the
          * database.
+         *
+         * Using UNION ALL as the branches select different item types, so there are no duplicate
+         * rows to remove.
+         *
+         * Requires the list ID as the first bind argument, see [buildSelect].
          */
         private const val LIST_ITEMS_WITH_DETAILS: String = "(" +
                 // TMDB movies
@@ -292,7 +307,7 @@ data class SgListItemWithDetails(
                 " LEFT OUTER JOIN " + Tables.MOVIES +
                 " ON " + LIST_ITEMS_REF_ID + "=" + MoviesColumns.TMDB_ID +
                 ")" +
-                " UNION " +
+                " UNION ALL " +
                 // new TMDB shows
                 SELECT_ITEMS_AND_SHOWS_COLUMNS + " FROM " +
                 "(" +
@@ -301,7 +316,7 @@ data class SgListItemWithDetails(
                 " ON " + LIST_ITEMS_REF_ID + "=" + SgShow2Columns.TMDB_ID +
                 ")" +
                 // legacy TVDB shows
-                " UNION " +
+                " UNION ALL " +
                 SELECT_ITEMS_AND_SHOWS_COLUMNS + " FROM " +
                 "(" +
                 SELECT_TVDB_SHOWS +
@@ -309,7 +324,7 @@ data class SgListItemWithDetails(
                 " ON " + LIST_ITEMS_REF_ID + "=" + SgShow2Columns.TVDB_ID +
                 ")" +
                 // legacy TVDB seasons
-                " UNION " +
+                " UNION ALL " +
                 SELECT_ITEMS_AND_SHOWS_COLUMNS + " FROM " +
                 "(" +
                 SELECT_TVDB_SEASONS +
@@ -317,7 +332,7 @@ data class SgListItemWithDetails(
                 " ON " + LIST_ITEMS_REF_ID + "=" + SgSeason2Columns.TVDB_ID +
                 ")" +
                 // legacy TVDB episodes
-                " UNION " +
+                " UNION ALL " +
                 SELECT_ITEMS_AND_SHOWS_COLUMNS + " FROM " +
                 "(" +
                 SELECT_TVDB_EPISODES +
@@ -363,10 +378,12 @@ data class SgListItemWithDetails(
          * the database (the join on movie or show data will fail and the movie TMDB ID or show ID
          * will be 0/null).
          *
+         * Bind the list ID as the only argument.
+         *
          * [orderClause] as built by [com.battlelancer.seriesguide.lists.ListsDistillationSettings].
          */
         fun buildSelect(orderClause: String): String = "SELECT * FROM $LIST_ITEMS_WITH_DETAILS" +
-                " WHERE ${Lists.LIST_ID}=? AND (${MoviesColumns.TMDB_ID}>0 OR ${SgShow2Columns.REF_SHOW_ID}>0)" +
+                " WHERE (${MoviesColumns.TMDB_ID}>0 OR ${SgShow2Columns.REF_SHOW_ID}>0)" +
                 " ORDER BY $orderClause"
     }
 }
@@ -80,6 +80,10 @@ open class HttpClientModule {
         private const val MIN_DISK_IMAGE_CACHE_SIZE = 5 * 1024 * 1024L // 5MB
         private const val MAX_DISK_IMAGE_CACHE_SIZE = 50 * 1024 * 1024L // 50MB
 
+        const val POSTER_CACHE = "poster-cache"
+        private const val MIN_DISK_POSTER_CACHE_SIZE = 10 * 1024 * 1024L // 10MB
+        private const val MAX_DISK_POSTER_CACHE_SIZE = 100 * 1024 * 1024L // 100MB
+
         // https://letsencrypt.org/certs/isrgrootx1.pem
         private val letsEncryptIsgX1Cert = """
         -----BEGIN CERTIFICATE-----
@@ -169,6 +173,14 @@ open class HttpClientModule {
             return calculateDiskCacheSize(dir, MIN_DISK_API_CACHE_SIZE, MAX_DISK_API_CACHE_SIZE)
         }
 
+        fun calculatePosterDiskCacheSize(dir: File): Long {
+            return calculateDiskCacheSize(
+                dir,
+                MIN_DISK_POSTER_CACHE_SIZE,
+                MAX_DISK_POSTER_CACHE_SIZE
+            )
+        }
+
         fun getApiDiskCache(context: Context): Cache {
             val cacheDir = createCacheDir(context, API_CACHE)
             return Cache(cacheDir, calculateApiDiskCacheSize(cacheDir))
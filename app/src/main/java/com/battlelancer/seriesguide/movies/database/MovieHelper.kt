@@ -77,6 +77,14 @@ interface MovieHelper {
     )
     fun getTmdbIdsOfMoviesNotOnAnyList(): List<Int>
 
+    @Query(
+        "SELECT movies_poster FROM movies " +
+                "WHERE movies_poster IS NOT NULL AND movies_poster != '' " +
+                "AND (movies_incollection=1 OR movies_inwatchlist=1 " +
+                "OR EXISTS (SELECT 1 FROM listitems WHERE listitems.item_ref_id = movies.movies_tmdbid))"
+    )
+    fun getPostersOfMoviesOnLists(): List<String>
+
     @Query("SELECT movies_tmdbid FROM movies WHERE movies_imdbid=:imdbId")
     fun getTmdbIdByImdbId(imdbId: String): Int?
 
@@ -104,6 +112,9 @@ interface MovieHelper {
     @Query("SELECT movies_title FROM movies WHERE movies_tmdbid=:tmdbId")
     fun getMovieTitle(tmdbId: Int): String?
 
+    @Query("SELECT movies_poster FROM movies WHERE movies_tmdbid=:tmdbId")
+    fun getMoviePoster(tmdbId: Int): String?
+
     @Query("SELECT movies_trailer FROM movies WHERE movies_tmdbid=:tmdbId")
     fun getMovieTrailer(tmdbId: Int): String?
 
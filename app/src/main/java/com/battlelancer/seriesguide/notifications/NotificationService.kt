@@ -49,6 +49,8 @@ import org.threeten.bp.Instant
 import timber.log.Timber
 import java.io.IOException
 import java.text.NumberFormat
+import kotlin.math.max
+import kotlin.math.min
 
 /**
  * To debug set [.DEBUG] to true.
@@ -115,15 +117,18 @@ class NotificationService(context: Context) {
             // notify again for same episodes
             NotificationSettings.resetLastEpisodeAirtime(context)
         }
-        val upcomingEpisodes = queryUpcomingEpisodes(customCurrentTime)
+        val upcomingEpisodes = UpcomingEpisodes(customCurrentTime)
 
         val nextEpisodeReleaseTime = NotificationSettings.getNextToNotifyAbout(context)
         // wake user-defined amount of time earlier than next episode release time
         val plannedWakeUpTime = (TimeTools.applyUserOffset(context, nextEpisodeReleaseTime).time
                 - DateUtils.MINUTE_IN_MILLIS * notificationThreshold)
 
-        val checkForNewEpisodes =
-            shouldCheckToNotify(plannedWakeUpTime, nextEpisodeReleaseTime, upcomingEpisodes)
+        val checkForNewEpisodes = shouldCheckToNotify(
+            plannedWakeUpTime,
+            nextEpisodeReleaseTime,
+            upcomingEpisodes::getFirstReleaseTime
+        )
 
         var nextWakeUpTime: Long = 0
         var needExactAlarm = true
@@ -134,23 +139,20 @@ class NotificationService(context: Context) {
             maybeNotify(upcomingEpisodes, latestTimeToInclude)
 
             // plan next episode to notify about
-            for (episode in upcomingEpisodes) {
-                val releaseTime = episode.episode_firstairedms
-                if (releaseTime > latestTimeToInclude) {
-                    PreferenceManager.getDefaultSharedPreferences(context).edit()
-                        .putLong(NotificationSettings.KEY_NEXT_TO_NOTIFY, releaseTime)
-                        .apply()
-                    Timber.d(
-                        "Next notification planned for episode released at: %s",
-                        Instant.ofEpochMilli(releaseTime)
-                    )
-
-                    // calc wake up time to notify about this episode
-                    // taking into account time offset and notification threshold
-                    nextWakeUpTime = (TimeTools.applyUserOffset(context, releaseTime).time
-                            - DateUtils.MINUTE_IN_MILLIS * notificationThreshold)
-                    break
-                }
+            val releaseTime = upcomingEpisodes.getFirstReleaseTime(latestTimeToInclude + 1)
+            if (releaseTime != null) {
+                PreferenceManager.getDefaultSharedPreferences(context).edit()
+                    .putLong(NotificationSettings.KEY_NEXT_TO_NOTIFY, releaseTime)
+                    .apply()
+                Timber.d(
+                    "Next notification planned for episode released at: %s",
+                    Instant.ofEpochMilli(releaseTime)
+                )
+
+                // calc wake up time to notify about this episode
+                // taking into account time offset and notification threshold
+                nextWakeUpTime = (TimeTools.applyUserOffset(context, releaseTime).time
+                        - DateUtils.MINUTE_IN_MILLIS * notificationThreshold)
             }
         } else {
             // Go to sleep, wake up as planned
@@ -204,17 +206,21 @@ class NotificationService(context: Context) {
      * or otherwise should go to sleep and wake-up as planned.
      *
      * True if running for the first time ([plannedWakeUpTime] is <= 0) or woken up as planned
-     * (or later). Also if woken up earlier than planned and
-     * - there are no [upcomingEpisodes], or
-     * - there is an upcoming episode released before [nextEpisodeReleaseTime] and after the release
-     *   time of the last one notified about, or
+     * (or later). Also if woken up earlier than planned and the first upcoming episode released
+     * after the last one notified about (as returned by [getFirstReleaseTime]) is not released at
+     * [nextEpisodeReleaseTime], for example
+     * - there are no upcoming episodes, or
+     * - an episode is released before [nextEpisodeReleaseTime], or
      * - there is no upcoming episode released at [nextEpisodeReleaseTime].
+     *
+     * [getFirstReleaseTime] returns the release time of the first upcoming episode released at or
+     * after the given time.
      */
     @VisibleForTesting
     fun shouldCheckToNotify(
         plannedWakeUpTime: Long,
         nextEpisodeReleaseTime: Long,
-        upcomingEpisodes: List<SgEpisode2WithShow>
+        getFirstReleaseTime: (Long) -> Long?
     ): Boolean {
         // Note: on first run plannedWakeUpTime will be <= 0.
         if (System.currentTimeMillis() >= plannedWakeUpTime) {
@@ -224,116 +230,123 @@ class NotificationService(context: Context) {
         Timber.d("Woke up earlier than planned, checking to notify or reschedule")
         val releaseTimeLastNotified = NotificationSettings.getLastNotifiedAbout(context)
 
-        if (upcomingEpisodes.isEmpty()) {
-            // No upcoming episodes to notify about, always find a new wake-up time.
-            return true
-        }
+        // Only episodes released after the episode we last notified about to avoid
+        // notifying about an episode we already notified about
+        // limitation: so if added episodes release at or before that last episode
+        // they will not be notified about
+        val releaseTime =
+            getFirstReleaseTime(min(releaseTimeLastNotified + 1, nextEpisodeReleaseTime))
+                // No episodes to notify about now or later, find new wake-up time.
+                ?: return true
 
-        for (episode in upcomingEpisodes) {
-            val releaseTime = episode.episode_firstairedms
+        if (releaseTime < nextEpisodeReleaseTime) {
             // Any episodes added, or with changed release time, or where notifications
             // where enabled for a show that release before the next one planned to notify
             // about?
-            if (releaseTime < nextEpisodeReleaseTime) {
-                // limit to those released after the episode we last notified about to avoid
-                // notifying about an episode we already notified about
-                // limitation: so if added episodes release at or before that last episode
-                // they will not be notified about
-                if (releaseTime > releaseTimeLastNotified) {
-                    return true
-                }
-            } else {
-                // Episode released at or after the next planned one.
-                @Suppress("RedundantIf")
-                return if (releaseTime > nextEpisodeReleaseTime) {
-                    // Episode is not the one planned to notify about, find a new one.
-                    // This can happen if the episode release time has changed, it was
-                    // removed or notifications for a show have been disabled.
-                    true
-                } else {
-                    // Next to notify about is the planned one, continue sleeping until then.
-                    false
-                }
-            }
+            return true
         }
-
-        // No episodes to notify about now or later, find new wake-up time.
-        return true
+        // Episode released at or after the next planned one.
+        // If it is not the one planned to notify about, find a new one.
+        // This can happen if the episode release time has changed, it was
+        // removed or notifications for a show have been disabled.
+        // Otherwise the next to notify about is the planned one, continue sleeping until then.
+        return releaseTime > nextEpisodeReleaseTime
     }
 
     /**
-     * Get episodes which released 12 hours ago until in 14 days (to avoid
-     * loading too much data), excludes some episodes based on user settings.
-     * Ordered by [ORDER].
+     * Queries episodes which released 12 hours ago until in 14 days (to avoid loading too much
+     * data), excludes some episodes based on user settings.
+     *
+     * Does not load all of these episodes at once, but only the release time of the next one to
+     * check (which uses the release time index) or only the episodes to notify about.
      */
-    private fun queryUpcomingEpisodes(customCurrentTime: Long): List<SgEpisode2WithShow> {
-        val selection = StringBuilder(SELECTION)
+    private inner class UpcomingEpisodes(customCurrentTime: Long) {
 
         // Should be able to return at least 1 episode where release time is later
         // than latestTimeToInclude. That can be up to 7 days. But also as small as a few minutes.
         // To avoid waking up too often if there are no episodes for a few days,
         // look ahead up to 14 days.
-        val bindArgs = arrayOf<Any>(
-            customCurrentTime - 12 * DateUtils.HOUR_IN_MILLIS,
-            customCurrentTime + 14 * DateUtils.DAY_IN_MILLIS
-        )
+        private val minReleaseTime = customCurrentTime - 12 * DateUtils.HOUR_IN_MILLIS
+        private val maxReleaseTime = customCurrentTime + 14 * DateUtils.DAY_IN_MILLIS
 
-        val isNoSpecials = isHidingSpecials(context)
-        Timber.d("Settings: specials: %s", if (isNoSpecials) "YES" else "NO")
-        if (isNoSpecials) {
-            selection.append(" AND ").append(SgEpisode2Columns.SELECTION_NO_SPECIALS)
-        }
-        if (NotificationSettings.isIgnoreHiddenShows(context)) {
-            selection.append(" AND ").append(SgShow2Columns.SELECTION_NO_HIDDEN)
-        }
-        if (NotificationSettings.isOnlyNextEpisodes(context)) {
-            selection.append(" AND (")
-                .append(SgShow2Columns.NEXTEPISODE + "=''")
-                .append(" OR ")
-                .append(SgShow2Columns.NEXTEPISODE + "=" + SgEpisode2WithShow.SG_EPISODE_ID)
-                .append(")")
+        private val selection: String = buildString {
+            append(SELECTION)
+
+            val isNoSpecials = isHidingSpecials(context)
+            Timber.d("Settings: specials: %s", if (isNoSpecials) "YES" else "NO")
+            if (isNoSpecials) {
+                append(" AND ").append(SgEpisode2Columns.SELECTION_NO_SPECIALS)
+            }
+            if (NotificationSettings.isIgnoreHiddenShows(context)) {
+                append(" AND ").append(SgShow2Columns.SELECTION_NO_HIDDEN)
+            }
+            if (NotificationSettings.isOnlyNextEpisodes(context)) {
+                append(" AND (")
+                    .append(SgShow2Columns.NEXTEPISODE + "=''")
+                    .append(" OR ")
+                    .append(SgShow2Columns.NEXTEPISODE + "=" + SgEpisode2WithShow.SG_EPISODE_ID)
+                    .append(")")
+            }
         }
 
-        val query = (SgEpisode2WithShow.SELECT
-                + " WHERE " + selection
-                + " ORDER BY " + ORDER)
+        private fun bindArgs(fromReleaseTime: Long, toReleaseTime: Long) = arrayOf<Any>(
+            max(fromReleaseTime, minReleaseTime),
+            min(toReleaseTime, maxReleaseTime)
+        )
 
-        return getInstance(context).sgEpisode2Helper()
-            .getEpisodesWithShow(SimpleSQLiteQuery(query, bindArgs))
+        /**
+         * Returns the release time of the first episode released at or after [fromReleaseTime],
+         * or null if there is none.
+         */
+        fun getFirstReleaseTime(fromReleaseTime: Long): Long? {
+            val query = ("SELECT " + SgEpisode2Columns.FIRSTAIREDMS
+                    + " " + SgEpisode2WithShow.FROM
+                    + " WHERE " + selection
+                    + " ORDER BY " + SgEpisode2Columns.FIRSTAIREDMS + " ASC LIMIT 1")
+            return getInstance(context).sgEpisode2Helper()
+                .getReleaseTime(
+                    SimpleSQLiteQuery(query, bindArgs(fromReleaseTime, maxReleaseTime))
+                )
+        }
+
+        /**
+         * Returns episodes released at or after [fromReleaseTime] and before [toReleaseTime].
+         * Ordered by [ORDER].
+         */
+        fun getEpisodes(fromReleaseTime: Long, toReleaseTime: Long): List<SgEpisode2WithShow> {
+            val query = (SgEpisode2WithShow.SELECT
+                    + " WHERE " + selection
+                    + " ORDER BY " + ORDER)
+            return getInstance(context).sgEpisode2Helper()
+                .getEpisodesWithShow(
+                    SimpleSQLiteQuery(query, bindArgs(fromReleaseTime, toReleaseTime))
+                )
+        }
     }
 
     private fun maybeNotify(
-        upcomingEpisodes: List<SgEpisode2WithShow>,
+        upcomingEpisodes: UpcomingEpisodes,
         latestTimeToInclude: Long
     ) {
-        val notifyPositions: MutableList<Int> = ArrayList()
         val latestTimeCleared = NotificationSettings.getLastCleared(context)
 
-        for (i in upcomingEpisodes.indices) {
-            // get episodes which are within the notification threshold (user set)...
-            val releaseTime = upcomingEpisodes[i].episode_firstairedms
-            if (releaseTime <= latestTimeToInclude) {
-                // ...and released after the last one the user cleared.
-                // Note: should be at most those of the last few hours (see cursor query).
-                if (releaseTime > latestTimeCleared) {
-                    notifyPositions.add(i)
-                }
-            } else {
-                // Too far into the future, stop!
-                break
-            }
-        }
+        // get episodes which are within the notification threshold (user set)
+        // and released after the last one the user cleared.
+        // Note: should be at most those of the last few hours (see query).
+        val episodes = upcomingEpisodes.getEpisodes(
+            fromReleaseTime = latestTimeCleared + 1,
+            toReleaseTime = latestTimeToInclude + 1
+        )
 
         // Notify if we found any episodes, store latest release time we notify about
-        if (notifyPositions.size > 0) {
-            val latestAirtime = upcomingEpisodes[notifyPositions[notifyPositions.size - 1]]
-                .episode_firstairedms
+        if (episodes.isNotEmpty()) {
+            val latestAirtime = episodes.last().episode_firstairedms
             NotificationSettings.setLastNotifiedAbout(context, latestAirtime)
             Timber.d(
                 "Notify about %d episodes, latest released at: %s",
-                notifyPositions.size, Instant.ofEpochMilli(latestAirtime)
+                episodes.size, Instant.ofEpochMilli(latestAirtime)
             )
-            notifyAbout(upcomingEpisodes, notifyPositions, latestAirtime)
+            notifyAbout(episodes, episodes.indices.toList(), latestAirtime)
         }
     }
 
@@ -880,6 +880,9 @@ public class SeriesGuideContract {
          */
         String LAST_UPDATED = "episode_lastupdate";
 
+        /** See {@link SgEpisode2#getContentHash()}. */
+        String CONTENT_HASH = "episode_content_hash";
+
         // Options to hide special episodes and watched shows originally added thanks to JakeWharton
         String SELECTION_UNWATCHED = WATCHED + "=" + EpisodeFlags.UNWATCHED;
         String SELECTION_NOT_SKIPPED = WATCHED + "!=" + EpisodeFlags.SKIPPED;
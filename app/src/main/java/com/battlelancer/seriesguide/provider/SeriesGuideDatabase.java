@@ -339,6 +339,53 @@ public class SeriesGuideDatabase {
 
             + ");";
 
+    /**
+     * Keep {@link Tables#EPISODES_SEARCH} in sync with its external content table
+     * {@link Tables#SG_EPISODE}. Entries must be removed before the episode row changes as FTS
+     * reads the content table to find which terms to delete.
+     */
+    static final String[] CREATE_SEARCH_TRIGGERS = {
+            "CREATE TRIGGER " + Tables.EPISODES_SEARCH + "_after_insert"
+                    + " AFTER INSERT ON " + Tables.SG_EPISODE + " BEGIN"
+                    + " INSERT INTO " + Tables.EPISODES_SEARCH
+                    + "(docid," + SgEpisode2Columns.TITLE + "," + SgEpisode2Columns.OVERVIEW + ")"
+                    + " VALUES(new." + BaseColumns._ID + ",new." + SgEpisode2Columns.TITLE
+                    + ",new." + SgEpisode2Columns.OVERVIEW + ");"
+                    + " END",
+            "CREATE TRIGGER " + Tables.EPISODES_SEARCH + "_before_update"
+                    + " BEFORE UPDATE OF " + SgEpisode2Columns.TITLE + ","
+                    + SgEpisode2Columns.OVERVIEW + " ON " + Tables.SG_EPISODE + " BEGIN"
+                    + " DELETE FROM " + Tables.EPISODES_SEARCH
+                    + " WHERE docid=old." + BaseColumns._ID + ";"
+                    + " END",
+            "CREATE TRIGGER " + Tables.EPISODES_SEARCH + "_after_update"
+                    + " AFTER UPDATE OF " + SgEpisode2Columns.TITLE + ","
+                    + SgEpisode2Columns.OVERVIEW + " ON " + Tables.SG_EPISODE + " BEGIN"
+                    + " INSERT INTO " + Tables.EPISODES_SEARCH
+                    + "(docid," + SgEpisode2Columns.TITLE + "," + SgEpisode2Columns.OVERVIEW + ")"
+                    + " VALUES(new." + BaseColumns._ID + ",new." + SgEpisode2Columns.TITLE
+                    + ",new." + SgEpisode2Columns.OVERVIEW + ");"
+                    + " END",
+            "CREATE TRIGGER " + Tables.EPISODES_SEARCH + "_before_delete"
+                    + " BEFORE DELETE ON " + Tables.SG_EPISODE + " BEGIN"
+                    + " DELETE FROM " + Tables.EPISODES_SEARCH
+                    + " WHERE docid=old." + BaseColumns._ID + ";"
+                    + " END"
+    };
+
+    private static final String[] SEARCH_TRIGGER_NAMES = {
+            Tables.EPISODES_SEARCH + "_after_insert",
+            Tables.EPISODES_SEARCH + "_before_update",
+            Tables.EPISODES_SEARCH + "_after_update",
+            Tables.EPISODES_SEARCH + "_before_delete"
+    };
+
+    /**
+     * Number of index blocks a single {@link #mergeFtsTable(Context)} may merge, roughly 1 MB of
+     * work to keep the write lock short.
+     */
+    private static final int FTS_MERGE_BLOCKS = 256;
+
     @VisibleForTesting
     public static final String CREATE_LISTS_TABLE = "CREATE TABLE " + Tables.LISTS + " ("
 
@@ -939,53 +986,59 @@ public class SeriesGuideDatabase {
 //    }
 
     /**
-     * Drops the current {@link Tables#EPISODES_SEARCH} table and re-creates it with current data
-     * from {@link Tables#SG_EPISODE}.
+     * Creates the {@link Tables#EPISODES_SEARCH} table and the triggers that keep it up to date.
      */
-    public static void rebuildFtsTable(Context context) {
-        Timber.d("Renewing FTS table");
-        SupportSQLiteDatabase db = SgRoomDatabase.getInstance(context).getOpenHelper()
-                .getWritableDatabase();
-        if (!recreateFtsTable(db)) {
-            return;
+    static void createFtsTable(SupportSQLiteDatabase db) {
+        db.execSQL(CREATE_SEARCH_TABLE);
+        for (String createTrigger : CREATE_SEARCH_TRIGGERS) {
+            db.execSQL(createTrigger);
         }
-        rebuildFtsTableJellyBean(db);
     }
 
     /**
-     * Works with FTS4 search table.
+     * Drops the current {@link Tables#EPISODES_SEARCH} table and its triggers, re-creates them and
+     * populates the table with current data from {@link Tables#SG_EPISODE}.
+     * <p>
+     * This is expensive for large libraries, so only used when migrating the database. Afterwards
+     * the triggers keep the table up to date.
      */
-    private static void rebuildFtsTableJellyBean(SupportSQLiteDatabase db) {
-        try {
-            db.beginTransaction();
-            try {
-                db.execSQL("INSERT OR IGNORE INTO " + Tables.EPISODES_SEARCH
-                        + "(" + Tables.EPISODES_SEARCH + ") VALUES('rebuild')");
-                db.setTransactionSuccessful();
-            } finally {
-                db.endTransaction();
-            }
-        } catch (SQLiteException e) {
-            Timber.e(e, "rebuildFtsTableJellyBean: failed to populate table.");
-            DBUtils.postDatabaseError(e);
+    static void recreateFtsTable(SupportSQLiteDatabase db) {
+        for (String triggerName : SEARCH_TRIGGER_NAMES) {
+            db.execSQL("DROP TRIGGER IF EXISTS " + triggerName);
         }
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.EPISODES_SEARCH);
+        createFtsTable(db);
+        db.execSQL("INSERT INTO " + Tables.EPISODES_SEARCH
+                + "(" + Tables.EPISODES_SEARCH + ") VALUES('rebuild')");
     }
 
-    private static boolean recreateFtsTable(SupportSQLiteDatabase db) {
+    /**
+     * Incrementally merges some index segments of {@link Tables#EPISODES_SEARCH} that were added
+     * by the triggers, so searches stay fast. Does a limited amount of work, so can be called
+     * regularly, like after syncing.
+     */
+    public static void mergeFtsTable(Context context) {
+        runFtsCommand(context, "merge=" + FTS_MERGE_BLOCKS + ",8");
+    }
+
+    /**
+     * Merges all index segments of {@link Tables#EPISODES_SEARCH} into one. As this rewrites the
+     * whole index, only use after adding many episodes at once, like after an import.
+     */
+    public static void optimizeFtsTable(Context context) {
+        runFtsCommand(context, "optimize");
+    }
+
+    private static void runFtsCommand(Context context, String command) {
+        Timber.d("Running FTS command %s", command);
+        SupportSQLiteDatabase db = SgRoomDatabase.getInstance(context).getOpenHelper()
+                .getWritableDatabase();
         try {
-            db.beginTransaction();
-            try {
-                db.execSQL("drop table if exists " + Tables.EPISODES_SEARCH);
-                db.execSQL(CREATE_SEARCH_TABLE);
-                db.setTransactionSuccessful();
-            } finally {
-                db.endTransaction();
-            }
-            return true;
+            db.execSQL("INSERT INTO " + Tables.EPISODES_SEARCH
+                    + "(" + Tables.EPISODES_SEARCH + ") VALUES(?)", new Object[]{command});
         } catch (SQLiteException e) {
-            Timber.e(e, "recreateFtsTable: failed.");
+            Timber.e(e, "runFtsCommand: %s failed.", command);
             DBUtils.postDatabaseError(e);
-            return false;
         }
     }
 
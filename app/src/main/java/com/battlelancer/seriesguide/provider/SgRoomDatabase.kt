@@ -72,6 +72,14 @@ import timber.log.Timber
         AutoMigration(
             from = SgRoomDatabase.VERSION_53_SHOW_TMDB_RATINGS,
             to = SgRoomDatabase.VERSION_54_SHOW_NOTES
+        ),
+        AutoMigration(
+            from = SgRoomDatabase.VERSION_55_MOVIE_SLUG_DOUBLE_RATING,
+            to = SgRoomDatabase.VERSION_56_EPISODE_INDEXES
+        ),
+        AutoMigration(
+            from = SgRoomDatabase.VERSION_57_EPISODE_SEARCH_TRIGGERS,
+            to = SgRoomDatabase.VERSION_58_EPISODE_CONTENT_HASH
         )
     ]
 )
@@ -91,8 +99,8 @@ abstract class SgRoomDatabase : RoomDatabase() {
         private val context = context.applicationContext
 
         override fun onCreate(db: SupportSQLiteDatabase) {
-            // manually create FTS table, not supported by Room
-            db.execSQL(SeriesGuideDatabase.CREATE_SEARCH_TABLE)
+            // manually create FTS table and its triggers, not supported by Room
+            SeriesGuideDatabase.createFtsTable(db)
             // Add initial data, currently only first list
             val listName = context.getString(R.string.first_list)
             val listId: String = ListsTools.generateListId(listName)!!
@@ -157,7 +165,25 @@ abstract class SgRoomDatabase : RoomDatabase() {
          */
         const val VERSION_55_MOVIE_SLUG_DOUBLE_RATING = 55
 
-        const val VERSION = VERSION_55_MOVIE_SLUG_DOUBLE_RATING
+        /**
+         * - Add indexes on [SgEpisode2] for looking up episodes by number, counting not watched
+         *   episodes, release time ranges and TMDB ID.
+         * - Remove the show ID index of [SgEpisode2], the index for looking up episodes by number
+         *   covers it.
+         */
+        const val VERSION_56_EPISODE_INDEXES = 56
+
+        /**
+         * - Add triggers to update the episode search table when episodes change.
+         */
+        const val VERSION_57_EPISODE_SEARCH_TRIGGERS = 57
+
+        /**
+         * - Add [SgEpisode2.contentHash].
+         */
+        const val VERSION_58_EPISODE_CONTENT_HASH = 58
+
+        const val VERSION = VERSION_58_EPISODE_CONTENT_HASH
 
         @Volatile
         private var instance: SgRoomDatabase? = null
@@ -181,6 +207,7 @@ abstract class SgRoomDatabase : RoomDatabase() {
                             SgRoomDatabase::class.java,
                             SeriesGuideDatabase.DATABASE_NAME
                         ).addMigrations(
+                            MIGRATION_56_57,
                             MIGRATION_54_55,
                             MIGRATION_49_50,
                             MIGRATION_48_49,
@@ -229,6 +256,16 @@ abstract class SgRoomDatabase : RoomDatabase() {
             val seasonTvdbId: Int
         )
 
+        @JvmField
+        val MIGRATION_56_57: Migration =
+            object : Migration(VERSION_56_EPISODE_INDEXES, VERSION_57_EPISODE_SEARCH_TRIGGERS) {
+                override fun migrate(db: SupportSQLiteDatabase) {
+                    Timber.d("Migrating database from 56 to 57")
+                    // Populate once, afterwards triggers keep the search table up to date.
+                    SeriesGuideDatabase.recreateFtsTable(db)
+                }
+            }
+
         @JvmField
         val MIGRATION_54_55: Migration =
             object : Migration(VERSION_54_SHOW_NOTES, VERSION_55_MOVIE_SLUG_DOUBLE_RATING) {
@@ -17,6 +17,10 @@ object TmdbSettings {
      week, updating weekly should be fine. */
     private const val UPDATE_INTERVAL_MS = 7 * DateUtils.DAY_IN_MILLIS
 
+    private const val KEY_SHOW_CHANGES_CHECKED = "com.battlelancer.seriesguide.tmdb.showchangesms"
+
+    private const val KEY_SHOW_POSTER_ATTEMPTS = "com.battlelancer.seriesguide.tmdb.showposterattempts"
+
     private const val KEY_TMDB_BASE_URL = "com.battlelancer.seriesguide.tmdb.baseurl"
     const val DEFAULT_BASE_URL = "https://image.tmdb.org/t/p/"
 
@@ -32,6 +36,37 @@ object TmdbSettings {
         }
     }
 
+    /**
+     * Returns the time at which shows changed on TMDB were last checked and updated, or null if
+     * never.
+     */
+    fun getShowChangesCheckedMs(context: Context): Long? {
+        val checkedMs = PreferenceManager.getDefaultSharedPreferences(context)
+            .getLong(KEY_SHOW_CHANGES_CHECKED, -1)
+        return if (checkedMs >= 0) checkedMs else null
+    }
+
+    fun setShowChangesCheckedMs(context: Context, checkedMs: Long) {
+        PreferenceManager.getDefaultSharedPreferences(context).edit {
+            putLong(KEY_SHOW_CHANGES_CHECKED, checkedMs)
+        }
+    }
+
+    /**
+     * Returns the keys of shows for which downloading a missing poster was already tried, see
+     * [com.battlelancer.seriesguide.sync.TmdbSync.updateMissingShowPosters].
+     */
+    fun getShowPosterAttempts(context: Context): Set<String> =
+        PreferenceManager.getDefaultSharedPreferences(context)
+            .getStringSet(KEY_SHOW_POSTER_ATTEMPTS, null)
+            ?: emptySet()
+
+    fun setShowPosterAttempts(context: Context, attempts: Set<String>) {
+        PreferenceManager.getDefaultSharedPreferences(context).edit {
+            putStringSet(KEY_SHOW_POSTER_ATTEMPTS, attempts)
+        }
+    }
+
     /**
      * Saves the base URL, unless it's empty or blank.
      */
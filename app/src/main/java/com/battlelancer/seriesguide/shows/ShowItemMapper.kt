@@ -0,0 +1,89 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.shows
+
+import android.content.Context
+import android.text.format.DateFormat
+import android.text.format.DateUtils
+import com.battlelancer.seriesguide.settings.DisplaySettings
+import com.battlelancer.seriesguide.shows.ShowsAdapter.ShowItem
+import com.battlelancer.seriesguide.shows.ShowsAdapter.ShowItem.NextEpisodeTime
+import com.battlelancer.seriesguide.shows.database.SgShow2ForLists
+import com.battlelancer.seriesguide.util.TimeTools
+import org.threeten.bp.ZoneId
+import java.util.Locale
+
+/**
+ * Maps [SgShow2ForLists] to [ShowItem], but only shows that changed since the last call: keeps the
+ * item of each show by ID and re-uses it if the show data is equal.
+ *
+ * The next episode time may be displayed relative to now, so it is formatted again once the
+ * minute (the resolution of relative times) changed, without mapping other values again. If
+ * settings or device values used for formatting change, maps all shows again.
+ *
+ * Not thread-safe, map one list at a time.
+ */
+class ShowItemMapper(private val context: Context) {
+
+    private data class FormatSettings(
+        val isDisplayExactDate: Boolean,
+        val showsTimeOffset: Int,
+        val is24HourFormat: Boolean,
+        val zoneId: ZoneId,
+        val locale: Locale
+    )
+
+    private class Entry(
+        val show: SgShow2ForLists,
+        val item: ShowItem,
+        val nextEpisodeTime: NextEpisodeTime?
+    )
+
+    private var entries = HashMap<Long, Entry>()
+    private var formatSettings: FormatSettings? = null
+    private var formattedAtMinute = -1L
+
+    fun map(shows: List<SgShow2ForLists>): MutableList<ShowItem> {
+        val settings = FormatSettings(
+            isDisplayExactDate = DisplaySettings.isDisplayExactDate(context),
+            showsTimeOffset = DisplaySettings.getShowsTimeOffset(context),
+            is24HourFormat = DateFormat.is24HourFormat(context),
+            zoneId = TimeTools.safeSystemDefaultZoneId(),
+            locale = Locale.getDefault()
+        )
+        if (settings != formatSettings) {
+            entries.clear()
+            formatSettings = settings
+        }
+        val minute = System.currentTimeMillis() / DateUtils.MINUTE_IN_MILLIS
+        val isNewMinute = minute != formattedAtMinute
+        formattedAtMinute = minute
+
+        // Only keep entries of shows in this list.
+        val newEntries = HashMap<Long, Entry>(shows.size)
+        val items = ArrayList<ShowItem>(shows.size)
+        for (show in shows) {
+            val existing = entries[show.id]
+            val entry = if (existing != null && existing.show == show) {
+                val nextEpisodeTime = existing.nextEpisodeTime
+                if (isNewMinute && nextEpisodeTime != null && !settings.isDisplayExactDate) {
+                    val episodeTime =
+                        ShowItem.formatEpisodeTime(context, nextEpisodeTime, false)
+                    Entry(show, existing.item.copy(episodeTime = episodeTime), nextEpisodeTime)
+                } else {
+                    existing
+                }
+            } else {
+                val (item, nextEpisodeTime) =
+                    ShowItem.map(show, context, settings.isDisplayExactDate)
+                Entry(show, item, nextEpisodeTime)
+            }
+            newEntries[show.id] = entry
+            items.add(entry.item)
+        }
+        entries = newEntries
+        return items
+    }
+
+}
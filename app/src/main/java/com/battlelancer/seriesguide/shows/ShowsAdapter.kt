@@ -10,7 +10,6 @@ import androidx.recyclerview.widget.DiffUtil
 import androidx.recyclerview.widget.ListAdapter
 import androidx.recyclerview.widget.RecyclerView
 import com.battlelancer.seriesguide.R
-import com.battlelancer.seriesguide.settings.DisplaySettings
 import com.battlelancer.seriesguide.shows.FirstRunView.FirstRunClickListener
 import com.battlelancer.seriesguide.shows.database.SgShow2ForLists
 import com.battlelancer.seriesguide.shows.tools.ShowStatus
@@ -18,6 +17,7 @@ import com.battlelancer.seriesguide.util.TextTools
 import com.battlelancer.seriesguide.util.TimeTools
 import com.battlelancer.seriesguide.util.TimeTools.formatWithDeviceZoneToDayAndTime
 import org.threeten.bp.Instant
+import java.util.Date
 
 class ShowsAdapter(
     private val context: Context,
@@ -100,6 +100,15 @@ class ShowsAdapter(
         val isHeader: Boolean
     ) {
 
+        /**
+         * Release time of the next episode with the user offset applied and if it is on the same
+         * week day the show usually releases on.
+         */
+        data class NextEpisodeTime(
+            val releaseTime: Date,
+            val isSameWeekDay: Boolean
+        )
+
         companion object {
             val HEADER_FIRST_RUN = header()
 
@@ -121,7 +130,17 @@ class ShowsAdapter(
                 )
             }
 
-            fun map(sgShow: SgShow2ForLists, context: Context): ShowItem {
+            /**
+             * Also returns the [NextEpisodeTime] if there is a next episode, so
+             * [ShowItem.episodeTime] can be formatted again with [formatEpisodeTime].
+             *
+             * Use [ShowItemMapper] to only map changed shows.
+             */
+            fun map(
+                sgShow: SgShow2ForLists,
+                context: Context,
+                displayExactDate: Boolean
+            ): Pair<ShowItem, NextEpisodeTime?> {
                 val remainingCount =
                     TextTools.getRemainingEpisodes(context.resources, sgShow.unwatchedCount)
 
@@ -130,12 +149,14 @@ class ShowsAdapter(
                 val releaseTimeShow = TimeTools.getReleaseDateTime(context, sgShow)
 
                 // next episode info
+                val nextEpisodeTime: NextEpisodeTime?
                 val episodeTime: String?
                 val episode: String
                 val fieldValue = sgShow.nextText
                 val hasNextEpisode = !TextUtils.isEmpty(fieldValue)
                 if (!hasNextEpisode) {
                     // display show status if there is no next episode
+                    nextEpisodeTime = null
                     episodeTime = ShowStatus.getStatus(context, sgShow.status ?: ShowStatus.UNKNOWN)
                     episode = ""
                 } else {
@@ -143,26 +164,15 @@ class ShowsAdapter(
 
                     val releaseTimeEpisode =
                         TimeTools.applyUserOffset(context, sgShow.nextAirdateMs)
-                    val displayExactDate = DisplaySettings.isDisplayExactDate(context)
-                    val dateTime = if (displayExactDate) {
-                        TimeTools.formatToLocalDateShort(context, releaseTimeEpisode)
-                    } else {
-                        TimeTools.formatToLocalRelativeTime(context, releaseTimeEpisode)
-                    }
-                    episodeTime = if (TimeTools.isSameWeekDay(
+                    nextEpisodeTime = NextEpisodeTime(
+                        releaseTimeEpisode,
+                        TimeTools.isSameWeekDay(
                             Instant.ofEpochMilli(releaseTimeEpisode.time),
                             releaseTimeShow?.toInstant(),
                             weekDay
                         )
-                    ) {
-                        dateTime // just display date
-                    } else {
-                        // display date and explicitly day
-                        context.getString(
-                            R.string.format_date_and_day,
-                            dateTime, TimeTools.formatToLocalDay(releaseTimeEpisode)
-                        )
-                    }
+                    )
+                    episodeTime = formatEpisodeTime(context, nextEpisodeTime, displayExactDate)
                 }
 
                 val timeAndNetwork = TextTools.dotSeparate(
@@ -184,7 +194,32 @@ class ShowsAdapter(
                     remainingCount,
                     sgShow.posterSmall,
                     false
-                )
+                ) to nextEpisodeTime
+            }
+
+            /**
+             * If not [displayExactDate], the result is relative to the current time.
+             */
+            fun formatEpisodeTime(
+                context: Context,
+                nextEpisodeTime: NextEpisodeTime,
+                displayExactDate: Boolean
+            ): String {
+                val releaseTimeEpisode = nextEpisodeTime.releaseTime
+                val dateTime = if (displayExactDate) {
+                    TimeTools.formatToLocalDateShort(context, releaseTimeEpisode)
+                } else {
+                    TimeTools.formatToLocalRelativeTime(context, releaseTimeEpisode)
+                }
+                return if (nextEpisodeTime.isSameWeekDay) {
+                    dateTime // just display date
+                } else {
+                    // display date and explicitly day
+                    context.getString(
+                        R.string.format_date_and_day,
+                        dateTime, TimeTools.formatToLocalDay(releaseTimeEpisode)
+                    )
+                }
             }
         }
     }
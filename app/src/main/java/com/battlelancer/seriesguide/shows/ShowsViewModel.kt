@@ -50,6 +50,7 @@ class ShowsViewModel(application: Application) : AndroidViewModel(application) {
         }
     val showItemsLiveData = MediatorLiveData<MutableList<ShowsAdapter.ShowItem>?>()
     private val showItemsLiveDataSemaphore = Semaphore(1)
+    private val showItemMapper = ShowItemMapper(application)
 
     private val watchProvidersFilterSource =
         SgRoomDatabase.getInstance(getApplication()).sgWatchProviderHelper()
@@ -75,11 +76,9 @@ class ShowsViewModel(application: Application) : AndroidViewModel(application) {
             // calculate actually displayed values on a background thread
             viewModelScope.launch(Dispatchers.IO) {
                 // Use Semaphore with 1 permit to ensure results are delivered in order and never
-                // processed in parallel.
+                // processed in parallel (which the mapper also requires).
                 showItemsLiveDataSemaphore.withPermit {
-                    val mapped = sgShows?.mapTo(ArrayList(sgShows.size)) {
-                        ShowsAdapter.ShowItem.map(it, getApplication())
-                    }
+                    val mapped = sgShows?.let { showItemMapper.map(it) }
                     showItemsLiveData.postValue(mapped)
                 }
             }
@@ -0,0 +1,58 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.shows.calendar
+
+import android.content.Context
+import android.text.format.DateUtils
+import com.battlelancer.seriesguide.settings.DisplaySettings
+import com.battlelancer.seriesguide.util.TimeTools
+import org.threeten.bp.Instant
+import org.threeten.bp.LocalDate
+import org.threeten.bp.LocalTime
+import org.threeten.bp.ZoneId
+
+/**
+ * Groups episode release times into the days the calendar displays them at: the day in [zoneId]
+ * after adding the user-defined offset [offsetMs].
+ *
+ * As the offset and time zone are only read once, create a new instance if they may have changed.
+ */
+class CalendarDayBuckets(
+    private val offsetMs: Long,
+    private val zoneId: ZoneId
+) {
+
+    private fun localDay(releaseTime: Long): LocalDate =
+        Instant.ofEpochMilli(releaseTime + offsetMs).atZone(zoneId).toLocalDate()
+
+    /**
+     * Returns the time of the header of the day the episode is displayed at. This is not midnight
+     * but 1 AM as upcoming episodes move to recent 1 hour late, so the header would display the
+     * wrong relative time close to midnight.
+     */
+    fun headerTime(releaseTime: Long): Long =
+        localDay(releaseTime).atTime(HEADER_TIME).atZone(zoneId).toInstant().toEpochMilli()
+
+    /**
+     * Returns the first release time that is displayed at the same day as [releaseTime].
+     */
+    fun dayStart(releaseTime: Long): Long =
+        localDay(releaseTime).atStartOfDay(zoneId).toInstant().toEpochMilli() - offsetMs
+
+    /**
+     * Returns the first release time that is displayed at the day after [releaseTime].
+     */
+    fun dayEnd(releaseTime: Long): Long =
+        localDay(releaseTime).plusDays(1).atStartOfDay(zoneId).toInstant()
+            .toEpochMilli() - offsetMs
+
+    companion object {
+        private val HEADER_TIME = LocalTime.of(1, 0)
+
+        fun fromSettings(context: Context): CalendarDayBuckets = CalendarDayBuckets(
+            DisplaySettings.getShowsTimeOffset(context) * DateUtils.HOUR_IN_MILLIS,
+            TimeTools.safeSystemDefaultZoneId()
+        )
+    }
+}
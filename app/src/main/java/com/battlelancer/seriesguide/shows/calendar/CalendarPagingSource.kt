@@ -0,0 +1,242 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.shows.calendar
+
+import androidx.paging.PagingSource
+import androidx.paging.PagingState
+import androidx.room.InvalidationTracker
+import androidx.sqlite.db.SimpleSQLiteQuery
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.SgEpisode2Columns.FIRSTAIREDMS
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.SgEpisode2Columns.SORT_RECENT
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.SgEpisode2Columns.SORT_UPCOMING
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables
+import com.battlelancer.seriesguide.provider.SgRoomDatabase
+import com.battlelancer.seriesguide.shows.calendar.CalendarFragment2ViewModel.CalendarItem
+import com.battlelancer.seriesguide.shows.database.SgEpisode2WithShow
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Calendar episodes matching [selection], see [SgEpisode2WithShow.buildEpisodesWithShowSelection],
+ * grouped into days by [dayBuckets].
+ */
+data class CalendarQuery(
+    val selection: String,
+    val isUpcomingElseRecent: Boolean,
+    val dayBuckets: CalendarDayBuckets
+)
+
+/**
+ * Loads calendar episodes in pages of whole days.
+ *
+ * Instead of an offset, pages are keyed by the release time at which a day starts (keyset
+ * pagination). So loading a page only reads the episodes of its days using the release time
+ * index, and only those are sorted. Only when jumping to a position (like when fast scrolling)
+ * the release time at that position is looked up by offset, using the index as well.
+ *
+ * Invalidates if episodes or shows change.
+ */
+class CalendarPagingSource(
+    private val database: SgRoomDatabase,
+    private val query: CalendarQuery
+) : PagingSource<CalendarPagingSource.Key, CalendarItem>() {
+
+    sealed class Key {
+        /**
+         * The release time between two days, see [CalendarDayBuckets].
+         */
+        data class Boundary(val releaseTime: Long) : Key()
+
+        /**
+         * A position in the list.
+         */
+        data class Position(val position: Int) : Key()
+    }
+
+    private val isAscending = query.isUpcomingElseRecent
+    private val dayBuckets = query.dayBuckets
+    private val helper = database.sgEpisode2Helper()
+
+    private val isObserverRegistered = AtomicBoolean()
+    private val observer = object : InvalidationTracker.Observer(
+        arrayOf(Tables.SG_EPISODE, Tables.SG_SHOW)
+    ) {
+        override fun onInvalidated(tables: Set<String>) {
+            invalidate()
+        }
+    }
+
+    init {
+        registerInvalidatedCallback {
+            if (isObserverRegistered.get()) {
+                database.invalidationTracker.removeObserver(observer)
+            }
+        }
+    }
+
+    override val jumpingSupported: Boolean
+        get() = true
+
+    override fun getRefreshKey(state: PagingState<Key, CalendarItem>): Key? {
+        return state.anchorPosition?.let { Key.Position(it) }
+    }
+
+    override suspend fun load(params: LoadParams<Key>): LoadResult<Key, CalendarItem> =
+        withContext(Dispatchers.IO) {
+            // Register on a background thread as it may access the database.
+            if (isObserverRegistered.compareAndSet(false, true)) {
+                database.invalidationTracker.addObserver(observer)
+            }
+            database.runInTransaction<LoadResult<Key, CalendarItem>> {
+                when (params) {
+                    is LoadParams.Refresh -> loadInitial(params.key, params.loadSize)
+                    is LoadParams.Append -> loadAfter(params.key.boundaryOrNull(), params.loadSize)
+                    is LoadParams.Prepend -> loadBefore(params.key.boundaryOrNull(), params.loadSize)
+                }
+            }
+        }
+
+    private fun Key.boundaryOrNull(): Long? = (this as? Key.Boundary)?.releaseTime
+
+    private fun loadInitial(key: Key?, loadSize: Int): LoadResult.Page<Key, CalendarItem> {
+        val start = when (key) {
+            null -> null
+            is Key.Boundary -> key.releaseTime
+            is Key.Position -> {
+                // Start with the day of the episode at the position.
+                val releaseTime = getReleaseTime(null, ascending = isAscending, key.position)
+                releaseTime?.let { boundaryBeforeDayOf(it) }
+            }
+        }
+        val page = loadAfter(start, loadSize)
+        return LoadResult.Page(
+            data = page.data,
+            prevKey = page.prevKey,
+            nextKey = page.nextKey,
+            itemsBefore = if (start != null) count(before = start) else 0,
+            itemsAfter = page.nextKey?.boundaryOrNull()?.let { count(after = it) } ?: 0
+        )
+    }
+
+    /**
+     * Loads all days of episodes after [start] (or from the first one) until there are at least
+     * [loadSize] episodes.
+     */
+    private fun loadAfter(start: Long?, loadSize: Int): LoadResult.Page<Key, CalendarItem> {
+        val lastReleaseTime = getReleaseTime(start, ascending = isAscending, loadSize - 1)
+        val end = lastReleaseTime?.let { boundaryAfterDayOf(it) }
+        return LoadResult.Page(
+            data = getItems(after = start, before = end),
+            prevKey = start?.let { Key.Boundary(it) },
+            nextKey = end?.let { Key.Boundary(it) }
+        )
+    }
+
+    /**
+     * Loads all days of episodes before [end] (or up to the last one) until there are at least
+     * [loadSize] episodes.
+     */
+    private fun loadBefore(end: Long?, loadSize: Int): LoadResult.Page<Key, CalendarItem> {
+        val firstReleaseTime = getReleaseTime(
+            end,
+            ascending = !isAscending,
+            loadSize - 1,
+            isAfter = false
+        )
+        val start = firstReleaseTime?.let { boundaryBeforeDayOf(it) }
+        return LoadResult.Page(
+            data = getItems(after = start, before = end),
+            prevKey = start?.let { Key.Boundary(it) },
+            nextKey = end?.let { Key.Boundary(it) }
+        )
+    }
+
+    /**
+     * Condition for episodes after a boundary in list order.
+     */
+    private fun afterCondition(): String =
+        if (isAscending) "$FIRSTAIREDMS>=?" else "$FIRSTAIREDMS<?"
+
+    /**
+     * Condition for episodes before a boundary in list order.
+     */
+    private fun beforeCondition(): String =
+        if (isAscending) "$FIRSTAIREDMS<?" else "$FIRSTAIREDMS>=?"
+
+    /**
+     * The boundary in list order after the day the episode released at [releaseTime] is in.
+     */
+    private fun boundaryAfterDayOf(releaseTime: Long): Long =
+        if (isAscending) dayBuckets.dayEnd(releaseTime) else dayBuckets.dayStart(releaseTime)
+
+    /**
+     * The boundary in list order before the day the episode released at [releaseTime] is in.
+     */
+    private fun boundaryBeforeDayOf(releaseTime: Long): Long =
+        if (isAscending) dayBuckets.dayStart(releaseTime) else dayBuckets.dayEnd(releaseTime)
+
+    private fun buildSelection(after: Long?, before: Long?): Pair<String, Array<Any>> {
+        val selection = StringBuilder(query.selection)
+        val args = ArrayList<Any>(2)
+        if (after != null) {
+            selection.append(" AND ").append(afterCondition())
+            args.add(after)
+        }
+        if (before != null) {
+            selection.append(" AND ").append(beforeCondition())
+            args.add(before)
+        }
+        return Pair(selection.toString(), args.toTypedArray())
+    }
+
+    /**
+     * Returns the release time of the episode at [offset] after (or if not [isAfter] before)
+     * [boundary], if there is one. Only orders by release time, so uses the release time index.
+     */
+    private fun getReleaseTime(
+        boundary: Long?,
+        ascending: Boolean,
+        offset: Int,
+        isAfter: Boolean = true
+    ): Long? {
+        val (selection, args) = if (isAfter) {
+            buildSelection(after = boundary, before = null)
+        } else {
+            buildSelection(after = null, before = boundary)
+        }
+        val order = if (ascending) "ASC" else "DESC"
+        return helper.getReleaseTime(
+            SimpleSQLiteQuery(
+                "SELECT $FIRSTAIREDMS ${SgEpisode2WithShow.FROM} WHERE $selection" +
+                        " ORDER BY $FIRSTAIREDMS $order LIMIT 1 OFFSET $offset",
+                args
+            )
+        )
+    }
+
+    private fun getItems(after: Long?, before: Long?): List<CalendarItem> {
+        val (selection, args) = buildSelection(after, before)
+        val sortOrder = if (isAscending) SORT_UPCOMING else SORT_RECENT
+        return helper
+            .getEpisodesWithShow(
+                SimpleSQLiteQuery(
+                    "${SgEpisode2WithShow.SELECT} WHERE $selection ORDER BY $sortOrder",
+                    args
+                )
+            )
+            .map { CalendarItem(dayBuckets.headerTime(it.episode_firstairedms), it) }
+    }
+
+    private fun count(after: Long? = null, before: Long? = null): Int {
+        val (selection, args) = buildSelection(after, before)
+        return helper.countEpisodes(
+            SimpleSQLiteQuery(
+                "SELECT COUNT(*) ${SgEpisode2WithShow.FROM} WHERE $selection",
+                args
+            )
+        )
+    }
+
+}
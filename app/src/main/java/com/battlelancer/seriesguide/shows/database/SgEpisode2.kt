@@ -10,6 +10,7 @@ import androidx.room.Index
 import androidx.room.PrimaryKey
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.SgEpisode2Columns.ABSOLUTE_NUMBER
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.SgEpisode2Columns.COLLECTED
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.SgEpisode2Columns.CONTENT_HASH
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.SgEpisode2Columns.DIRECTORS
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.SgEpisode2Columns.DVDNUMBER
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.SgEpisode2Columns.FIRSTAIREDMS
@@ -49,7 +50,15 @@ import com.battlelancer.seriesguide.shows.episodes.EpisodeFlags
     )],
     indices = [
         Index(SgSeason2Columns.REF_SEASON_ID),
-        Index(SgShow2Columns.REF_SHOW_ID)
+        // Look up episodes of a show by number, e.g. when applying flags by number.
+        // Also covers looking up all episodes of a show.
+        Index(SgShow2Columns.REF_SHOW_ID, SEASON, NUMBER),
+        // Covers counting not watched, released episodes of a show (or all shows).
+        Index(SgShow2Columns.REF_SHOW_ID, WATCHED, FIRSTAIREDMS, SEASON),
+        // Release time ranges, e.g. upcoming episodes for notifications and the calendar.
+        Index(FIRSTAIREDMS),
+        // Look up episodes by TMDB ID, e.g. when applying ratings.
+        Index(TMDB_ID)
     ]
 )
 data class SgEpisode2(
@@ -136,7 +145,14 @@ data class SgEpisode2(
      */
     @ColumnInfo(name = IMDBID) val imdbId: String? = "",
     @ColumnInfo(name = LAST_EDITED) val lastEditedSec: Long = 0,
-    @ColumnInfo(name = LAST_UPDATED) val lastUpdatedSec: Long = 0
+    @ColumnInfo(name = LAST_UPDATED) val lastUpdatedSec: Long = 0,
+    /**
+     * Fingerprint of the values last written from TMDB, see [SgEpisode2Update.contentHash].
+     * Null if not known, then the next show update writes the episode.
+     *
+     * Added with [SgRoomDatabase.VERSION_58_EPISODE_CONTENT_HASH].
+     */
+    @ColumnInfo(name = CONTENT_HASH) val contentHash: Long? = null
 ) {
     val playsOrZero: Int
         get() = plays ?: 0
@@ -18,6 +18,7 @@ import androidx.sqlite.db.SimpleSQLiteQuery
 import androidx.sqlite.db.SupportSQLiteQuery
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.SgEpisode2Columns.ABSOLUTE_NUMBER
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.SgEpisode2Columns.COLLECTED
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.SgEpisode2Columns.CONTENT_HASH
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.SgEpisode2Columns.DIRECTORS
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.SgEpisode2Columns.DVDNUMBER
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.SgEpisode2Columns.FIRSTAIREDMS
@@ -50,6 +51,7 @@ import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables
 import com.battlelancer.seriesguide.settings.DisplaySettings
 import com.battlelancer.seriesguide.shows.episodes.EpisodeFlags
 import com.battlelancer.seriesguide.shows.episodes.EpisodesSettings
+import com.battlelancer.seriesguide.shows.search.EpisodeSearchQuery
 import com.battlelancer.seriesguide.util.TimeTools
 
 @Dao
@@ -184,12 +186,19 @@ interface SgEpisode2Helper {
     fun getEpisodesWithShow(query: SupportSQLiteQuery): List<SgEpisode2WithShow>
 
     /**
-     * See [SgEpisode2WithShow.buildEpisodesWithShowQuery].
+     * Returns the release time of the first row, for example for
+     * [com.battlelancer.seriesguide.shows.calendar.CalendarPagingSource].
      */
-    @RawQuery(observedEntities = [SgEpisode2::class, SgShow2::class])
-    fun getEpisodesWithShowDataSource(query: SupportSQLiteQuery): PagingSource<Int, SgEpisode2WithShow>
+    @RawQuery
+    fun getReleaseTime(query: SupportSQLiteQuery): Long?
+
+    /**
+     * For [com.battlelancer.seriesguide.shows.calendar.CalendarPagingSource].
+     */
+    @RawQuery
+    fun countEpisodes(query: SupportSQLiteQuery): Int
 
-    @Query("SELECT _id, episode_tmdb_id, episode_number FROM sg_episode WHERE season_id = :seasonId")
+    @Query("SELECT _id, episode_tmdb_id, episode_number, episode_content_hash FROM sg_episode WHERE season_id = :seasonId")
     fun getEpisodeIdsOfSeason(seasonId: Long): List<SgEpisode2Ids>
 
     /**
@@ -207,8 +216,12 @@ interface SgEpisode2Helper {
     @Query("SELECT _id, episode_tmdb_id, season_id, series_id, episode_number, episode_season_number, episode_plays FROM sg_episode WHERE series_id = :showId AND episode_season_number != 0 ORDER BY episode_season_number ASC, episode_number ASC")
     fun getEpisodeNumbersOfShow(showId: Long): List<SgEpisode2Numbers>
 
-    @Query("SELECT _id, episode_number, episode_season_number, episode_watched, episode_plays, episode_collected FROM sg_episode WHERE series_id = :showId AND episode_tmdb_id > 0 AND (episode_watched != ${EpisodeFlags.UNWATCHED} OR episode_collected = 1)")
-    fun getEpisodesForHexagonSync(showId: Long): List<SgEpisode2ForSync>
+    /**
+     * Returns up to [limit] watched, skipped or collected episodes of a show with a row ID larger
+     * than [afterId], ordered by row ID. Use to page through all episodes to upload to Cloud.
+     */
+    @Query("SELECT _id, episode_number, episode_season_number, episode_watched, episode_plays, episode_collected FROM sg_episode WHERE series_id = :showId AND _id > :afterId AND episode_tmdb_id > 0 AND (episode_watched != ${EpisodeFlags.UNWATCHED} OR episode_collected = 1) ORDER BY _id ASC LIMIT :limit")
+    fun getEpisodesForHexagonSync(showId: Long, afterId: Long, limit: Int): List<SgEpisode2ForSync>
 
     @Query("SELECT _id, episode_number, episode_season_number, episode_watched, episode_plays, episode_collected FROM sg_episode WHERE season_id=:seasonId")
     fun getEpisodesForTraktSync(seasonId: Long): List<SgEpisode2ForSync>
@@ -220,10 +233,10 @@ interface SgEpisode2Helper {
     fun getCollectedEpisodesForTraktSync(seasonId: Long): List<SgEpisode2ForSync>
 
     /**
-     * Gets episodes of season ordered by episode number.
+     * Gets episodes of all seasons of a show ordered by season and episode number.
      */
-    @Query("SELECT * FROM sg_episode WHERE season_id = :seasonId ORDER BY episode_number ASC")
-    fun getEpisodesForExport(seasonId: Long): List<SgEpisode2>
+    @Query("SELECT * FROM sg_episode WHERE series_id = :showId ORDER BY episode_season_number ASC, episode_number ASC")
+    fun getEpisodesOfShowForExport(showId: Long): List<SgEpisode2>
 
     /**
      * WAIT, just for compile time validation of [SgEpisode2Info.buildQuery]
@@ -234,28 +247,23 @@ interface SgEpisode2Helper {
     @RawQuery(observedEntities = [SgEpisode2::class])
     fun getEpisodeInfoOfSeasonLiveData(query: SupportSQLiteQuery): LiveData<List<SgEpisode2Info>>
 
-    /**
-     * Note: make sure to limit the result set to avoid memory issues, otherwise this may return
-     * thousands of rows depending on how many shows are added.
-     *
-     * If no limit may cause "RuntimeException: Exception while computing database live data."
-     * caused by "IllegalStateException: Couldn't read row 2645, col 0 from CursorWindow.
-     * Make sure the Cursor is initialized correctly before accessing data from it."
-     */
     @RawQuery(observedEntities = [SgEpisode2::class, SgShow2::class])
-    fun getEpisodeSearchResults(query: SupportSQLiteQuery): LiveData<List<SgEpisode2SearchResult>>
-
-    @Query("SELECT COUNT(_id) FROM sg_episode")
-    fun countEpisodes(): Int
+    fun getEpisodeSearchResultsDataSource(
+        query: SupportSQLiteQuery
+    ): PagingSource<Int, SgEpisode2SearchResult>
 
-    @Query("SELECT COUNT(_id) FROM sg_episode WHERE episode_season_number != 0")
-    fun countEpisodesWithoutSpecials(): Int
-
-    @Query("SELECT COUNT(_id) FROM sg_episode WHERE episode_watched == ${EpisodeFlags.WATCHED}")
-    fun countWatchedEpisodes(): Int
+    /**
+     * Counts all and watched episodes and sums up the runtime of watched episodes using the
+     * runtime of their show in a single pass.
+     */
+    @Query("SELECT COUNT(sg_episode._id) AS count, SUM(CASE WHEN episode_watched = ${EpisodeFlags.WATCHED} THEN 1 ELSE 0 END) AS watched, SUM(CASE WHEN episode_watched = ${EpisodeFlags.WATCHED} THEN series_runtime ELSE 0 END) AS watched_runtime FROM sg_episode LEFT OUTER JOIN sg_show ON sg_episode.series_id = sg_show._id")
+    fun getStats(): SgEpisode2Stats?
 
-    @Query("SELECT COUNT(_id) FROM sg_episode WHERE episode_watched == ${EpisodeFlags.WATCHED} AND episode_season_number != 0")
-    fun countWatchedEpisodesWithoutSpecials(): Int
+    /**
+     * Like [getStats], but excludes specials.
+     */
+    @Query("SELECT COUNT(sg_episode._id) AS count, SUM(CASE WHEN episode_watched = ${EpisodeFlags.WATCHED} THEN 1 ELSE 0 END) AS watched, SUM(CASE WHEN episode_watched = ${EpisodeFlags.WATCHED} THEN series_runtime ELSE 0 END) AS watched_runtime FROM sg_episode LEFT OUTER JOIN sg_show ON sg_episode.series_id = sg_show._id WHERE episode_season_number != 0")
+    fun getStatsWithoutSpecials(): SgEpisode2Stats?
 
     /**
      * Count episodes of a show excluding specials, but including those without a release date.
@@ -266,9 +274,6 @@ interface SgEpisode2Helper {
     @Query("SELECT COUNT(_id) FROM sg_episode WHERE series_id = :showId AND episode_watched = ${EpisodeFlags.WATCHED}")
     fun countWatchedEpisodesOfShow(showId: Long): Int
 
-    @Query("SELECT COUNT(_id) FROM sg_episode WHERE series_id = :showId AND episode_watched = ${EpisodeFlags.WATCHED} AND episode_season_number != 0")
-    fun countWatchedEpisodesOfShowWithoutSpecials(showId: Long): Int
-
     /**
      * Returns if at least one episode of the show is collected. Excludes specials.
      */
@@ -289,6 +294,13 @@ interface SgEpisode2Helper {
     @Query("SELECT COUNT(_id) FROM sg_episode WHERE series_id = :showId AND episode_watched = ${EpisodeFlags.UNWATCHED} AND episode_season_number != 0 AND episode_firstairedms != ${SgEpisode2.EPISODE_UNKNOWN_RELEASE} AND episode_firstairedms <= :currentTimeToolsTime")
     fun countNotWatchedEpisodesOfShow(showId: Long, currentTimeToolsTime: Long): Int
 
+    /**
+     * Like [countNotWatchedEpisodesOfShow], but for all shows using a single pass. Shows without
+     * not watched episodes are not included.
+     */
+    @Query("SELECT series_id, COUNT(_id) AS count FROM sg_episode WHERE episode_watched = ${EpisodeFlags.UNWATCHED} AND episode_season_number != 0 AND episode_firstairedms != ${SgEpisode2.EPISODE_UNKNOWN_RELEASE} AND episode_firstairedms <= :currentTimeToolsTime GROUP BY series_id")
+    fun countNotWatchedEpisodesOfShows(currentTimeToolsTime: Long): List<SgEpisode2CountOfShow>
+
     @Query("SELECT COUNT(_id) FROM sg_episode WHERE season_id = :seasonId")
     suspend fun countEpisodesOfSeason(seasonId: Long): Int
 
@@ -551,42 +563,92 @@ interface SgEpisode2Helper {
         isCollected: Boolean
     )
 
+    @Query("UPDATE sg_episode SET episode_watched = :watched, episode_plays = :plays WHERE series_id = :showId AND episode_season_number = :seasonNumber AND episode_number IN (:episodeNumbers)")
+    fun updateWatchedByNumbers(
+        showId: Long,
+        seasonNumber: Int,
+        episodeNumbers: List<Int>,
+        watched: Int,
+        plays: Int
+    ): Int
+
+    @Query("UPDATE sg_episode SET episode_collected = :isCollected WHERE series_id = :showId AND episode_season_number = :seasonNumber AND episode_number IN (:episodeNumbers)")
+    fun updateCollectedByNumbers(
+        showId: Long,
+        seasonNumber: Int,
+        episodeNumbers: List<Int>,
+        isCollected: Boolean
+    ): Int
+
+    /**
+     * Applies the flags using one statement per season and distinct set of values, instead of one
+     * statement per episode. If there are multiple updates for the same episode, the last one
+     * wins (like when applying them one by one).
+     *
+     * E.g. a page of 500 watched episodes from Cloud or Trakt with one play each spread over 10
+     * seasons results in 10 statements.
+     */
     @Transaction
     fun updateWatchedAndCollectedByNumber(
         watched: List<SgEpisode2WatchedUpdateByNumber>,
         collected: List<SgEpisode2CollectedUpdateByNumber>
     ) {
-        for (episode in watched) {
-            updateWatchedByNumber(
-                episode.showId,
-                episode.seasonNumber,
-                episode.episodeNumber,
-                episode.watched,
-                episode.plays
+        watched
+            .associateBy { EpisodeByNumber(it.showId, it.seasonNumber, it.episodeNumber) }
+            .values
+            .groupBy(
+                { EpisodeFlagsGroup(it.showId, it.seasonNumber, it.watched, it.plays) },
+                { it.episodeNumber }
             )
-        }
-        for (episode in collected) {
-            updateCollectedByNumber(
-                episode.showId,
-                episode.seasonNumber,
-                episode.episodeNumber,
-                episode.collected
+            .forEach { (group, episodeNumbers) ->
+                episodeNumbers.chunked(MAX_EPISODE_NUMBERS_PER_UPDATE).forEach {
+                    updateWatchedByNumbers(
+                        group.showId,
+                        group.seasonNumber,
+                        it,
+                        group.flag,
+                        group.plays
+                    )
+                }
+            }
+        collected
+            .associateBy { EpisodeByNumber(it.showId, it.seasonNumber, it.episodeNumber) }
+            .values
+            .groupBy(
+                {
+                    EpisodeFlagsGroup(
+                        it.showId,
+                        it.seasonNumber,
+                        if (it.collected) 1 else 0,
+                        0
+                    )
+                },
+                { it.episodeNumber }
             )
-        }
+            .forEach { (group, episodeNumbers) ->
+                episodeNumbers.chunked(MAX_EPISODE_NUMBERS_PER_UPDATE).forEach {
+                    updateCollectedByNumbers(
+                        group.showId,
+                        group.seasonNumber,
+                        it,
+                        group.flag == 1
+                    )
+                }
+            }
     }
 
     /**
-     * Note: currently last updated value is unused, all episodes are always updated.
-     * See [com.battlelancer.seriesguide.shows.tools.AddUpdateShowTools].
+     * Resets the last updated value and removes the content hash of all episodes, so the next
+     * update writes all episodes even if the values from TMDB did not change.
+     * See [com.battlelancer.seriesguide.shows.tools.GetEpisodesOfSeasonTools].
      */
-    @Query("UPDATE sg_episode SET episode_lastupdate = 0")
+    @Query("UPDATE sg_episode SET episode_lastupdate = 0, episode_content_hash = NULL")
     fun resetLastUpdatedForAll()
 
     /**
-     * Note: currently last updated value is unused, all episodes are always updated.
-     * See [com.battlelancer.seriesguide.shows.tools.AddUpdateShowTools].
+     * Like [resetLastUpdatedForAll], but only for episodes of the given show.
      */
-    @Query("UPDATE sg_episode SET episode_lastupdate = 0 WHERE series_id = :showId")
+    @Query("UPDATE sg_episode SET episode_lastupdate = 0, episode_content_hash = NULL WHERE series_id = :showId")
     fun resetLastUpdatedForShow(showId: Long)
 
     @Query("DELETE FROM sg_episode WHERE season_id = :seasonId")
@@ -603,62 +665,68 @@ interface SgEpisode2Helper {
     suspend fun deleteEpisodesOfShow(showId: Long): Int
 
     /**
-     * Returns at most 500 episodes matching the [searchTermOrNull].
+     * Returns episodes matching the [query], most relevant first.
+     *
+     * Episodes that match with their title rank above those only matching with their description,
+     * then episodes with more matching words rank higher. Ties are sorted by show title, season
+     * and number.
      *
      * If [showTitleOrNull] is given, filters the results by show title.
      */
     fun searchForEpisodes(
-        context: Context,
-        searchTermOrNull: String?,
+        query: EpisodeSearchQuery,
         showTitleOrNull: String?
-    ): LiveData<List<SgEpisode2SearchResult>> {
-        val query = StringBuilder(QUERY_SEARCH_EPISODES)
+    ): PagingSource<Int, SgEpisode2SearchResult> {
+        val sql = StringBuilder(QUERY_SEARCH_EPISODES)
+        val args = mutableListOf<Any>(query.matchExpression)
         if (showTitleOrNull != null) {
-            query.append(" WHERE (").append(SgShow2Columns.TITLE).append(" = ?)")
-        }
-        query.append(" ORDER BY ${SgShow2Columns.SORT_TITLE},$SEASON ASC,$NUMBER ASC")
-        // Limit result set to avoid memory issues.
-        query.append(" LIMIT 500")
-
-        var searchTerm = if (searchTermOrNull.isNullOrEmpty()) "" else searchTermOrNull
-        // ensure to strip double quotation marks (would break the MATCH query)
-        searchTerm = searchTerm.replace("\"", "")
-        // search for anything starting with the given search term
-        searchTerm = "\"$searchTerm*\""
-
-        val selectionArgs: Array<Any> = if (showTitleOrNull != null) {
-            arrayOf(searchTerm, showTitleOrNull)
-        } else {
-            arrayOf(searchTerm)
+            sql.append(" WHERE ${SgShow2Columns.TITLE} = ?")
+            args.add(showTitleOrNull)
         }
+        sql.append(" ORDER BY $SEARCH_MATCHES.$DOCID IN ($SELECT_TITLE_MATCHES) DESC")
+        args.add(query.titleMatchExpression)
+        sql.append(",$SEARCH_MATCH_COUNT DESC")
+        sql.append(",${SgShow2Columns.SORT_TITLE},$SEASON ASC,$NUMBER ASC")
 
-        return getEpisodeSearchResults(SimpleSQLiteQuery(query.toString(), selectionArgs))
+        return getEpisodeSearchResultsDataSource(
+            SimpleSQLiteQuery(sql.toString(), args.toTypedArray())
+        )
     }
 
     companion object {
-        private const val DOCID = "DOCID"
-
-        private const val EPISODE_COLUMNS: String =
-            "$_ID,$TITLE,$NUMBER,$SEASON,$WATCHED"
+        /**
+         * Stays below the default SQLite limit of 999 variables per statement, leaving room for
+         * the other arguments.
+         */
+        private const val MAX_EPISODE_NUMBERS_PER_UPDATE = 900
 
-        private const val SELECT_SHOWS: String =
-            "SELECT ${SgShow2Columns._ID} as sid,${SgShow2Columns.TITLE},${SgShow2Columns.POSTER_SMALL}" +
-                    " FROM ${Tables.SG_SHOW}"
+        private const val DOCID = "docid"
+        private const val SEARCH_MATCHES = "matches"
+        private const val SNIPPET = "snippet"
+        private const val OFFSETS = "offsets"
 
-        private const val SELECT_MATCH: String =
-            "SELECT $DOCID,snippet(${Tables.EPISODES_SEARCH},'<b>','</b>','...') AS $OVERVIEW" +
-                    " FROM ${Tables.EPISODES_SEARCH} WHERE ${Tables.EPISODES_SEARCH} MATCH ?"
+        /**
+         * offsets() returns 4 space separated integers per matching word.
+         */
+        private const val SEARCH_MATCH_COUNT =
+            "(length($OFFSETS) - length(replace($OFFSETS,' ','')) + 1) / 4"
 
-        private const val SELECT_EPISODES: String =
-            "SELECT $EPISODE_COLUMNS,${SgShow2Columns.REF_SHOW_ID} FROM ${Tables.SG_EPISODE}"
+        private const val SELECT_TITLE_MATCHES =
+            "SELECT $DOCID FROM ${Tables.EPISODES_SEARCH} WHERE ${Tables.EPISODES_SEARCH} MATCH ?"
 
-        private const val JOIN_MATCHES_EPISODES: String =
-            "SELECT $EPISODE_COLUMNS,$OVERVIEW,${SgShow2Columns.REF_SHOW_ID}" +
-                    " FROM ($SELECT_MATCH) JOIN ($SELECT_EPISODES) ON $DOCID=$_ID"
+        private const val SELECT_MATCHES: String =
+            "SELECT $DOCID,snippet(${Tables.EPISODES_SEARCH},'<b>','</b>','...') AS $SNIPPET," +
+                    "offsets(${Tables.EPISODES_SEARCH}) AS $OFFSETS" +
+                    " FROM ${Tables.EPISODES_SEARCH} WHERE ${Tables.EPISODES_SEARCH} MATCH ?"
 
         const val QUERY_SEARCH_EPISODES: String =
-            "SELECT $EPISODE_COLUMNS,$OVERVIEW,${SgShow2Columns.TITLE},${SgShow2Columns.POSTER_SMALL}" +
-                    " FROM (($SELECT_SHOWS) JOIN ($JOIN_MATCHES_EPISODES) ON sid=${SgShow2Columns.REF_SHOW_ID})"
+            "SELECT ${Tables.SG_EPISODE}.$_ID AS $_ID,$TITLE,$NUMBER,$SEASON,$WATCHED," +
+                    "$SNIPPET AS $OVERVIEW," +
+                    "${SgShow2Columns.TITLE},${SgShow2Columns.POSTER_SMALL}" +
+                    " FROM ($SELECT_MATCHES) AS $SEARCH_MATCHES" +
+                    " JOIN ${Tables.SG_EPISODE} ON $SEARCH_MATCHES.$DOCID=${Tables.SG_EPISODE}.$_ID" +
+                    " JOIN ${Tables.SG_SHOW}" +
+                    " ON ${SgShow2Columns.REF_SHOW_ID}=${Tables.SG_SHOW}.${SgShow2Columns._ID}"
     }
 }
 
@@ -678,8 +746,9 @@ data class SgEpisode2WithShow(
 ) {
     companion object {
         // WAIT, make sure to update the above dummy query so there is compile time validation!
+        const val FROM = "FROM sg_episode LEFT OUTER JOIN sg_show ON sg_episode.series_id=sg_show._id"
         const val SELECT =
-            "SELECT sg_episode._id, episode_title, episode_number, episode_season_number, episode_firstairedms, episode_watched, episode_collected, episode_description, series_title, series_network, series_poster_small FROM sg_episode LEFT OUTER JOIN sg_show ON sg_episode.series_id=sg_show._id"
+            "SELECT sg_episode._id, episode_title, episode_number, episode_season_number, episode_firstairedms, episode_watched, episode_collected, episode_description, series_title, series_network, series_poster_small $FROM"
 
         /**
          * Qualified name of episode ID column for use with [SELECT].
@@ -689,7 +758,7 @@ data class SgEpisode2WithShow(
         private const val CALENDAR_DAY_LIMIT_MS = 31 * DateUtils.DAY_IN_MILLIS
 
         /**
-         * For use with [SgEpisode2Helper.getEpisodesWithShowDataSource].
+         * For use with [SgEpisode2Helper.getEpisodesWithShow].
          */
         fun buildEpisodesWithShowQuery(
             context: Context,
@@ -699,12 +768,37 @@ data class SgEpisode2WithShow(
             isOnlyUnwatched: Boolean,
             isOnlyCollected: Boolean,
             isOnlyPremieres: Boolean
+        ): String {
+            val selection = buildEpisodesWithShowSelection(
+                context,
+                isUpcomingElseRecent,
+                isInfiniteCalendar,
+                isOnlyFavorites,
+                isOnlyUnwatched,
+                isOnlyCollected,
+                isOnlyPremieres
+            )
+            val sortOrder = if (isUpcomingElseRecent) SORT_UPCOMING else SORT_RECENT
+            return "$SELECT WHERE $selection ORDER BY $sortOrder "
+        }
+
+        /**
+         * Builds the selection of [buildEpisodesWithShowQuery] for use with [FROM]. Upcoming
+         * episodes should be sorted by [SORT_UPCOMING], recent ones by [SORT_RECENT].
+         */
+        fun buildEpisodesWithShowSelection(
+            context: Context,
+            isUpcomingElseRecent: Boolean,
+            isInfiniteCalendar: Boolean,
+            isOnlyFavorites: Boolean,
+            isOnlyUnwatched: Boolean,
+            isOnlyCollected: Boolean,
+            isOnlyPremieres: Boolean
         ): String {
             // go an hour back in time, so episodes move to recent one hour late
             val recentThreshold = TimeTools.getCurrentTime(context) - DateUtils.HOUR_IN_MILLIS
 
             val query: StringBuilder
-            val sortOrder: String
             if (isUpcomingElseRecent) {
                 // UPCOMING
                 val timeThreshold = if (isInfiniteCalendar) {
@@ -719,7 +813,6 @@ data class SgEpisode2WithShow(
                             "AND $FIRSTAIREDMS<$timeThreshold " +
                             "AND ${SgShow2Columns.SELECTION_NO_HIDDEN}"
                 )
-                sortOrder = SORT_UPCOMING
             } else {
                 // RECENT
                 val timeThreshold = if (isInfiniteCalendar) {
@@ -736,7 +829,6 @@ data class SgEpisode2WithShow(
                                 "AND $FIRSTAIREDMS>$timeThreshold " +
                                 "AND ${SgShow2Columns.SELECTION_NO_HIDDEN}"
                     )
-                sortOrder = SORT_RECENT
             }
 
             // append only favorites selection if necessary
@@ -764,7 +856,7 @@ data class SgEpisode2WithShow(
                 query.append(" AND ").append(SELECTION_ONLY_PREMIERES)
             }
 
-            return "$SELECT WHERE $query ORDER BY $sortOrder "
+            return query.toString()
         }
     }
 }
@@ -813,7 +905,8 @@ data class SgEpisode2Info(
 data class SgEpisode2Ids(
     @ColumnInfo(name = _ID) val id: Long,
     @ColumnInfo(name = TMDB_ID) val tmdbId: Int?,
-    @ColumnInfo(name = NUMBER) val episodenumber: Int
+    @ColumnInfo(name = NUMBER) val episodenumber: Int,
+    @ColumnInfo(name = CONTENT_HASH) val contentHash: Long?
 )
 
 data class SgEpisode2Numbers(
@@ -839,6 +932,18 @@ data class SgEpisode2Numbers(
     }
 }
 
+data class SgEpisode2CountOfShow(
+    @ColumnInfo(name = SgShow2Columns.REF_SHOW_ID) val showId: Long,
+    val count: Int
+)
+
+data class SgEpisode2Stats(
+    val count: Int,
+    val watched: Int,
+    /** Runtime in minutes. */
+    @ColumnInfo(name = "watched_runtime") val watchedRuntime: Long
+)
+
 data class SgEpisode2ForSync(
     @ColumnInfo(name = _ID) val id: Long,
     @ColumnInfo(name = NUMBER) val number: Int,
@@ -864,7 +969,47 @@ data class SgEpisode2Update(
     @ColumnInfo(name = FIRSTAIREDMS) val firstReleasedMs: Long,
     @ColumnInfo(name = RATING_TMDB) val ratingTmdb: Double?,
     @ColumnInfo(name = RATING_TMDB_VOTES) val ratingTmdbVotes: Int?,
-)
+    /**
+     * Fingerprint of all other values except the row ID. If it is equal to the one stored with
+     * an episode, updating the episode would not change it.
+     */
+    @ColumnInfo(name = CONTENT_HASH) val contentHash: Long = contentHashOf(
+        tmdbId,
+        title,
+        overview,
+        number,
+        season,
+        order,
+        directors,
+        guestStars,
+        writers,
+        image,
+        firstReleasedMs,
+        ratingTmdb,
+        ratingTmdbVotes
+    )
+) {
+    companion object {
+        private const val FNV_OFFSET_BASIS = -0x340d631b7bdddcdbL
+        private const val FNV_PRIME = 0x100000001b3L
+
+        /**
+         * Returns a 64-bit FNV-1a hash of the string values of [values]. Mixes in the length of
+         * each value first (-1 if null), so values are hashed with their boundaries.
+         */
+        fun contentHashOf(vararg values: Any?): Long {
+            var hash = FNV_OFFSET_BASIS
+            for (value in values) {
+                val string = value?.toString()
+                hash = (hash xor (string?.length ?: -1).toLong()) * FNV_PRIME
+                string?.forEach { char ->
+                    hash = (hash xor char.code.toLong()) * FNV_PRIME
+                }
+            }
+            return hash
+        }
+    }
+}
 
 data class SgEpisode2WatchedUpdate(
     @ColumnInfo(name = _ID) val id: Long,
@@ -896,3 +1041,23 @@ data class SgEpisode2CollectedUpdateByNumber(
     val seasonNumber: Int,
     val collected: Boolean
 )
+
+/**
+ * Identifies an episode for [SgEpisode2Helper.updateWatchedAndCollectedByNumber].
+ */
+private data class EpisodeByNumber(
+    val showId: Long,
+    val seasonNumber: Int,
+    val episodeNumber: Int
+)
+
+/**
+ * Episodes of a season that get the same flag (and plays) in
+ * [SgEpisode2Helper.updateWatchedAndCollectedByNumber].
+ */
+private data class EpisodeFlagsGroup(
+    val showId: Long,
+    val seasonNumber: Int,
+    val flag: Int,
+    val plays: Int
+)
@@ -41,6 +41,27 @@ interface SgShow2Helper {
     @Query("SELECT _id, series_tmdb_id, series_tvdb_id, series_title, series_poster_small FROM sg_show")
     fun getShowsMinimal(): List<SgShow2Minimal>
 
+    @Query("SELECT series_poster_small FROM sg_show WHERE series_tmdb_id = :tmdbId")
+    fun getShowPosterByTmdbId(tmdbId: Int): String?
+
+    /**
+     * Returns poster paths of all shows, favorites first, then by next episode release time.
+     */
+    @Query("SELECT series_poster_small FROM sg_show WHERE series_poster_small IS NOT NULL AND series_poster_small != '' ORDER BY series_favorite DESC, series_nextairdate ASC")
+    fun getPostersByPriority(): List<String>
+
+    /**
+     * Returns shows with a TMDB ID, but without a poster path.
+     */
+    @Query("SELECT _id, series_tmdb_id, series_language, series_lastupdate FROM sg_show WHERE series_tmdb_id IS NOT NULL AND series_tmdb_id != 0 AND (series_poster IS NULL OR series_poster = '')")
+    fun getShowsWithoutPoster(): List<SgShow2WithoutPoster>
+
+    /**
+     * Sets the poster path of the show with [tmdbId], but only if it has none.
+     */
+    @Query("UPDATE sg_show SET series_poster = :poster, series_poster_small = :poster WHERE series_tmdb_id = :tmdbId AND (series_poster IS NULL OR series_poster = '')")
+    fun updateMissingPosterByTmdbId(tmdbId: Int, poster: String): Int
+
     @Query("SELECT _id, series_tmdb_id, series_tvdb_id FROM sg_show WHERE _id=:id")
     suspend fun getShowIds(id: Long): SgShow2Ids?
 
@@ -50,6 +71,9 @@ interface SgShow2Helper {
     @Query("SELECT _id FROM sg_show")
     fun getShowIdsLong(): List<Long>
 
+    @Query("SELECT _id, series_tmdb_id, series_lastupdate FROM sg_show")
+    fun getShowsChangeInfo(): List<SgShow2ChangeInfo>
+
     /**
      * Returns IDs of shows that haven't been updated since [lastUpdatedBeforeTimeInMs],
      * except for ended shows, which are only returned if not updated since
@@ -116,6 +140,15 @@ interface SgShow2Helper {
     @Query("SELECT count(series_id) FROM (SELECT series_id, series_status, sum(case when episode_watched = '0' then 1 else 0 end) as episodes_unwatched FROM sg_episode LEFT OUTER JOIN sg_show ON sg_episode.series_id = sg_show._id WHERE episode_season_number != 0 GROUP BY series_id) WHERE episodes_unwatched = 0 AND series_status IN (${ShowStatus.ENDED}, ${ShowStatus.CANCELED})")
     fun countShowsFinishedWatchingWithoutSpecials(): Int
 
+    /**
+     * Gets the current next episode values of all shows, to compare them with new values.
+     *
+     * Excludes shows with any of the values NULL, so they are always written and the NULL values
+     * replaced.
+     */
+    @Query("SELECT _id, series_next, series_nextairdate, series_nexttext, series_unwatched_count FROM sg_show WHERE series_next IS NOT NULL AND series_nextairdate IS NOT NULL AND series_nexttext IS NOT NULL")
+    fun getShowsNextEpisode(): List<SgShow2NextEpisodeUpdate>
+
     @Update(entity = SgShow2::class)
     fun updateShowNextEpisode(updates: List<SgShow2NextEpisodeUpdate>): Int
 
@@ -284,11 +317,31 @@ data class SgShow2Ids(
     @ColumnInfo(name = SgShow2Columns.TVDB_ID) val tvdbId: Int?
 )
 
+data class SgShow2WithoutPoster(
+    @ColumnInfo(name = SgShow2Columns._ID) val id: Long,
+    @ColumnInfo(name = SgShow2Columns.TMDB_ID) val tmdbId: Int,
+    @ColumnInfo(name = SgShow2Columns.LANGUAGE) val language: String?,
+    @ColumnInfo(name = SgShow2Columns.LASTUPDATED) val lastUpdatedMs: Long
+) {
+    /**
+     * Changes once the show is updated, so a failed attempt to get its poster can be tried again
+     * after that.
+     */
+    val attemptKey: String
+        get() = "$id:$lastUpdatedMs"
+}
+
 data class SgShow2UpdateInfo(
     @ColumnInfo(name = SgShow2Columns._ID) val id: Long,
     @ColumnInfo(name = SgShow2Columns.LASTUPDATED) val lastUpdatedMs: Long
 )
 
+data class SgShow2ChangeInfo(
+    @ColumnInfo(name = SgShow2Columns._ID) val id: Long,
+    @ColumnInfo(name = SgShow2Columns.TMDB_ID) val tmdbId: Int?,
+    @ColumnInfo(name = SgShow2Columns.LASTUPDATED) val lastUpdatedMs: Long
+)
+
 data class SgShow2Minimal(
     @ColumnInfo(name = SgShow2Columns._ID) val id: Long,
     @ColumnInfo(name = SgShow2Columns.TMDB_ID) val tmdbId: Int?,
@@ -5,7 +5,6 @@ package com.battlelancer.seriesguide.shows.search
 
 import android.os.Bundle
 import android.view.View
-import android.widget.GridView
 import androidx.core.view.ViewCompat
 import androidx.fragment.app.Fragment
 import com.battlelancer.seriesguide.util.ThemeUtils
@@ -15,7 +14,10 @@ abstract class BaseSearchFragment : Fragment() {
 
     abstract val emptyView: View
 
-    abstract val gridView: GridView
+    /**
+     * The view displaying results, hidden if there are no results.
+     */
+    abstract val resultsView: View
 
     var initialSearchArgs: Bundle? = null
 
@@ -36,8 +38,8 @@ abstract class BaseSearchFragment : Fragment() {
         super.onViewCreated(view, savedInstanceState)
 
         // enable app bar scrolling out of view
-        ViewCompat.setNestedScrollingEnabled(gridView, true)
-        ThemeUtils.applyBottomPaddingForNavigationBar(gridView)
+        ViewCompat.setNestedScrollingEnabled(resultsView, true)
+        ThemeUtils.applyBottomPaddingForNavigationBar(resultsView)
 
         emptyView.visibility = View.GONE
     }
@@ -57,10 +59,10 @@ abstract class BaseSearchFragment : Fragment() {
     protected fun updateEmptyState(hasNoResults: Boolean, hasQuery: Boolean) {
         if (hasNoResults && hasQuery) {
             emptyView.visibility = View.VISIBLE
-            gridView.visibility = View.GONE
+            resultsView.visibility = View.GONE
         } else {
             emptyView.visibility = View.GONE
-            gridView.visibility = View.VISIBLE
+            resultsView.visibility = View.VISIBLE
         }
     }
 
@@ -7,8 +7,10 @@ import android.content.Context
 import android.view.LayoutInflater
 import android.view.View
 import android.view.ViewGroup
-import android.widget.ArrayAdapter
 import androidx.core.text.HtmlCompat
+import androidx.paging.PagingDataAdapter
+import androidx.recyclerview.widget.DiffUtil
+import androidx.recyclerview.widget.RecyclerView
 import com.battlelancer.seriesguide.R
 import com.battlelancer.seriesguide.databinding.ItemSearchResultBinding
 import com.battlelancer.seriesguide.shows.database.SgEpisode2SearchResult
@@ -20,49 +22,49 @@ import com.battlelancer.seriesguide.util.TextTools
  * Displays episode search results.
  */
 class EpisodeSearchAdapter(
-    context: Context,
+    private val context: Context,
     private val clickListener: OnItemClickListener
-) : ArrayAdapter<SgEpisode2SearchResult>(context, 0) {
+) : PagingDataAdapter<SgEpisode2SearchResult, EpisodeSearchViewHolder>(DIFF_CALLBACK) {
 
     interface OnItemClickListener {
         fun onItemClick(anchor: View, episodeId: Long)
     }
 
-    fun setData(data: List<SgEpisode2SearchResult>?) {
-        clear()
-        data?.also {
-            addAll(it)
-        }
+    override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): EpisodeSearchViewHolder {
+        return EpisodeSearchViewHolder.create(parent, clickListener)
     }
 
-    override fun getView(position: Int, convertView: View?, parent: ViewGroup): View {
-        val viewHolder = if (convertView == null) {
-            EpisodeSearchViewHolder(parent, clickListener)
-        } else {
-            convertView.tag as EpisodeSearchViewHolder
-        }
-
+    override fun onBindViewHolder(holder: EpisodeSearchViewHolder, position: Int) {
         val item = getItem(position)
         if (item != null) {
-            viewHolder.bindTo(item, context)
+            holder.bindTo(item, context)
         }
+    }
 
-        return viewHolder.binding.root
+    companion object {
+        val DIFF_CALLBACK = object : DiffUtil.ItemCallback<SgEpisode2SearchResult>() {
+            override fun areItemsTheSame(
+                oldItem: SgEpisode2SearchResult,
+                newItem: SgEpisode2SearchResult
+            ): Boolean = oldItem.id == newItem.id
+
+            override fun areContentsTheSame(
+                oldItem: SgEpisode2SearchResult,
+                newItem: SgEpisode2SearchResult
+            ): Boolean = oldItem == newItem
+        }
     }
 
 }
 
 class EpisodeSearchViewHolder(
-    parent: ViewGroup,
+    val binding: ItemSearchResultBinding,
     clickListener: EpisodeSearchAdapter.OnItemClickListener
-) {
+) : RecyclerView.ViewHolder(binding.root) {
 
-    val binding =
-        ItemSearchResultBinding.inflate(LayoutInflater.from(parent.context), parent, false)
     private var episodeId: Long = 0
 
     init {
-        binding.root.tag = this
         binding.root.setOnClickListener {
             clickListener.onItemClick(it, episodeId)
         }
@@ -107,4 +109,16 @@ class EpisodeSearchViewHolder(
         )
     }
 
+    companion object {
+        fun create(
+            parent: ViewGroup,
+            clickListener: EpisodeSearchAdapter.OnItemClickListener
+        ): EpisodeSearchViewHolder {
+            return EpisodeSearchViewHolder(
+                ItemSearchResultBinding.inflate(LayoutInflater.from(parent.context), parent, false),
+                clickListener
+            )
+        }
+    }
+
 }
@@ -8,14 +8,19 @@ import android.os.Bundle
 import android.view.LayoutInflater
 import android.view.View
 import android.view.ViewGroup
-import android.widget.GridView
 import androidx.fragment.app.viewModels
+import androidx.lifecycle.lifecycleScope
+import androidx.paging.LoadState
+import androidx.recyclerview.widget.RecyclerView
 import com.battlelancer.seriesguide.R
 import com.battlelancer.seriesguide.databinding.FragmentSearchBinding
 import com.battlelancer.seriesguide.shows.episodes.EpisodesActivity
 import com.battlelancer.seriesguide.shows.search.EpisodeSearchFragment.Companion.ARG_SHOW_TITLE
+import com.battlelancer.seriesguide.ui.AutoGridLayoutManager
 import com.battlelancer.seriesguide.util.TabClickEvent
 import com.battlelancer.seriesguide.util.startActivityWithAnimation
+import kotlinx.coroutines.flow.collectLatest
+import kotlinx.coroutines.launch
 import org.greenrobot.eventbus.Subscribe
 import org.greenrobot.eventbus.ThreadMode
 
@@ -40,26 +45,33 @@ class EpisodeSearchFragment : BaseSearchFragment() {
 
     override val emptyView: View
         get() = binding!!.textViewSearchEpisodesEmpty
-    override val gridView: GridView
-        get() = binding!!.gridViewSearchEpisodes
+    private val recyclerView: RecyclerView
+        get() = binding!!.recyclerViewSearchEpisodes
+    override val resultsView: View
+        get() = recyclerView
 
     override fun onViewCreated(view: View, savedInstanceState: Bundle?) {
         super.onViewCreated(view, savedInstanceState)
-        // list items do not have right hand-side buttons, list may be long: enable fast scrolling
-        gridView.apply {
-            isFastScrollAlwaysVisible = false
-            isFastScrollEnabled = true
-        }
+        recyclerView.layoutManager =
+            AutoGridLayoutManager(requireContext(), R.dimen.show_grid_column_width, 1, 1)
         adapter = EpisodeSearchAdapter(requireContext(), onItemClickListener).also {
-            gridView.adapter = it
+            recyclerView.adapter = it
         }
 
-        model.episodes.observe(viewLifecycleOwner) { episodes ->
-            adapter.setData(episodes)
-            updateEmptyState(
-                episodes.isEmpty(),
-                !model.searchData.value?.searchTerm.isNullOrEmpty()
-            )
+        viewLifecycleOwner.lifecycleScope.launch {
+            adapter.loadStateFlow.collectLatest { loadStates ->
+                if (loadStates.refresh is LoadState.NotLoading) {
+                    updateEmptyState(
+                        adapter.itemCount == 0,
+                        !model.searchData.value?.searchTerm.isNullOrEmpty()
+                    )
+                }
+            }
+        }
+        viewLifecycleOwner.lifecycleScope.launch {
+            model.episodes.collectLatest {
+                adapter.submitData(it)
+            }
         }
 
         // load for given query (if just created)
@@ -89,7 +101,7 @@ class EpisodeSearchFragment : BaseSearchFragment() {
     @Subscribe(threadMode = ThreadMode.MAIN)
     fun onEventTabClick(event: TabClickEvent) {
         if (event.position == SearchActivityImpl.TAB_POSITION_EPISODES) {
-            gridView.smoothScrollToPosition(0)
+            recyclerView.smoothScrollToPosition(0)
         }
     }
 
@@ -101,7 +113,7 @@ class EpisodeSearchFragment : BaseSearchFragment() {
     }
 
     companion object {
-        val liftOnScrollTargetViewId = R.id.gridViewSearchEpisodes
+        val liftOnScrollTargetViewId = R.id.recyclerViewSearchEpisodes
 
         const val ARG_SHOW_TITLE = "title"
     }
@@ -0,0 +1,78 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.shows.search
+
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.SgEpisode2Columns
+import java.util.Locale
+
+/**
+ * Builds FTS4 MATCH expressions for the episode search table from what the user typed.
+ *
+ * All words have to match, each as a prefix. Text in double quotes has to match as a phrase, if
+ * the closing quote is missing (likely still typing) the last word of the phrase matches as a
+ * prefix. Any other characters, including FTS query syntax, are ignored.
+ */
+class EpisodeSearchQuery private constructor(
+    /**
+     * Words and phrases, already formatted for use in a MATCH expression.
+     */
+    val terms: List<String>
+) {
+
+    /**
+     * Matches episodes that contain all terms in title or description.
+     */
+    val matchExpression: String
+        get() = terms.joinToString(" ")
+
+    /**
+     * Matches episodes that contain all terms in their title.
+     */
+    val titleMatchExpression: String
+        get() = terms.joinToString(" ") { "${SgEpisode2Columns.TITLE}:$it" }
+
+    companion object {
+
+        /**
+         * Returns null if [input] contains no words to search for.
+         */
+        fun parse(input: String?): EpisodeSearchQuery? {
+            if (input.isNullOrBlank()) return null
+
+            val terms = mutableListOf<String>()
+            val parts = input.split('"')
+            for ((index, part) in parts.withIndex()) {
+                val words = toWords(part)
+                if (words.isEmpty()) continue
+                // Every other part is quoted
+                val isPhrase = index % 2 == 1
+                if (isPhrase) {
+                    // If the closing quote is missing, the last part is an unclosed phrase
+                    val isUnclosed = index == parts.lastIndex
+                    terms.add(
+                        words.joinToString(
+                            " ",
+                            prefix = "\"",
+                            postfix = if (isUnclosed) "*\"" else "\""
+                        )
+                    )
+                } else {
+                    words.mapTo(terms) { "$it*" }
+                }
+            }
+            if (terms.isEmpty()) return null
+            return EpisodeSearchQuery(terms)
+        }
+
+        /**
+         * Splits at anything that is not a letter or digit, like the unicode61 tokenizer of the
+         * search table. Lower case so words like OR or NOT are not treated as operators.
+         */
+        private fun toWords(text: String): List<String> {
+            return text.split(Regex("[^\\p{L}\\p{N}]+"))
+                .filter { it.isNotEmpty() }
+                .map { it.lowercase(Locale.ROOT) }
+        }
+    }
+}
@@ -5,23 +5,53 @@ package com.battlelancer.seriesguide.shows.search
 
 import android.app.Application
 import androidx.lifecycle.AndroidViewModel
-import androidx.lifecycle.MutableLiveData
-import androidx.lifecycle.switchMap
+import androidx.lifecycle.viewModelScope
+import androidx.paging.Pager
+import androidx.paging.PagingConfig
+import androidx.paging.PagingData
+import androidx.paging.cachedIn
 import com.battlelancer.seriesguide.provider.SgRoomDatabase
+import com.battlelancer.seriesguide.shows.database.SgEpisode2SearchResult
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.emitAll
+import kotlinx.coroutines.flow.filterNotNull
+import kotlinx.coroutines.flow.flatMapLatest
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOf
 
 class EpisodeSearchViewModel(application: Application) : AndroidViewModel(application) {
 
     data class SearchData(val searchTerm: String?, val showTitle: String?)
 
-    val searchData = MutableLiveData<SearchData>()
-    val episodes = searchData.switchMap { searchData ->
-        SgRoomDatabase.getInstance(application)
-            .sgEpisode2Helper()
-            .searchForEpisodes(
-                application,
-                searchData.searchTerm,
-                searchData.showTitle
-            )
+    val searchData = MutableStateFlow<SearchData?>(null)
+
+    /**
+     * Switching to new search data cancels loading results for the previous one. Also waits
+     * briefly before searching, so typing fast does not start a search for every key stroke.
+     */
+    val episodes: Flow<PagingData<SgEpisode2SearchResult>> = searchData
+        .filterNotNull()
+        .flatMapLatest { searchData ->
+            val query = EpisodeSearchQuery.parse(searchData.searchTerm)
+                ?: return@flatMapLatest flowOf(PagingData.empty())
+            flow {
+                delay(SEARCH_DELAY_MS)
+                emitAll(
+                    Pager(PagingConfig(pageSize = PAGE_SIZE, enablePlaceholders = false)) {
+                        SgRoomDatabase.getInstance(getApplication())
+                            .sgEpisode2Helper()
+                            .searchForEpisodes(query, searchData.showTitle)
+                    }.flow
+                )
+            }
+        }
+        .cachedIn(viewModelScope)
+
+    companion object {
+        private const val SEARCH_DELAY_MS = 250L
+        private const val PAGE_SIZE = 50
     }
 
-}
\ No newline at end of file
+}
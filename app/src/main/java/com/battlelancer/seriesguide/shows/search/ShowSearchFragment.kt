@@ -50,8 +50,10 @@ class ShowSearchFragment : BaseSearchFragment() {
     override val emptyView: View
         get() = binding!!.textViewSearchShowsEmpty
 
-    override val gridView: GridView
+    private val gridView: GridView
         get() = binding!!.gridViewSearchShows
+    override val resultsView: View
+        get() = gridView
 
     override fun onViewCreated(view: View, savedInstanceState: Bundle?) {
         super.onViewCreated(view, savedInstanceState)
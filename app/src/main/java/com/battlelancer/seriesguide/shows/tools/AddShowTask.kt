@@ -9,7 +9,6 @@ import androidx.preference.PreferenceManager
 import com.battlelancer.seriesguide.R
 import com.battlelancer.seriesguide.SgApp
 import com.battlelancer.seriesguide.backend.settings.HexagonSettings
-import com.battlelancer.seriesguide.provider.SeriesGuideDatabase
 import com.battlelancer.seriesguide.provider.SgRoomDatabase
 import com.battlelancer.seriesguide.shows.tools.AddUpdateShowTools.ShowResult
 import com.battlelancer.seriesguide.sync.HexagonEpisodeSync
@@ -227,9 +226,6 @@ class AddShowTask(
                 .putLong(TraktSettings.KEY_LAST_SHOWS_RATED_AT, 0)
                 .putLong(TraktSettings.KEY_LAST_EPISODES_RATED_AT, 0)
                 .apply()
-
-            Timber.d("Renewing search table.")
-            SeriesGuideDatabase.rebuildFtsTable(context)
         }
 
         Timber.d("Finished adding shows.")
@@ -19,9 +19,12 @@ import com.battlelancer.seriesguide.shows.database.SgSeason2
 import com.battlelancer.seriesguide.shows.database.SgSeason2Numbers
 import com.battlelancer.seriesguide.shows.database.SgSeason2TmdbIdUpdate
 import com.battlelancer.seriesguide.shows.database.SgSeason2Update
+import com.battlelancer.seriesguide.shows.database.SgShow2
+import com.battlelancer.seriesguide.shows.database.SgShow2Update
 import com.battlelancer.seriesguide.shows.tools.AddUpdateShowTools.ShowService.HEXAGON
 import com.battlelancer.seriesguide.shows.tools.AddUpdateShowTools.ShowService.TMDB
 import com.battlelancer.seriesguide.shows.tools.GetEpisodesOfSeasonTools.ReleaseInfo
+import com.battlelancer.seriesguide.shows.tools.GetEpisodesOfSeasonTools.SeasonEpisodes
 import com.battlelancer.seriesguide.shows.tools.GetShowTools.GetShowError
 import com.battlelancer.seriesguide.shows.tools.GetShowTools.GetShowError.GetShowDoesNotExist
 import com.battlelancer.seriesguide.shows.tools.GetShowTools.GetShowError.GetShowRetry
@@ -42,6 +45,7 @@ import com.github.michaelbull.result.Ok
 import com.github.michaelbull.result.Result
 import com.github.michaelbull.result.andThen
 import com.github.michaelbull.result.getOrElse
+import com.github.michaelbull.result.map
 import com.github.michaelbull.result.mapError
 import com.uwetrottmann.seriesguide.backend.shows.model.SgCloudShow
 import com.uwetrottmann.tmdb2.entities.TvSeason
@@ -170,13 +174,23 @@ class AddUpdateShowTools(
                 val seasons = mapToSgSeason2(showDetails.seasons, showId)
                 val seasonIds = database.sgSeason2Helper().insertSeasons(seasons)
 
-                // Download episodes by season and store to database
+                // Download episodes of all seasons and store to database
+                val episodesBySeason = getEpisodesOfSeasonTools.getEpisodesOfSeasons(
+                    showTmdbId,
+                    seasons.map { it.number },
+                    languageCode
+                ).getOrElse {
+                    // Roll back all changes, user should try again
+                    throw AddShowDatabaseException(ShowResult.TMDB_ERROR)
+                }
                 val episodeHelper = database.sgEpisode2Helper()
                 seasons.forEachIndexed { index, season ->
                     val seasonId = seasonIds[index]
                     if (seasonId == -1L) return@forEachIndexed
+                    val seasonEpisodes = episodesBySeason[season.number] ?: return@forEachIndexed
 
-                    val episodeDetails = getEpisodesOfSeasonTools.getEpisodesOfSeason(
+                    val episodeDetails = getEpisodesOfSeasonTools.mapToSgEpisode2(
+                        seasonEpisodes,
                         ReleaseInfo(
                             show.releaseTimeZone,
                             show.releaseTimeOrDefault,
@@ -186,17 +200,12 @@ class AddUpdateShowTools(
                             show.releaseCountry,
                             show.network
                         ),
-                        showTmdbId,
                         showId,
-                        season.number,
                         seasonId,
-                        languageCode,
+                        season.number,
                         null,
                         null
-                    ).getOrElse {
-                        // Roll back all changes, user should try again
-                        throw AddShowDatabaseException(ShowResult.TMDB_ERROR)
-                    }
+                    )
                     val episodes = episodeDetails.toInsert
                     episodeHelper.insertEpisodes(episodes)
                 }
@@ -278,16 +287,48 @@ class AddUpdateShowTools(
         )
     }
 
+    /**
+     * Everything downloaded to update a show, see [downloadShowUpdate] and [storeShowUpdate].
+     */
+    class ShowUpdate(
+        val showId: Long,
+        val show: SgShow2,
+        val showUpdate: SgShow2Update,
+        val tmdbSeasons: List<TvSeason>?,
+        val episodesBySeason: Map<Int, SeasonEpisodes>,
+        /** Null if they should not be changed. */
+        val watchProviderMappings: List<SgWatchProviderShowMapping>?
+    )
+
     /**
      * Updates a show. Adds new, updates changed and removes orphaned episodes.
      *
-     * Note: this calls [updateWatchProviderMappings] which may throw [InterruptedException].
+     * Downloads all changes first using [downloadShowUpdate], then stores them
+     * using [storeShowUpdate].
+     *
+     * Note: this calls [downloadShowUpdate] which may throw [InterruptedException].
      */
     @Throws(InterruptedException::class)
     fun updateShow(showId: Long): UpdateResult {
+        return downloadShowUpdate(showId)
+            .map { update ->
+                if (update != null) storeShowUpdate(update) else UpdateResult.Success()
+            }
+            .getOrElse { it }
+    }
+
+    /**
+     * Downloads everything required to update a show, but does not change the database (except
+     * for legacy shows that need to be migrated to TMDB IDs first). Returns null if there is
+     * nothing to store.
+     *
+     * Note: this calls [getWatchProviderMappings] which may throw [InterruptedException].
+     */
+    @Throws(InterruptedException::class)
+    fun downloadShowUpdate(showId: Long): Result<ShowUpdate?, UpdateResult> {
         val helper = SgRoomDatabase.getInstance(context).sgShow2Helper()
         val show = helper.getShow(showId)
-            ?: return UpdateResult.DatabaseError
+            ?: return Err(UpdateResult.DatabaseError)
 
         val language = show.language.let {
             // Handle legacy records.
@@ -310,105 +351,167 @@ class AddUpdateShowTools(
                         UpdateResult.DoesNotExist -> {
                             // Can not migrate (yet), try again later.
                             helper.setLastUpdated(showId, System.currentTimeMillis())
-                            UpdateResult.Success
+                            Ok(null)
                         }
 
-                        else -> it // Failure.
+                        else -> Err(it) // Failure.
                     }
                 }
         }
 
         val showDetails = getShowTools.getShowDetails(showTmdbId, language, show)
-            .getOrElse { return it.toUpdateResult() }
+            .getOrElse { return Err(it.toUpdateResult()) }
         val updatedShow = showDetails.showUpdate!!
         updatedShow.id = showId
 
-        // Insert, update and remove seasons.
-        val seasons = updateSeasons(showDetails.seasons, showId)
-        // Insert, update and remove episodes of inserted or updated seasons.
+        // Episodes of all seasons that will be inserted or updated, see updateSeasons.
+        val seasonNumbers = showDetails.seasons
+            ?.filter { it.id != null }
+            ?.mapNotNull { it.season_number }
+            ?: emptyList()
+        val episodesBySeason = getEpisodesOfSeasonTools.getEpisodesOfSeasons(
+            showTmdbId,
+            seasonNumbers,
+            language
+        ).getOrElse { return Err(it.toUpdateResult()) }
+
+        return Ok(
+            ShowUpdate(
+                showId,
+                show,
+                updatedShow,
+                showDetails.seasons,
+                episodesBySeason,
+                getWatchProviderMappings(showId, showTmdbId)
+            )
+        )
+    }
+
+    /**
+     * Stores a [ShowUpdate] using a single transaction, so observers are notified only once.
+     * Inserts, updates and removes seasons and episodes, replaces watch provider mappings and
+     * at last updates the show (sets the last updated timestamp).
+     */
+    fun storeShowUpdate(update: ShowUpdate): UpdateResult {
+        val show = update.show
+        val updatedShow = update.showUpdate
+        val showId = update.showId
         val database = SgRoomDatabase.getInstance(context)
-        val episodeHelper = database.sgEpisode2Helper()
-        seasons.forEach { season ->
-            val episodes = episodeHelper.getEpisodeIdsOfSeason(season.id)
-
-            val episodesByTmdbId = mutableMapOf<Int, SgEpisode2Ids>()
-            val episodesWithoutTmdbIdByNumber = mutableMapOf<Int, SgEpisode2Ids>()
-            episodes.forEach {
-                if (it.tmdbId != null) {
-                    episodesByTmdbId[it.tmdbId] = it
-                } else {
-                    episodesWithoutTmdbIdByNumber[it.episodenumber] = it
+        return database.runInTransaction<UpdateResult> {
+            // Insert, update and remove seasons.
+            val seasons = updateSeasons(update.tmdbSeasons, showId)
+            // Insert, update and remove episodes of inserted or updated seasons.
+            val episodeHelper = database.sgEpisode2Helper()
+            var episodesWritten = 0
+            var episodesUnchanged = 0
+            seasons.forEach { season ->
+                val seasonEpisodes = update.episodesBySeason[season.number] ?: return@forEach
+                val episodes = episodeHelper.getEpisodeIdsOfSeason(season.id)
+
+                val episodesByTmdbId = mutableMapOf<Int, SgEpisode2Ids>()
+                val episodesWithoutTmdbIdByNumber = mutableMapOf<Int, SgEpisode2Ids>()
+                episodes.forEach {
+                    if (it.tmdbId != null) {
+                        episodesByTmdbId[it.tmdbId] = it
+                    } else {
+                        episodesWithoutTmdbIdByNumber[it.episodenumber] = it
+                    }
                 }
-            }
 
-            val episodeDetails = getEpisodesOfSeasonTools.getEpisodesOfSeason(
-                ReleaseInfo(
-                    updatedShow.releaseTimeZone,
-                    updatedShow.releaseTime,
-                    show.customReleaseTimeZoneOrDefault,
-                    show.customReleaseTimeOrDefault,
-                    show.customReleaseDayOffsetOrDefault,
-                    updatedShow.releaseCountry,
-                    updatedShow.network
-                ),
-                showTmdbId,
-                showId,
-                season.number,
-                season.id,
-                language,
-                episodesByTmdbId,
-                episodesWithoutTmdbIdByNumber
-            ).getOrElse { return it.toUpdateResult() }
-            episodeHelper.insertEpisodes(episodeDetails.toInsert)
-            episodeHelper.updateEpisodes(episodeDetails.toUpdate)
-            episodeHelper.deleteEpisodes(episodeDetails.toRemove)
-        }
+                val episodeDetails = getEpisodesOfSeasonTools.mapToSgEpisode2(
+                    seasonEpisodes,
+                    ReleaseInfo(
+                        updatedShow.releaseTimeZone,
+                        updatedShow.releaseTime,
+                        show.customReleaseTimeZoneOrDefault,
+                        show.customReleaseTimeOrDefault,
+                        show.customReleaseDayOffsetOrDefault,
+                        updatedShow.releaseCountry,
+                        updatedShow.network
+                    ),
+                    showId,
+                    season.id,
+                    season.number,
+                    episodesByTmdbId,
+                    episodesWithoutTmdbIdByNumber
+                )
+                if (episodeDetails.toInsert.isNotEmpty()) {
+                    episodeHelper.insertEpisodes(episodeDetails.toInsert)
+                }
+                if (episodeDetails.toUpdate.isNotEmpty()) {
+                    episodeHelper.updateEpisodes(episodeDetails.toUpdate)
+                }
+                if (episodeDetails.toRemove.isNotEmpty()) {
+                    episodeHelper.deleteEpisodes(episodeDetails.toRemove)
+                }
+                episodesWritten += episodeDetails.toInsert.size +
+                        episodeDetails.toUpdate.size +
+                        episodeDetails.toRemove.size
+                episodesUnchanged += episodeDetails.unchangedCount
+            }
 
-        // Temporarily disabled to make migration easier for users.
-        // - Remakes: newer seasons might be in a separate show.
-        // - Anime: all episodes might be combined into single season on TMDb.
-        // Remove legacy seasons and episodes that only have a TVDB ID
-//        episodeHelper.deleteEpisodesWithoutTmdbId(showId)
-//        database.sgSeason2Helper().deleteSeasonsWithoutTmdbId(showId)
+            // Temporarily disabled to make migration easier for users.
+            // - Remakes: newer seasons might be in a separate show.
+            // - Anime: all episodes might be combined into single season on TMDb.
+            // Remove legacy seasons and episodes that only have a TVDB ID
+//            episodeHelper.deleteEpisodesWithoutTmdbId(showId)
+//            database.sgSeason2Helper().deleteSeasonsWithoutTmdbId(showId)
 
-        updateWatchProviderMappings(showId, showTmdbId)
+            update.watchProviderMappings?.let { storeWatchProviderMappings(showId, it) }
 
-        // At last store shows update (sets last updated timestamp).
-        val updated = database.sgShow2Helper().updateShow(updatedShow)
-        return if (updated == 1) {
-            UpdateResult.Success
-        } else {
-            UpdateResult.DatabaseError
+            // At last store shows update (sets last updated timestamp).
+            val updated = database.sgShow2Helper().updateShow(updatedShow)
+            if (updated == 1) {
+                UpdateResult.Success(episodesWritten, episodesUnchanged)
+            } else {
+                UpdateResult.DatabaseError
+            }
         }
     }
 
     /**
      * Download and store watch provider mappings if a streaming search region is configured.
      *
+     * Note: this calls [getWatchProviderMappings] which may throw [InterruptedException].
+     */
+    @Throws(InterruptedException::class)
+    private fun updateWatchProviderMappings(showId: Long, showTmdbId: Int) {
+        getWatchProviderMappings(showId, showTmdbId)
+            ?.let { storeWatchProviderMappings(showId, it) }
+    }
+
+    /**
+     * Download watch provider mappings if a streaming search region is configured.
+     * Returns null if not configured or the download failed.
+     *
      * Note: this uses [runBlocking], so if the calling thread is interrupted this will throw
      * [InterruptedException].
      */
     @Throws(InterruptedException::class)
-    private fun updateWatchProviderMappings(showId: Long, showTmdbId: Int) {
-        val region = StreamingSearch.getCurrentRegionOrNull(context) ?: return
-        runBlocking {
-            val providers = TmdbTools2().getWatchProvidersForShow(showTmdbId, region, context)
-            if (providers != null) {
-                // Just take all possible options
-                (providers.flatrate + providers.free + providers.ads + providers.buy)
-                    .mapNotNull { it.provider_id }
-                    .distinct()
-                    .map { SgWatchProviderShowMapping(it, showId) }
-                    .also {
-                        val providerHelper =
-                            SgRoomDatabase.getInstance(context).sgWatchProviderHelper()
-                        providerHelper.deleteShowMappings(showId)
-                        // If providers are added that don't exist in the providers table,
-                        // not an issue as they just won't be displayed (join will fail).
-                        if (it.isNotEmpty()) providerHelper.addShowMappings(it)
-                    }
-            }
-        }
+    private fun getWatchProviderMappings(
+        showId: Long,
+        showTmdbId: Int
+    ): List<SgWatchProviderShowMapping>? {
+        val region = StreamingSearch.getCurrentRegionOrNull(context) ?: return null
+        val providers = runBlocking {
+            TmdbTools2().getWatchProvidersForShow(showTmdbId, region, context)
+        } ?: return null
+        // Just take all possible options
+        return (providers.flatrate + providers.free + providers.ads + providers.buy)
+            .mapNotNull { it.provider_id }
+            .distinct()
+            .map { SgWatchProviderShowMapping(it, showId) }
+    }
+
+    private fun storeWatchProviderMappings(
+        showId: Long,
+        mappings: List<SgWatchProviderShowMapping>
+    ) {
+        val providerHelper = SgRoomDatabase.getInstance(context).sgWatchProviderHelper()
+        providerHelper.deleteShowMappings(showId)
+        // If providers are added that don't exist in the providers table,
+        // not an issue as they just won't be displayed (join will fail).
+        if (mappings.isNotEmpty()) providerHelper.addShowMappings(mappings)
     }
 
     data class SeasonInfo(val id: Long, val number: Int)
@@ -652,7 +755,14 @@ class AddUpdateShowTools(
     }
 
     sealed class UpdateResult {
-        object Success : UpdateResult()
+        /**
+         * [episodesWritten] is the number of episode rows inserted, updated or removed,
+         * [episodesUnchanged] the number of episode rows not written as they have not changed.
+         */
+        class Success(
+            val episodesWritten: Int = 0,
+            val episodesUnchanged: Int = 0
+        ) : UpdateResult()
         object DoesNotExist : UpdateResult()
         class ApiErrorStop(val service: ShowService) : UpdateResult()
         class ApiErrorRetry(val service: ShowService) : UpdateResult()
@@ -9,6 +9,7 @@ import com.battlelancer.seriesguide.shows.database.SgEpisode2
 import com.battlelancer.seriesguide.shows.database.SgEpisode2Ids
 import com.battlelancer.seriesguide.shows.database.SgEpisode2Update
 import com.battlelancer.seriesguide.shows.database.SgShow2
+import com.battlelancer.seriesguide.tmdbapi.TmdbSeasonsService
 import com.battlelancer.seriesguide.tmdbapi.TmdbTools3
 import com.battlelancer.seriesguide.tmdbapi.TmdbTools3.TmdbError
 import com.battlelancer.seriesguide.util.TextTools
@@ -22,7 +23,7 @@ import java.util.TimeZone
 import kotlin.collections.forEach
 
 /**
- * Helps get episodes of a season from TMDB.
+ * Helps get episodes of seasons from TMDB.
  */
 class GetEpisodesOfSeasonTools(
     private val context: Context
@@ -38,49 +39,77 @@ class GetEpisodesOfSeasonTools(
         val network: String?
     )
 
+    /**
+     * [unchangedCount] is the number of existing episodes that are not in [toUpdate] as their
+     * values have not changed.
+     */
     data class EpisodeDetails(
         val toInsert: List<SgEpisode2>,
         val toUpdate: List<SgEpisode2Update>,
-        val toRemove: List<Long>
+        val toRemove: List<Long>,
+        val unchangedCount: Int
     )
 
-    fun getEpisodesOfSeason(
-        releaseInfo: ReleaseInfo,
-        showTmdbId: Int,
-        showId: Long,
-        seasonNumber: Int,
-        seasonId: Long,
-        language: String,
-        localEpisodesByTmdbId: MutableMap<Int, SgEpisode2Ids>?,
-        localEpisodesWithoutTmdbIdByNumber: MutableMap<Int, SgEpisode2Ids>?
-    ): Result<EpisodeDetails, TmdbError> {
-        val fallbackLanguage: String? = ShowsSettings.getShowsLanguageFallback(context)
-            .let { if (it != language) it else null }
+    /**
+     * Episodes of a season from TMDB. [episodesFallback] is only loaded if some [episodes] have no
+     * name or overview and a fallback language is set.
+     */
+    data class SeasonEpisodes(
+        val episodes: List<TvEpisode>,
+        val episodesFallback: List<TvEpisode>?
+    )
 
-        val tmdbEpisodes = TmdbTools3.getSeason(showTmdbId, seasonNumber, language, context)
+    /**
+     * Loads the episodes of the seasons with [seasonNumbers] from TMDB.
+     *
+     * To reduce the number of requests, seasons are loaded in groups of up to
+     * [TmdbSeasonsService.MAX_APPENDED] using [TmdbTools3.getSeasons]. Then only seasons where
+     * some episodes have no name or overview are loaded in the fallback language the same way.
+     *
+     * Groups are loaded one after another on the calling thread: most shows only need a single
+     * group, and show updates already run in parallel.
+     */
+    fun getEpisodesOfSeasons(
+        showTmdbId: Int,
+        seasonNumbers: List<Int>,
+        language: String
+    ): Result<Map<Int, SeasonEpisodes>, TmdbError> {
+        val tmdbEpisodes = getSeasonsInGroups(showTmdbId, seasonNumbers, language)
             .getOrElse { return Err(it) }
 
-        val tmdbEpisodesFallback = if (fallbackLanguage != null
-            && tmdbEpisodes.find { it.name.isNullOrEmpty() || it.overview.isNullOrEmpty() } != null) {
-            // Also fetch in fallback language if some episodes have no name or overview.
-            TmdbTools3.getSeason(showTmdbId, seasonNumber, fallbackLanguage, context)
+        val fallbackLanguage: String? = ShowsSettings.getShowsLanguageFallback(context)
+            .let { if (it != language) it else null }
+        val tmdbEpisodesFallback = if (fallbackLanguage != null) {
+            // Also fetch seasons in fallback language if some episodes have no name or overview.
+            val seasonsMissingValues = tmdbEpisodes
+                .filterValues { episodes ->
+                    episodes.any { it.name.isNullOrEmpty() || it.overview.isNullOrEmpty() }
+                }
+                .keys.toList()
+            getSeasonsInGroups(showTmdbId, seasonsMissingValues, fallbackLanguage)
                 .getOrElse { return Err(it) }
         } else {
-            null
+            emptyMap()
         }
 
-        val episodeDetails = mapToSgEpisode2(
-            tmdbEpisodes,
-            tmdbEpisodesFallback,
-            releaseInfo,
-            showId,
-            seasonId,
-            seasonNumber,
-            localEpisodesByTmdbId,
-            localEpisodesWithoutTmdbIdByNumber
-        )
+        return Ok(tmdbEpisodes.mapValues { (seasonNumber, episodes) ->
+            SeasonEpisodes(episodes, tmdbEpisodesFallback[seasonNumber])
+        })
+    }
 
-        return Ok(episodeDetails)
+    private fun getSeasonsInGroups(
+        showTmdbId: Int,
+        seasonNumbers: List<Int>,
+        language: String
+    ): Result<Map<Int, List<TvEpisode>>, TmdbError> {
+        val episodesBySeason = HashMap<Int, List<TvEpisode>>(seasonNumbers.size)
+        seasonNumbers.chunked(TmdbSeasonsService.MAX_APPENDED).forEach { group ->
+            episodesBySeason.putAll(
+                TmdbTools3.getSeasons(showTmdbId, group, language, context)
+                    .getOrElse { return Err(it) }
+            )
+        }
+        return Ok(episodesBySeason)
     }
 
     /**
@@ -88,9 +117,8 @@ class GetEpisodesOfSeasonTools(
      * Will choose to update episode if not found in [localEpisodesByTmdbId],
      * but found in [localEpisodesWithoutTmdbIdByNumber].
      */
-    private fun mapToSgEpisode2(
-        tmdbEpisodes: List<TvEpisode>,
-        tmdbEpisodesFallback: List<TvEpisode>?,
+    fun mapToSgEpisode2(
+        seasonEpisodes: SeasonEpisodes,
         releaseInfo: ReleaseInfo,
         showId: Long,
         seasonId: Long,
@@ -111,14 +139,15 @@ class GetEpisodesOfSeasonTools(
 
         val toInsert = mutableListOf<SgEpisode2>()
         val toUpdate = mutableListOf<SgEpisode2Update>()
-        tmdbEpisodes.forEach { tmdbEpisode ->
+        var unchangedCount = 0
+        seasonEpisodes.episodes.forEach { tmdbEpisode ->
             val tmdbId = tmdbEpisode.id ?: return@forEach
 
             // If name or overview are empty use fallback
             val isMissingTitle = tmdbEpisode.name.isNullOrEmpty()
             val isMissingOverview = tmdbEpisode.overview.isNullOrEmpty()
             val fallbackEpisode = if (isMissingTitle || isMissingOverview) {
-                tmdbEpisodesFallback?.find { it.id == tmdbId }
+                seasonEpisodes.episodesFallback?.find { it.id == tmdbId }
             } else {
                 null
             }
@@ -148,8 +177,24 @@ class GetEpisodesOfSeasonTools(
                 ?: emptyList()
 
             // Note: last edited time is not available on TMDB,
-            // so it and last updated time are currently not used
-            // to only update changed episodes.
+            // so instead the content hash of the values to write
+            // is used to only update changed episodes.
+            val episode = SgEpisode2Update(
+                id = 0,
+                tmdbId = tmdbId,
+                title = titleOrNull ?: "",
+                overview = overviewOrNull,
+                number = tmdbEpisode.episode_number ?: 0,
+                order = tmdbEpisode.episode_number ?: 0,
+                season = seasonNumber,
+                directors = TextTools.buildPipeSeparatedString(directors),
+                guestStars = TextTools.buildPipeSeparatedString(guestStars),
+                writers = TextTools.buildPipeSeparatedString(writers),
+                image = tmdbEpisode.still_path,
+                firstReleasedMs = releaseDateTime,
+                ratingTmdb = tmdbEpisode.vote_average,
+                ratingTmdbVotes = tmdbEpisode.vote_count,
+            )
 
             // Update if episode with TMDb ID is in database, or if episode with same number is.
             // Why same number? If legacy episodes get added to TMDb they would not get updated,
@@ -163,47 +208,36 @@ class GetEpisodesOfSeasonTools(
                     SgEpisode2(
                         showId = showId,
                         seasonId = seasonId,
-                        tmdbId = tmdbEpisode.id,
-                        title = titleOrNull ?: "",
-                        overview = overviewOrNull,
-                        number = tmdbEpisode.episode_number ?: 0,
-                        order = tmdbEpisode.episode_number ?: 0,
-                        season = seasonNumber,
-                        image = tmdbEpisode.still_path,
-                        firstReleasedMs = releaseDateTime,
-                        directors = TextTools.buildPipeSeparatedString(directors),
-                        guestStars = TextTools.buildPipeSeparatedString(guestStars),
-                        writers = TextTools.buildPipeSeparatedString(writers),
-                        ratingTmdb = tmdbEpisode.vote_average,
-                        ratingTmdbVotes = tmdbEpisode.vote_count,
+                        tmdbId = episode.tmdbId,
+                        title = episode.title,
+                        overview = episode.overview,
+                        number = episode.number,
+                        order = episode.order,
+                        season = episode.season,
+                        image = episode.image,
+                        firstReleasedMs = episode.firstReleasedMs,
+                        directors = episode.directors,
+                        guestStars = episode.guestStars,
+                        writers = episode.writers,
+                        ratingTmdb = episode.ratingTmdb,
+                        ratingTmdbVotes = episode.ratingTmdbVotes,
                         // Trakt ratings loaded later by TraktRatingsFetcher
                         ratingTrakt = null,
                         ratingTraktVotes = null,
                         // Added by TraktRatingsSync
-                        ratingUser = null
+                        ratingUser = null,
+                        contentHash = episode.contentHash
                     )
                 )
             } else {
-                // Update
-                // Note: update adds TMDb ID in case episode was matched by number.
-                toUpdate.add(
-                    SgEpisode2Update(
-                        id = localEpisodeIdOrNull.id,
-                        tmdbId = tmdbId,
-                        title = titleOrNull ?: "",
-                        overview = overviewOrNull,
-                        number = tmdbEpisode.episode_number ?: 0,
-                        order = tmdbEpisode.episode_number ?: 0,
-                        season = seasonNumber,
-                        directors = TextTools.buildPipeSeparatedString(directors),
-                        guestStars = TextTools.buildPipeSeparatedString(guestStars),
-                        writers = TextTools.buildPipeSeparatedString(writers),
-                        image = tmdbEpisode.still_path,
-                        firstReleasedMs = releaseDateTime,
-                        ratingTmdb = tmdbEpisode.vote_average,
-                        ratingTmdbVotes = tmdbEpisode.vote_count,
-                    )
-                )
+                if (localEpisodeIdOrNull.contentHash == episode.contentHash) {
+                    // Unchanged, skip writing it.
+                    unchangedCount++
+                } else {
+                    // Update
+                    // Note: update adds TMDb ID in case episode was matched by number.
+                    toUpdate.add(episode.copy(id = localEpisodeIdOrNull.id))
+                }
                 // Remove from map so episode will not get deleted.
                 localEpisodesByTmdbId?.remove(tmdbId)
             }
@@ -212,7 +246,7 @@ class GetEpisodesOfSeasonTools(
         // Mark any local episodes that are no longer on TMDB for removal.
         val toRemove = localEpisodesByTmdbId?.map { it.value.id } ?: emptyList()
 
-        return EpisodeDetails(toInsert, toUpdate, toRemove)
+        return EpisodeDetails(toInsert, toUpdate, toRemove, unchangedCount)
     }
 
 }
\ No newline at end of file
@@ -30,7 +30,12 @@ class NextEpisodeUpdater(
 
     /**
      * Update next episode field and unwatched episode count for the given show. If no show id is
-     * passed, will update next episodes for all shows.
+     * passed, will update next episodes for all shows. Then counts unwatched episodes of all shows
+     * with a single query and only writes shows where values have changed.
+     *
+     * The next episode is still looked up for each show: the lookup depends on the last watched
+     * episode of the show and only reads a few rows using an episode index on the show ID. A single
+     * query for all shows would have to rank all episodes after the last watched one of each show.
      *
      * @return If only one show was passed, the row id of the new next episode. May be 0 if there is
      * no next episode. On failure -1.
@@ -62,6 +67,20 @@ class NextEpisodeUpdater(
         val currentTime = TimeTools.getCurrentTime(context)
         val preventSpoilers = DisplaySettings.preventSpoilers(context)
 
+        // If updating all shows, get unwatched counts for all shows at once and current values to
+        // only write shows where values changed.
+        val unwatchedCountsOrNull: Map<Long, Int>?
+        val currentValuesOrNull: Map<Long, SgShow2NextEpisodeUpdate>?
+        if (showIdOrNull == null) {
+            unwatchedCountsOrNull = episodeHelper.countNotWatchedEpisodesOfShows(currentTime)
+                .associate { it.showId to it.count }
+            currentValuesOrNull = showHelper.getShowsNextEpisode()
+                .associateBy { it.id }
+        } else {
+            unwatchedCountsOrNull = null
+            currentValuesOrNull = null
+        }
+
         // Received crashes on Android 5.1 where iterator is null,
         // though can't reproduce on emulator.
         @Suppress("RedundantNullableReturnType")
@@ -118,8 +137,11 @@ class NextEpisodeUpdater(
             )
 
             // STEP 3: get remaining episodes count
-            val unwatchedEpisodesCount = episodeHelper
-                .countNotWatchedEpisodesOfShow(show.id, currentTime)
+            val unwatchedEpisodesCount = if (unwatchedCountsOrNull != null) {
+                unwatchedCountsOrNull[show.id] ?: 0
+            } else {
+                episodeHelper.countNotWatchedEpisodesOfShow(show.id, currentTime)
+            }
 
             // STEP 4: build updated next episode values
             val update: SgShow2NextEpisodeUpdate
@@ -156,7 +178,9 @@ class NextEpisodeUpdater(
                     unwatchedEpisodesCount
                 )
             }
-            batch.add(update)
+            if (currentValuesOrNull == null || currentValuesOrNull[show.id] != update) {
+                batch.add(update)
+            }
         }
 
         // Update shows in database with new next episode values.
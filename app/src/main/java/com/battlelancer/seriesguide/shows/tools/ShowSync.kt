@@ -8,6 +8,7 @@ import android.content.Context
 import android.text.format.DateUtils
 import com.battlelancer.seriesguide.SgApp
 import com.battlelancer.seriesguide.provider.SgRoomDatabase
+import com.battlelancer.seriesguide.settings.TmdbSettings
 import com.battlelancer.seriesguide.shows.database.SgShow2Helper
 import com.battlelancer.seriesguide.shows.tools.AddUpdateShowTools.UpdateResult.ApiErrorRetry
 import com.battlelancer.seriesguide.shows.tools.AddUpdateShowTools.UpdateResult.ApiErrorStop
@@ -18,14 +19,30 @@ import com.battlelancer.seriesguide.sync.SgSyncAdapter
 import com.battlelancer.seriesguide.sync.SgSyncAdapter.UpdateResult
 import com.battlelancer.seriesguide.sync.SyncOptions.SyncType
 import com.battlelancer.seriesguide.sync.SyncProgress
+import com.battlelancer.seriesguide.sync.UpdateThrottle
+import com.battlelancer.seriesguide.tmdbapi.SgTmdb
+import com.battlelancer.seriesguide.tmdbapi.TmdbChangesService
+import com.github.michaelbull.result.getOrElse
+import com.github.michaelbull.result.map
 import com.uwetrottmann.androidutils.AndroidUtils
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.currentCoroutineContext
 import kotlinx.coroutines.delay
+import kotlinx.coroutines.ensureActive
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withContext
+import org.threeten.bp.Instant
+import org.threeten.bp.LocalDate
+import org.threeten.bp.ZoneOffset
+import retrofit2.create
 import timber.log.Timber
-import kotlin.math.pow
-import kotlin.random.Random
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.math.min
 
 /**
  * Updates show data from the show data source.
@@ -36,8 +53,15 @@ class ShowSync(
     private val singleShowId: Long
 ) {
 
+    @Volatile
     private var hasUpdatedShows = false
 
+    /**
+     * If set, the time up to which shows changed on TMDB are updated once all shows to update
+     * were updated successfully.
+     */
+    private var showChangesCheckedMs: Long? = null
+
     /**
      * Update shows based on the sync type. Returns
      *
@@ -47,16 +71,12 @@ class ShowSync(
      * - [SgSyncAdapter.UpdateResult.SUCCESS] if all desired shows were updated
      *
      * Considers shows that no longer exist at the source to be updated.
-     * On network errors retries a few times to update a show before failing.
-     *
-     * Note: this calls
+     * Updates up to [MAX_PARALLEL_UPDATES] shows at the same time. On network errors backs off
+     * all updates and retries up to [MAX_RETRIES_PER_SHOW] times to update a show before failing.
      *
-     * - [AddUpdateShowTools.updateShow]
-     * - [Thread.sleep]
-     *
-     * which may throw [InterruptedException].
+     * Note: this uses [runBlocking], so if the calling thread is interrupted this will throw
+     * [InterruptedException] once shows currently updating have finished.
      */
-    @SuppressLint("TimberExceptionLogging")
     @Throws(InterruptedException::class)
     fun sync(
         context: Context,
@@ -66,100 +86,159 @@ class ShowSync(
         hasUpdatedShows = false
 
         val showsToUpdate = getShowsToUpdate(
+            context,
             SgRoomDatabase.getInstance(context).sgShow2Helper(),
             currentTime
         ) ?: return null
         Timber.d("Updating %d show(s)...", showsToUpdate.size)
 
+        if (Thread.interrupted()) throw InterruptedException()
+
         val showTools = SgApp.getServicesComponent(context).addUpdateShowTools()
-        var networkErrors = 0
-        for (showId in showsToUpdate) {
-            // Try to update this show.
-            var result: AddUpdateShowTools.UpdateResult
-            do {
-                // Shortcut to stop updating if connectivity is lost.
-                if (!AndroidUtils.isNetworkConnected(context)) {
-                    return UpdateResult.INCOMPLETE
+        // Shared by all workers, so network errors back off and stop all of them.
+        val throttle = UpdateThrottle(MIN_UPDATE_INTERVAL_MS)
+        val nextShowIndex = AtomicInteger()
+        val shouldStop = AtomicBoolean()
+        val workerCount = min(MAX_PARALLEL_UPDATES, showsToUpdate.size)
+        val results = runBlocking {
+            List(workerCount) {
+                async(Dispatchers.IO) {
+                    while (!shouldStop.get()) {
+                        val index = nextShowIndex.getAndIncrement()
+                        if (index >= showsToUpdate.size) break
+                        val showId = showsToUpdate[index]
+                        if (!updateShow(context, showTools, showId, throttle, progress)) {
+                            // Do not start updating further shows, try again later.
+                            shouldStop.set(true)
+                            return@async UpdateResult.INCOMPLETE
+                        }
+                    }
+                    UpdateResult.SUCCESS
                 }
+            }.awaitAll()
+        }
+        return if (results.all { it == UpdateResult.SUCCESS }) {
+            // Only now all changed shows are updated, so the next sync can load changes after.
+            showChangesCheckedMs?.let { TmdbSettings.setShowChangesCheckedMs(context, it) }
+            UpdateResult.SUCCESS
+        } else {
+            UpdateResult.INCOMPLETE
+        }
+    }
 
-                if (Thread.interrupted()) throw InterruptedException()
-
-                // This can fail due to
-                // - network error (not connected, unknown host, time out) => abort and try again
-                // - API error (parsing error, other error) => abort, report and try again later
-                // - show does no longer exist => ignore and continue
-                // - database error => abort, report and try again later
-                // Note: reporting is done where the exception occurs.
-                result = showTools.updateShow(showId)
-
-                if (result is ApiErrorRetry) {
-                    networkErrors++
-                    if (networkErrors == 3) {
-                        // Stop updating after multiple network errors
-                        // (for timeouts around 3 * 15/20 seconds)
-                        val service = context.getString(result.service.nameResId)
-                        Timber.e("Too many network errors, last one with $service, trying again later.")
-                        progress.setImportantErrorIfNone("Failed to talk to $service, trying again later.")
-                        return UpdateResult.INCOMPLETE
+    /**
+     * Updates a single show, retrying on network errors. Returns false if updating shows should
+     * stop and be tried again later.
+     */
+    @SuppressLint("TimberExceptionLogging")
+    private suspend fun updateShow(
+        context: Context,
+        showTools: AddUpdateShowTools,
+        showId: Long,
+        throttle: UpdateThrottle,
+        progress: SyncProgress
+    ): Boolean {
+        // Try to update this show.
+        var result: AddUpdateShowTools.UpdateResult
+        var retries = 0
+        do {
+            // Shortcut to stop updating if connectivity is lost.
+            if (!AndroidUtils.isNetworkConnected(context)) {
+                return false
+            }
+
+            // Wait for rate limit or back off, stop if there were too many network errors.
+            if (!throttle.awaitTurn()) return false
+            currentCoroutineContext().ensureActive()
+            val startedAtMs = throttle.now()
+
+            // This can fail due to
+            // - network error (not connected, unknown host, time out) => abort and try again
+            // - API error (parsing error, other error) => abort, report and try again later
+            // - show does no longer exist => ignore and continue
+            // - database error => abort, report and try again later
+            // Note: reporting is done where the exception occurs.
+            // Note: parallel updates download at the same time, but a single writer stores
+            // them one transaction at a time.
+            result = showTools.downloadShowUpdate(showId)
+                .map { update ->
+                    if (update != null) {
+                        withContext(showUpdateWriter) { showTools.storeShowUpdate(update) }
                     } else {
-                        // Back off, then try again.
-                        // Wait for 2^n seconds + random milliseconds,
-                        // with n starting at 0 (so 1 s + random ms)
-                        val n = networkErrors - 1
-                        Thread.sleep(
-                            (2.0.pow(n)).toLong() * DateUtils.SECOND_IN_MILLIS
-                                    + Random.nextInt(0, 1000)
-                        )
+                        Success()
                     }
-                } else if (networkErrors > 0) {
-                    // Reduce counter on each successful update.
-                    networkErrors--
-                }
-            } while (result is ApiErrorRetry)
-
-            // Handle update result.
-            when (result) {
-                Success -> hasUpdatedShows = true
-                DoesNotExist -> {
-                    // Continue with other shows, assume existing data is latest.
-                    // TODO Add permanent hint to user the show can no longer be updated.
-                    //  Currently, if multiple shows do not exist only the first to be tried
-                    //  is displayed to the user.
-                    setImportantMessageIfNone(
-                        context,
-                        progress,
-                        showId,
-                        "Show '%s' removed from TMDB (id %s), maybe search for a replacement and remove it."
-                    )
                 }
+                .getOrElse { it }
 
-                is ApiErrorRetry -> throw IllegalStateException("Should retry and not handle result.")
-                is ApiErrorStop -> {
-                    // API error, do not continue and try again later.
-                    setImportantMessageIfNone(
-                        context,
-                        progress,
-                        showId,
-                        "Could not update show '%s' (TMDB id %s) due to issue with ${
-                            context.getString(result.service.nameResId)
-                        }, trying again later."
-                    )
-                    return UpdateResult.INCOMPLETE
+            if (result is ApiErrorRetry) {
+                if (!throttle.onNetworkError(startedAtMs)) {
+                    // Stop updating after multiple network errors
+                    // (for timeouts around 3 * 15/20 seconds)
+                    val service = context.getString(result.service.nameResId)
+                    Timber.e("Too many network errors, last one with $service, trying again later.")
+                    progress.setImportantErrorIfNone("Failed to talk to $service, trying again later.")
+                    return false
                 }
-
-                DatabaseError -> {
-                    // Database error, do not continue and try again later.
-                    setImportantMessageIfNone(
-                        context,
-                        progress,
-                        showId,
-                        "Could not update show '%s' (TMDB id %s) due to a database error, trying again later."
-                    )
-                    return UpdateResult.INCOMPLETE
+                // Successful updates of other shows reduce the error count, so also limit
+                // retries of this show.
+                if (++retries > MAX_RETRIES_PER_SHOW) {
+                    val service = context.getString(result.service.nameResId)
+                    Timber.e("Too many retries for show $showId with $service, trying again later.")
+                    progress.setImportantErrorIfNone("Failed to talk to $service, trying again later.")
+                    return false
                 }
+                // Otherwise back off (see awaitTurn), then try again.
+            } else {
+                // Reduce error count on each successful update.
+                throttle.onSuccess()
+            }
+        } while (result is ApiErrorRetry)
+
+        // Handle update result.
+        when (result) {
+            is Success -> {
+                hasUpdatedShows = true
+                progress.addEpisodeRows(result.episodesWritten, result.episodesUnchanged)
+            }
+            DoesNotExist -> {
+                // Continue with other shows, assume existing data is latest.
+                // TODO Add permanent hint to user the show can no longer be updated.
+                //  Currently, if multiple shows do not exist only the first to be tried
+                //  is displayed to the user.
+                setImportantMessageIfNone(
+                    context,
+                    progress,
+                    showId,
+                    "Show '%s' removed from TMDB (id %s), maybe search for a replacement and remove it."
+                )
+            }
+
+            is ApiErrorRetry -> throw IllegalStateException("Should retry and not handle result.")
+            is ApiErrorStop -> {
+                // API error, do not continue and try again later.
+                setImportantMessageIfNone(
+                    context,
+                    progress,
+                    showId,
+                    "Could not update show '%s' (TMDB id %s) due to issue with ${
+                        context.getString(result.service.nameResId)
+                    }, trying again later."
+                )
+                return false
+            }
+
+            DatabaseError -> {
+                // Database error, do not continue and try again later.
+                setImportantMessageIfNone(
+                    context,
+                    progress,
+                    showId,
+                    "Could not update show '%s' (TMDB id %s) due to a database error, trying again later."
+                )
+                return false
             }
         }
-        return UpdateResult.SUCCESS
+        return true
     }
 
     private fun setImportantMessageIfNone(
@@ -182,7 +261,11 @@ class ShowSync(
     /**
      * Returns an array of show ids to update.
      */
-    private fun getShowsToUpdate(showHelper: SgShow2Helper, currentTime: Long): List<Long>? {
+    private fun getShowsToUpdate(
+        context: Context,
+        showHelper: SgShow2Helper,
+        currentTime: Long
+    ): List<Long>? {
         return when (syncType) {
             SyncType.SINGLE -> {
                 val showId = singleShowId
@@ -198,11 +281,97 @@ class ShowSync(
                 showHelper.getShowIdsLong()
             }
 
-            SyncType.DELTA -> getShowsToDeltaUpdate(showHelper, currentTime)
+            SyncType.DELTA -> getShowsToDeltaUpdateWithChanges(context, showHelper, currentTime)
             else -> throw IllegalArgumentException("Sync type $syncType is not supported.")
         }
     }
 
+    /**
+     * If possible, instead of all shows not updated for a certain time (see
+     * [getShowsToDeltaUpdate]) returns only those that have changed on TMDB since the last check
+     * and those not updated for a longer time ([UPDATE_THRESHOLD_UNCHANGED_MS]) in case a change
+     * was missed.
+     *
+     * Loading the TMDB changes feed takes a request per 100 changed shows of all of TMDB. So only
+     * uses it if that takes less requests than updating the shows not updated for a certain time
+     * (each takes at least one request), and at most once every [SHOW_CHANGES_CHECK_INTERVAL_MS].
+     */
+    private fun getShowsToDeltaUpdateWithChanges(
+        context: Context,
+        showHelper: SgShow2Helper,
+        currentTime: Long
+    ): List<Long> {
+        val showsToUpdateByTime = getShowsToDeltaUpdate(showHelper, currentTime)
+        if (showsToUpdateByTime.isEmpty()) return showsToUpdateByTime
+
+        // TMDB uses UTC dates for changes.
+        val today = utcDate(currentTime)
+        val checkedMs = TmdbSettings.getShowChangesCheckedMs(context)
+        if (checkedMs == null || utcDate(checkedMs).plusDays(TmdbShowChanges.MAX_DAYS) < today) {
+            // Changes since the last check can not be loaded, update all shows by time and
+            // load changes since now next time.
+            Timber.d("Updating shows by time, no recent check for changes")
+            showChangesCheckedMs = currentTime
+            return showsToUpdateByTime
+        }
+
+        val showsChangeInfo = showHelper.getShowsChangeInfo()
+        val showsToUpdateByTimeSet = showsToUpdateByTime.toHashSet()
+        val showsToUpdate = LinkedHashSet<Long>()
+        // Changes can not be checked for shows without TMDB ID, keep updating them by time.
+        showsChangeInfo
+            .filter { it.tmdbId == null && showsToUpdateByTimeSet.contains(it.id) }
+            .mapTo(showsToUpdate) { it.id }
+
+        if (currentTime - checkedMs < SHOW_CHANGES_CHECK_INTERVAL_MS) {
+            // Checked recently, do not load the feed again (delta syncs may run every few minutes).
+            // Keep the last check time, so the next check includes changes since then.
+            showsToUpdate.addAll(getShowsNotUpdatedForLong(showHelper, currentTime))
+            Timber.d("Not checking for changes again yet, updating %d show(s)", showsToUpdate.size)
+            return showsToUpdate.toList()
+        }
+
+        val changesService = (SgApp.getServicesComponent(context).tmdb() as SgTmdb)
+            .retrofit.create<TmdbChangesService>()
+        val result = TmdbShowChanges(changesService)
+            .getChangedShows(utcDate(checkedMs), today, maxPages = showsToUpdateByTime.size)
+        if (result !is TmdbShowChanges.Result.Changed) {
+            // Keep the last check time, so the next sync can try again.
+            Timber.d("Updating shows by time, changes not available: %s", result)
+            return showsToUpdateByTime
+        }
+
+        // The feed only has days, so it also lists changes from before the last check on its
+        // day. Shows updated after the last check already have those.
+        showsChangeInfo
+            .filter {
+                it.tmdbId != null && it.lastUpdatedMs < checkedMs
+                        && result.tmdbIds.contains(it.tmdbId)
+            }
+            .mapTo(showsToUpdate) { it.id }
+        val changedCount = showsToUpdate.size
+        showsToUpdate.addAll(getShowsNotUpdatedForLong(showHelper, currentTime))
+        Timber.i(
+            "Updating %d changed show(s) and %d not updated for a long time",
+            changedCount,
+            showsToUpdate.size - changedCount
+        )
+        showChangesCheckedMs = currentTime
+        return showsToUpdate.toList()
+    }
+
+    private fun utcDate(timeMs: Long): LocalDate =
+        Instant.ofEpochMilli(timeMs).atOffset(ZoneOffset.UTC).toLocalDate()
+
+    /**
+     * Returns shows to update even if not changed on TMDB, in case a change was missed.
+     */
+    private fun getShowsNotUpdatedForLong(showHelper: SgShow2Helper, currentTime: Long) =
+        showHelper.getShowsUpdateInfo(
+            currentTime - UPDATE_THRESHOLD_UNCHANGED_MS,
+            currentTime - UPDATE_THRESHOLD_ENDED_MS
+        )
+
     /**
      * Return list of show IDs that have not been updated for a certain time.
      */
@@ -231,6 +400,32 @@ class ShowSync(
         // opening them, they will still get updated earlier.
         const val UPDATE_THRESHOLD_ENDED_MS = 90 * DateUtils.DAY_IN_MILLIS
 
+        // If only shows changed on TMDB are updated, still update others once in a while in case
+        // a change was missed.
+        const val UPDATE_THRESHOLD_UNCHANGED_MS = 30 * DateUtils.DAY_IN_MILLIS
+
+        /**
+         * Load the TMDB changes feed at most about once per regular sync interval, not on every
+         * delta sync.
+         */
+        private const val SHOW_CHANGES_CHECK_INTERVAL_MS =
+            SgSyncAdapter.SYNC_INTERVAL_SECONDS * DateUtils.SECOND_IN_MILLIS
+
+        /**
+         * How many shows to update at the same time. Each show update makes multiple requests,
+         * so keep this low to not run into rate limits.
+         */
+        private const val MAX_PARALLEL_UPDATES = 4
+
+        /** Minimum time between starting show updates, limits the request rate. */
+        private const val MIN_UPDATE_INTERVAL_MS = 200L
+
+        /** How often to retry updating a show after a network error before failing. */
+        private const val MAX_RETRIES_PER_SHOW = 3
+
+        /** Stores downloaded show updates, one at a time. */
+        private val showUpdateWriter = Dispatchers.IO.limitedParallelism(1)
+
         /**
          * Triggers an update for [showId] with showing an info toast.
          */
@@ -12,7 +12,6 @@ import com.battlelancer.seriesguide.backend.settings.HexagonSettings
 import com.battlelancer.seriesguide.enums.NetworkResult
 import com.battlelancer.seriesguide.modules.ApplicationContext
 import com.battlelancer.seriesguide.notifications.NotificationService
-import com.battlelancer.seriesguide.provider.SeriesGuideDatabase
 import com.battlelancer.seriesguide.provider.SgRoomDatabase
 import com.battlelancer.seriesguide.shows.database.SgShow2
 import com.battlelancer.seriesguide.sync.HexagonShowSync
@@ -168,7 +167,6 @@ class ShowTools2 @Inject constructor(
 
             database.sgWatchProviderHelper().deleteShowMappings(showId)
 
-            SeriesGuideDatabase.rebuildFtsTable(context)
             SgResult.SUCCESS
         }
     }
@@ -0,0 +1,66 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.shows.tools
+
+import com.battlelancer.seriesguide.tmdbapi.TmdbChangesService
+import com.battlelancer.seriesguide.util.Errors
+import org.threeten.bp.LocalDate
+
+/**
+ * Loads the IDs of shows changed on TMDB using the TV changes feed.
+ */
+class TmdbShowChanges(private val changesService: TmdbChangesService) {
+
+    sealed interface Result {
+        data class Changed(val tmdbIds: Set<Int>) : Result
+
+        /** The feed has more than the allowed pages, it is cheaper to not use it. */
+        data object TooManyPages : Result
+
+        data object Failed : Result
+    }
+
+    /**
+     * Returns the TMDB IDs of shows changed from [startDate] to [endDate] (inclusive, at most
+     * [MAX_DAYS] apart). Does not load more than [maxPages] pages.
+     */
+    fun getChangedShows(startDate: LocalDate, endDate: LocalDate, maxPages: Int): Result {
+        require(!startDate.plusDays(MAX_DAYS).isBefore(endDate)) {
+            "At most $MAX_DAYS days apart"
+        }
+        if (maxPages < 1) return Result.TooManyPages
+
+        val tmdbIds = HashSet<Int>()
+        var page = 1
+        var totalPages: Int
+        do {
+            val action = "get show changes page $page"
+            val results = try {
+                val response = changesService
+                    .tv(startDate.toString(), endDate.toString(), page)
+                    .execute()
+                if (!response.isSuccessful) {
+                    Errors.logAndReport(action, response)
+                    return Result.Failed
+                }
+                response.body() ?: return Result.Failed
+            } catch (e: Exception) {
+                Errors.logAndReport(action, e)
+                return Result.Failed
+            }
+
+            totalPages = results.totalPages ?: 1
+            if (totalPages > maxPages) return Result.TooManyPages
+            results.results?.forEach { change -> change.id?.let { tmdbIds.add(it) } }
+            page++
+        } while (page <= totalPages)
+
+        return Result.Changed(tmdbIds)
+    }
+
+    companion object {
+        /** The changes feed only allows loading changes of up to 14 days. */
+        const val MAX_DAYS = 14L
+    }
+}
@@ -37,59 +37,19 @@ class StatsViewModel(application: Application) : AndroidViewModel(application) {
         emit(buildUpdate(stats))
 
         // shows
-        val showRuntimes = countShows(stats, excludeSpecials)
+        countShows(stats, excludeSpecials)
         emit(buildUpdate(stats))
 
-        // episodes
+        // episodes, including runtime of watched episodes
         countEpisodes(stats, excludeSpecials)
-        emit(buildUpdate(stats))
-
-        // calculate runtime of watched episodes per show
-        var totalRuntimeMin: Long = 0
-        var previewTime = System.currentTimeMillis() + PREVIEW_UPDATE_INTERVAL_MS
-        for (showRuntime in showRuntimes) {
-            val showId = showRuntime.key
-            val runtimeOfShowMin = showRuntime.value
-            val helper = SgRoomDatabase.getInstance(getApplication()).sgEpisode2Helper()
-            val watchedEpisodesOfShowCount = if (excludeSpecials) {
-                helper.countWatchedEpisodesOfShowWithoutSpecials(showId)
-            } else {
-                helper.countWatchedEpisodesOfShow(showId)
-            }
-            if (watchedEpisodesOfShowCount == -1) {
-                // episode query failed, return what we have so far
-                stats.episodesWatchedRuntime = totalRuntimeMin * DateUtils.MINUTE_IN_MILLIS
-                emit(
-                    StatsUpdateEvent(
-                    stats,
-                    finalValues = false,
-                    successful = false
-                )
-                )
-                return@liveData
-            }
-            // make sure we calculate with long here (first arg is long) to avoid overflows
-            val runtimeOfEpisodesMin = runtimeOfShowMin * watchedEpisodesOfShowCount
-            totalRuntimeMin += runtimeOfEpisodesMin
-
-            // post regular update of minimum
-            val currentTime = System.currentTimeMillis()
-            if (currentTime > previewTime) {
-                previewTime = currentTime + PREVIEW_UPDATE_INTERVAL_MS
-                stats.episodesWatchedRuntime = totalRuntimeMin * DateUtils.MINUTE_IN_MILLIS
-                emit(buildUpdate(stats))
-            }
-        }
-
-        stats.episodesWatchedRuntime = totalRuntimeMin * DateUtils.MINUTE_IN_MILLIS
 
         // return final values
         emit(
             StatsUpdateEvent(
-            stats,
-            finalValues = true,
-            successful = true
-        )
+                stats,
+                finalValues = true,
+                successful = true
+            )
         )
     }
 
@@ -117,16 +77,12 @@ class StatsViewModel(application: Application) : AndroidViewModel(application) {
             (statsInCollection?.runtime ?: 0) * DateUtils.MINUTE_IN_MILLIS
     }
 
-    /**
-     * Returns shows mapped to their runtime.
-     */
-    private fun countShows(stats: Stats, excludeSpecials: Boolean): Map<Long, Int> {
+    private fun countShows(stats: Stats, excludeSpecials: Boolean) {
         val helper = SgRoomDatabase.getInstance(getApplication()).sgShow2Helper()
         val showStats = helper.getStats()
 
         var continuing = 0
         var withnext = 0
-        val showRuntimes = mutableMapOf<Long, Int>()
         for (show in showStats) {
             // count continuing shows
             if (show.status == ShowStatus.RETURNING) {
@@ -138,8 +94,6 @@ class StatsViewModel(application: Application) : AndroidViewModel(application) {
                 || show.status == ShowStatus.IN_PRODUCTION) {
                 withnext++
             }
-            // map show to its runtime
-            showRuntimes[show.id] = show.runtime
         }
 
         stats.shows = showStats.size
@@ -151,26 +105,19 @@ class StatsViewModel(application: Application) : AndroidViewModel(application) {
         } else {
             helper.countShowsFinishedWatching()
         }
-
-        return showRuntimes
     }
 
     private fun countEpisodes(stats: Stats, excludeSpecials: Boolean) {
         val helper = SgRoomDatabase.getInstance(getApplication()).sgEpisode2Helper()
-        stats.episodes = if (excludeSpecials) {
-            helper.countEpisodesWithoutSpecials()
+        val episodeStats = if (excludeSpecials) {
+            helper.getStatsWithoutSpecials()
         } else {
-            helper.countEpisodes()
+            helper.getStats()
         }
-        stats.episodesWatched = if (excludeSpecials) {
-            helper.countWatchedEpisodesWithoutSpecials()
-        } else {
-            helper.countWatchedEpisodes()
-        }
-    }
-
-    companion object {
-        private const val PREVIEW_UPDATE_INTERVAL_MS = DateUtils.SECOND_IN_MILLIS
+        stats.episodes = episodeStats?.count ?: 0
+        stats.episodesWatched = episodeStats?.watched ?: 0
+        stats.episodesWatchedRuntime =
+            (episodeStats?.watchedRuntime ?: 0) * DateUtils.MINUTE_IN_MILLIS
     }
 
 }
@@ -4,10 +4,12 @@
 package com.battlelancer.seriesguide.sync
 
 import android.content.Context
+import android.os.SystemClock
 import android.text.TextUtils
 import com.battlelancer.seriesguide.backend.HexagonTools
 import com.battlelancer.seriesguide.backend.settings.HexagonSettings
 import com.battlelancer.seriesguide.shows.database.SgEpisode2CollectedUpdateByNumber
+import com.battlelancer.seriesguide.shows.database.SgEpisode2ForSync
 import com.battlelancer.seriesguide.shows.database.SgEpisode2Helper
 import com.battlelancer.seriesguide.shows.database.SgEpisode2WatchedUpdateByNumber
 import com.battlelancer.seriesguide.shows.database.SgShow2Helper
@@ -19,8 +21,15 @@ import com.uwetrottmann.androidutils.AndroidUtils
 import com.uwetrottmann.seriesguide.backend.episodes.model.Episode
 import com.uwetrottmann.seriesguide.backend.episodes.model.SgCloudEpisode
 import com.uwetrottmann.seriesguide.backend.episodes.model.SgCloudEpisodeList
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.sync.Semaphore
 import timber.log.Timber
 import java.io.IOException
+import java.util.concurrent.atomic.AtomicBoolean
 
 class HexagonEpisodeSync(
     private val context: Context,
@@ -37,15 +46,13 @@ class HexagonEpisodeSync(
         val lastSyncTime = DateTime(HexagonSettings.getLastEpisodesSyncTime(context))
         Timber.d("downloadChangedFlags: since %s", lastSyncTime)
 
-        var episodes: List<SgCloudEpisode>?
-        var cursor: String? = null
-        var hasMoreEpisodes = true
         val showIdsToLastWatched: MutableMap<Long, ShowLastWatchedInfo> = HashMap()
-        while (hasMoreEpisodes) {
-            try {
+        val success = downloadAndApplyPages(
+            action = "get updated episodes",
+            fetchPage = { cursor ->
                 // get service each time to check if auth was removed
                 val episodesService = hexagonTools.episodesService
-                    ?: return false
+                    ?: return@downloadAndApplyPages EpisodesPage.Failed
 
                 val request = episodesService.sgEpisodes
                     .setUpdatedSince(lastSyncTime) // use default server limit
@@ -56,54 +63,44 @@ class HexagonEpisodeSync(
                 val response = request.execute()
                 if (response == null) {
                     Timber.d("downloadChangedFlags: response was null, nothing more to do")
-                    break
-                }
-
-                episodes = response.episodes
-
-                // check for more items
-                if (response.cursor != null) {
-                    cursor = response.cursor
+                    EpisodesPage.End
                 } else {
-                    hasMoreEpisodes = false
+                    EpisodesPage.Page(response.episodes, response.cursor)
+                }
+            },
+            applyPage = { episodes ->
+                if (episodes.isNullOrEmpty()) {
+                    return@downloadAndApplyPages false
                 }
-            } catch (e: IOException) {
-                logAndReportHexagon("get updated episodes", e)
-                return false
-            } catch (e: IllegalArgumentException) {
-                // Note: JSON parser may throw IllegalArgumentException.
-                logAndReportHexagon("get updated episodes", e)
-                return false
-            }
-
-            if (episodes.isNullOrEmpty()) {
-                break
-            }
 
-            // Record the latest last watched time and episode ID for a show by taking the one with
-            // the latest updatedAt time.
-            for (episode in episodes) {
-                val showTmdbId: Int = episode.showTmdbId
-                val showId = tmdbIdsToShowIds[showTmdbId]
-                    ?: continue // ignore, show not added in this library
-
-                val watchedFlag: Int? = episode.watchedFlag
-                if (watchedFlag != null) {
-                    if (!EpisodeTools.isUnwatched(watchedFlag)) {
-                        val lastWatchedInfo = showIdsToLastWatched[showId]
-                        // episodes returned in reverse chronological order, so just get the first time
-                        if (lastWatchedInfo == null && episode.updatedAt != null) {
-                            val updatedAtMs = episode.updatedAt.value
-                            showIdsToLastWatched[showId] = ShowLastWatchedInfo(
-                                updatedAtMs, episode.seasonNumber, episode.episodeNumber
-                            )
+                // Record the latest last watched time and episode ID for a show by taking the one
+                // with the latest updatedAt time.
+                // Note: pages are applied in the order they were downloaded.
+                for (episode in episodes) {
+                    val showTmdbId: Int = episode.showTmdbId
+                    val showId = tmdbIdsToShowIds[showTmdbId]
+                        ?: continue // ignore, show not added in this library
+
+                    val watchedFlag: Int? = episode.watchedFlag
+                    if (watchedFlag != null) {
+                        if (!EpisodeTools.isUnwatched(watchedFlag)) {
+                            val lastWatchedInfo = showIdsToLastWatched[showId]
+                            // episodes returned in reverse chronological order, so just get the first time
+                            if (lastWatchedInfo == null && episode.updatedAt != null) {
+                                val updatedAtMs = episode.updatedAt.value
+                                showIdsToLastWatched[showId] = ShowLastWatchedInfo(
+                                    updatedAtMs, episode.seasonNumber, episode.episodeNumber
+                                )
+                            }
                         }
                     }
                 }
-            }
 
-            buildAndApplyEpisodeUpdatesFromCloud(episodes, tmdbIdsToShowIds)
-        }
+                buildAndApplyEpisodeUpdatesFromCloud(episodes, tmdbIdsToShowIds)
+                true
+            }
+        )
+        if (!success) return false
 
         if (showIdsToLastWatched.isNotEmpty()) {
             // Note: it is possible that this overwrites a more recently watched episode,
@@ -168,23 +165,22 @@ class HexagonEpisodeSync(
     }
 
     private fun downloadFlagsByTmdbId(showId: Long, showTmdbId: Int): DownloadFlagsResult {
-        var episodes: List<SgCloudEpisode>?
         var onFirstPage = true
-        var hasMoreEpisodes = true
-        var cursor: String? = null
+        var noData = false
 
         var lastWatchedMs: Long? = null
-        while (hasMoreEpisodes) {
-            // abort if connection is lost
-            if (!AndroidUtils.isNetworkConnected(context)) {
-                Timber.e("downloadFlags: no network connection")
-                return DownloadFlagsResult.FAILED
-            }
+        val success = downloadAndApplyPages(
+            action = "get episodes of show",
+            fetchPage = { cursor ->
+                // abort if connection is lost
+                if (!AndroidUtils.isNetworkConnected(context)) {
+                    Timber.e("downloadFlags: no network connection")
+                    return@downloadAndApplyPages EpisodesPage.Failed
+                }
 
-            try {
                 // get service each time to check if auth was removed
                 val episodesService = hexagonTools.episodesService
-                    ?: return DownloadFlagsResult.FAILED
+                    ?: return@downloadAndApplyPages EpisodesPage.Failed
 
                 // build request
                 val request = episodesService.sgEpisodes
@@ -196,43 +192,113 @@ class HexagonEpisodeSync(
                 // execute request
                 // If empty server should send status 200 and empty list, so no body is a failure
                 val response = request.execute()
-                    ?: return DownloadFlagsResult.FAILED
-
-                episodes = response.episodes
+                    ?: return@downloadAndApplyPages EpisodesPage.Failed
 
-                // check for more items
-                if (response.cursor != null) {
-                    cursor = response.cursor
-                } else {
-                    hasMoreEpisodes = false
+                EpisodesPage.Page(response.episodes, response.cursor)
+            },
+            applyPage = { episodes ->
+                if (episodes.isNullOrEmpty()) {
+                    // If there is no data by TMDB ID at all, try again using TVDB ID.
+                    // Otherwise no more updates to apply.
+                    noData = onFirstPage
+                    return@downloadAndApplyPages false
                 }
-            } catch (e: IOException) {
-                logAndReportHexagon("get episodes of show", e)
-                return DownloadFlagsResult.FAILED
-            } catch (e: IllegalArgumentException) {
-                // Note: JSON parser may throw IllegalArgumentException.
-                logAndReportHexagon("get episodes of show", e)
-                return DownloadFlagsResult.FAILED
+                onFirstPage = false
+
+                // Record last watched time by taking latest updatedAt of all watched/skipped episodes
+                lastWatchedMs = getLatestUpdatedAt(lastWatchedMs, episodes)
+
+                buildAndApplyEpisodeValuesFromCloud(showId, episodes)
+                true
             }
+        )
 
-            if (episodes.isNullOrEmpty()) {
-                if (onFirstPage) {
-                    // If there is no data by TMDB ID at all, try again using TVDB ID.
-                    return DownloadFlagsResult.NO_DATA
+        return when {
+            !success -> DownloadFlagsResult.FAILED
+            noData -> DownloadFlagsResult.NO_DATA
+            else -> DownloadFlagsResult(
+                success = true,
+                noData = false,
+                lastWatchedMs = lastWatchedMs
+            )
+        }
+    }
+
+    private sealed class EpisodesPage {
+        /**
+         * A downloaded page of [episodes]. If [nextCursor] is null this is the last page.
+         */
+        class Page(val episodes: List<SgCloudEpisode>?, val nextCursor: String?) : EpisodesPage()
+
+        /**
+         * There are no more pages, but downloading did not fail.
+         */
+        object End : EpisodesPage()
+
+        object Failed : EpisodesPage()
+    }
+
+    /**
+     * Downloads pages using [fetchPage] on a background thread while the calling thread applies
+     * the previous page using [applyPage]. So network and database time overlap instead of adding
+     * up. Pages are applied in the order they were downloaded. At most [MAX_PREFETCHED_PAGES]
+     * are downloaded ahead.
+     *
+     * [fetchPage] receives the cursor of the page to download, or null for the first page.
+     * If it throws [IOException] or [IllegalArgumentException] (JSON parser) the error is reported
+     * using [action] and downloading is aborted.
+     *
+     * [applyPage] should return false to stop without error, no more pages are downloaded then.
+     *
+     * @return false if downloading a page failed.
+     */
+    private fun downloadAndApplyPages(
+        action: String,
+        fetchPage: (cursor: String?) -> EpisodesPage,
+        applyPage: (episodes: List<SgCloudEpisode>?) -> Boolean
+    ): Boolean = runBlocking {
+        val pages = Channel<EpisodesPage>(MAX_PREFETCHED_PAGES)
+        val downloader = launch(Dispatchers.IO) {
+            var cursor: String? = null
+            while (isActive) {
+                val page = try {
+                    fetchPage(cursor)
+                } catch (e: IOException) {
+                    logAndReportHexagon(action, e)
+                    EpisodesPage.Failed
+                } catch (e: IllegalArgumentException) {
+                    // Note: JSON parser may throw IllegalArgumentException.
+                    logAndReportHexagon(action, e)
+                    EpisodesPage.Failed
+                }
+                pages.send(page)
+
+                // check for more items
+                if (page is EpisodesPage.Page && page.nextCursor != null) {
+                    cursor = page.nextCursor
                 } else {
-                    // no more updates to apply
                     break
                 }
             }
-            onFirstPage = false
+            pages.close()
+        }
 
-            // Record last watched time by taking latest updatedAt of all watched/skipped episodes
-            lastWatchedMs = getLatestUpdatedAt(lastWatchedMs, episodes)
+        try {
+            for (page in pages) {
+                when (page) {
+                    is EpisodesPage.Page -> {
+                        if (!applyPage(page.episodes)) break
+                    }
 
-            buildAndApplyEpisodeValuesFromCloud(showId, episodes)
+                    EpisodesPage.End -> break
+                    EpisodesPage.Failed -> return@runBlocking false
+                }
+            }
+            true
+        } finally {
+            // Stop downloading if applying stopped early or failed.
+            downloader.cancel()
         }
-
-        return DownloadFlagsResult(success = true, noData = false, lastWatchedMs = lastWatchedMs)
     }
 
     private fun downloadFlagsByTvdbId(showId: Long, showTvdbId: Int): DownloadFlagsResult {
@@ -428,74 +494,189 @@ class HexagonEpisodeSync(
     /**
      * Uploads all watched, skipped including plays or collected episodes of this show to Hexagon.
      *
+     * Reads episodes page by page and keeps up to [MAX_UPLOADS_IN_FLIGHT] batches uploading at
+     * the same time. The size of the next batch is adapted based on the time it took to upload
+     * previous batches, see [UploadBatchSizer].
+     *
+     * If an upload fails, stores up to which episode all batches were uploaded, so the next call
+     * for this show resumes from there.
+     *
+     * Note: this uses [runBlocking], so if the calling thread is interrupted this will throw
+     * [InterruptedException].
+     *
      * @return Whether the upload was successful.
      */
+    @Throws(InterruptedException::class)
     fun uploadFlags(showId: Long, showTmdbId: Int): Boolean {
-        // query for watched, skipped or collected episodes
-        val episodesForSync = dbEpisodeHelper.getEpisodesForHexagonSync(showId)
-        if (episodesForSync.isEmpty()) {
-            Timber.d("uploadFlags: uploading none for show %d", showId)
-            return true
-        } else {
-            // Issues with some requests failing at Cloud due to
-            // EOFException: Unexpected end of ZLIB input stream
-            // Using info log to report sizes that are uploaded to determine
-            // if MAX_BATCH_SIZE is actually too large.
-            // https://github.com/UweTrottmann/SeriesGuide/issues/781
-            Timber.i("uploadFlags: uploading %d for show %d", episodesForSync.size, showId)
+        val resumeAfterId = HexagonSettings.getEpisodesUploadResumeAfterId(context, showId)
+        if (resumeAfterId > 0) {
+            Timber.i("uploadFlags: resuming show %d after episode %d", showId, resumeAfterId)
         }
 
-        // build list of episodes to upload
-        var episodes: MutableList<SgCloudEpisode> = ArrayList()
-        val count = episodesForSync.size
-        for (i in 0 until count) {
-            val episodeForSync = episodesForSync[i]
-
-            val episode = SgCloudEpisode()
-            episode.setSeasonNumber(episodeForSync.season)
-            episode.setEpisodeNumber(episodeForSync.number)
-
-            val watchedFlag = episodeForSync.watched
-            if (!EpisodeTools.isUnwatched(watchedFlag)) {
-                // Skipped or watched.
-                episode.setWatchedFlag(watchedFlag)
-                episode.setPlays(episodeForSync.plays)
+        val progress = UploadProgress(resumeAfterId)
+        val batchSizer = UploadBatchSizer()
+        val failed = AtomicBoolean()
+        runBlocking {
+            val uploadSlots = Semaphore(MAX_UPLOADS_IN_FLIGHT)
+            var lastReadId = resumeAfterId
+            var sequence = 0
+            while (true) {
+                uploadSlots.acquire()
+                if (failed.get()) {
+                    uploadSlots.release()
+                    break
+                }
+                // query for watched, skipped or collected episodes
+                val episodesForSync =
+                    dbEpisodeHelper.getEpisodesForHexagonSync(showId, lastReadId, batchSizer.size)
+                if (episodesForSync.isEmpty()) {
+                    uploadSlots.release()
+                    break
+                }
+                lastReadId = episodesForSync.last().id
+                val batchSequence = sequence++
+                val batchLastId = lastReadId
+                val episodeList = SgCloudEpisodeList()
+                episodeList.setEpisodes(episodesForSync.map { it.toCloudEpisode() })
+                episodeList.setShowTmdbId(showTmdbId)
+
+                launch(Dispatchers.IO) {
+                    try {
+                        // Issues with some requests failing at Cloud due to
+                        // EOFException: Unexpected end of ZLIB input stream
+                        // Using info log to report sizes that are uploaded to determine
+                        // if MAX_BATCH_SIZE is actually too large.
+                        // https://github.com/UweTrottmann/SeriesGuide/issues/781
+                        Timber.i(
+                            "uploadFlags: uploading %d for show %d",
+                            episodesForSync.size,
+                            showId
+                        )
+                        val startTime = SystemClock.elapsedRealtime()
+                        if (uploadBatch(episodeList)) {
+                            batchSizer.onUploaded(
+                                episodesForSync.size,
+                                SystemClock.elapsedRealtime() - startTime
+                            )
+                            progress.onUploaded(batchSequence, batchLastId)
+                        } else {
+                            failed.set(true)
+                        }
+                    } finally {
+                        uploadSlots.release()
+                    }
+                }
             }
+        }
 
-            if (episodeForSync.collected) {
-                episode.setIsInCollection(true)
+        return if (failed.get()) {
+            val uploadedUpToId = progress.uploadedUpToId
+            if (uploadedUpToId > resumeAfterId) {
+                Timber.i("uploadFlags: uploaded show %d up to episode %d", showId, uploadedUpToId)
+            }
+            HexagonSettings.setEpisodesUploadResumeAfterId(context, showId, uploadedUpToId)
+            false
+        } else {
+            if (progress.uploadedUpToId == 0L) {
+                Timber.d("uploadFlags: uploading none for show %d", showId)
             }
+            HexagonSettings.setEpisodesUploadResumeAfterId(context, showId, 0)
+            true
+        }
+    }
 
-            episodes.add(episode)
+    private fun SgEpisode2ForSync.toCloudEpisode(): SgCloudEpisode {
+        val episode = SgCloudEpisode()
+        episode.setSeasonNumber(season)
+        episode.setEpisodeNumber(number)
 
-            // upload a batch
-            val isLast = i + 1 == count
-            if (episodes.size == MAX_BATCH_SIZE || isLast) {
-                val episodeList = SgCloudEpisodeList()
-                episodeList.setEpisodes(episodes)
-                episodeList.setShowTmdbId(showTmdbId)
+        if (!EpisodeTools.isUnwatched(watched)) {
+            // Skipped or watched.
+            episode.setWatchedFlag(watched)
+            episode.setPlays(plays)
+        }
 
-                try {
-                    // get service each time to check if auth was removed
-                    val episodesService = hexagonTools.episodesService
-                        ?: return false
-                    episodesService.saveSgEpisodes(episodeList).execute()
-                } catch (e: IOException) {
-                    // abort
-                    logAndReportHexagon("save episodes of show", e)
-                    return false
-                }
+        if (collected) {
+            episode.setIsInCollection(true)
+        }
+        return episode
+    }
 
-                // clear array
-                episodes = ArrayList()
+    /**
+     * Returns false if the upload failed.
+     */
+    private fun uploadBatch(episodeList: SgCloudEpisodeList): Boolean {
+        try {
+            // get service each time to check if auth was removed
+            val episodesService = hexagonTools.episodesService
+                ?: return false
+            episodesService.saveSgEpisodes(episodeList).execute()
+        } catch (e: IOException) {
+            // abort
+            logAndReportHexagon("save episodes of show", e)
+            return false
+        }
+        return true
+    }
+
+    /**
+     * Tracks up to which episode row ID all batches, which may complete out of order, were
+     * uploaded.
+     */
+    private class UploadProgress(resumeAfterId: Long) {
+        private val completedBatches = HashMap<Int, Long>()
+        private var nextSequence = 0
+
+        @get:Synchronized
+        var uploadedUpToId: Long = resumeAfterId
+            private set
+
+        @Synchronized
+        fun onUploaded(sequence: Int, lastEpisodeId: Long) {
+            completedBatches[sequence] = lastEpisodeId
+            while (true) {
+                uploadedUpToId = completedBatches.remove(nextSequence) ?: break
+                nextSequence++
             }
         }
+    }
 
-        return true
+    /**
+     * Picks the size of the next batch so an upload takes about [TARGET_UPLOAD_TIME_MS], based
+     * on the number of episodes uploaded per time of the last batch. Starts small, never goes
+     * above the Cloud list size limit of [MAX_BATCH_SIZE].
+     */
+    private class UploadBatchSizer {
+        @get:Synchronized
+        var size = MIN_BATCH_SIZE
+            private set
+
+        @Synchronized
+        fun onUploaded(episodeCount: Int, durationMs: Long) {
+            val targetSize = episodeCount * TARGET_UPLOAD_TIME_MS / durationMs.coerceAtLeast(1)
+            // Grow at most to double the size to not overshoot on a single fast request.
+            size = targetSize.toInt()
+                .coerceAtMost(size * 2)
+                .coerceIn(MIN_BATCH_SIZE, MAX_BATCH_SIZE)
+        }
     }
 
     companion object {
         // See API documentation on list size limit.
         const val MAX_BATCH_SIZE: Int = 500
+
+        /**
+         * How many pages may be downloaded ahead of the page currently being applied to the
+         * database. Limits memory use if the database is slower than the network.
+         */
+        private const val MAX_PREFETCHED_PAGES = 2
+
+        /** How many batches of episodes may be uploaded at the same time. */
+        private const val MAX_UPLOADS_IN_FLIGHT = 2
+
+        private const val MIN_BATCH_SIZE = 50
+
+        /** Upload time to adapt batch sizes to. */
+        private const val TARGET_UPLOAD_TIME_MS = 2000L
     }
 }
@@ -262,7 +262,7 @@ internal class HexagonMovieSync(
 
     companion object {
         // See API documentation on list size limit.
-        private const val MAX_BATCH_SIZE = 500
+        const val MAX_BATCH_SIZE = 500
     }
 
 }
@@ -0,0 +1,103 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.sync
+
+import android.content.Context
+import com.battlelancer.seriesguide.modules.HttpClientModule.Companion.trustLetsEncryptAndroidNOrLower
+import com.battlelancer.seriesguide.provider.SgRoomDatabase
+import com.battlelancer.seriesguide.tmdbapi.TmdbTools
+import com.battlelancer.seriesguide.util.ImageTools
+import com.battlelancer.seriesguide.util.ImageUrlTools
+import com.battlelancer.seriesguide.util.PosterCache
+import com.uwetrottmann.androidutils.AndroidUtils
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import timber.log.Timber
+import java.io.IOException
+
+/**
+ * Downloads posters of all shows and of movies on lists into [PosterCache], so the shows and
+ * movies grids and widgets can display them without network access.
+ *
+ * Only downloads on an unmetered network. Posters of favorite shows come first, then of shows by
+ * next episode release time, then of movies. Stops once the cache is full, so posters with a
+ * lower priority are not downloaded instead of ones with a higher priority, and posters that are
+ * displayed are not evicted.
+ */
+class PosterPrewarm(
+    private val context: Context,
+    private val posterCache: PosterCache = PosterCache.getInstance(context)
+) {
+
+    @Throws(InterruptedException::class)
+    fun run() {
+        if (!AndroidUtils.isUnmeteredNetworkConnected(context)) {
+            Timber.d("Not pre-warming posters: no unmetered connection")
+            return
+        }
+
+        val posterUrls = getPosterUrls()
+        // Remove posters of removed shows and movies or with outdated URLs
+        posterCache.retainOnly(posterUrls)
+
+        // Does not use the Picasso HTTP cache: storing posters in it would evict other images.
+        val client = OkHttpClient.Builder()
+            .trustLetsEncryptAndroidNOrLower()
+            .build()
+        var downloadedCount = 0
+        var failedCount = 0
+        for ((index, url) in posterUrls.withIndex()) {
+            if (Thread.interrupted()) throw InterruptedException()
+            if (posterCache.contains(url)) continue
+            if (!posterCache.hasSpace()) break
+            if (index % CONNECTION_CHECK_INTERVAL == 0
+                && !AndroidUtils.isUnmeteredNetworkConnected(context)) break
+
+            var isFull = false
+            try {
+                client.newCall(Request.Builder().url(url).build()).execute().use { response ->
+                    if (response.isSuccessful) {
+                        // Does not fit without evicting posters that are displayed.
+                        isFull = !posterCache.put(url, response.body.source())
+                        if (!isFull) downloadedCount++
+                    } else {
+                        failedCount++
+                    }
+                }
+            } catch (e: IOException) {
+                Timber.w(e, "Failed to download poster")
+                failedCount++
+            }
+            if (isFull || failedCount >= MAX_FAILURES) break
+        }
+        Timber.i(
+            "Pre-warmed %d of %d poster(s), %d failed",
+            downloadedCount,
+            posterUrls.size,
+            failedCount
+        )
+    }
+
+    /**
+     * Builds the same URLs as the shows and movies grids and widgets, ordered by priority.
+     */
+    private fun getPosterUrls(): List<String> {
+        val database = SgRoomDatabase.getInstance(context)
+        val urls = LinkedHashSet<String>()
+        val imageUrlTools = ImageUrlTools(context)
+        database.sgShow2Helper().getPostersByPriority().forEach { posterPath ->
+            imageUrlTools.tmdbOrTvdbPosterUrl(posterPath)?.let { urls.add(it) }
+        }
+        val moviePosterBaseUrl = TmdbTools.getPosterBaseUrl(context)
+        database.movieHelper().getPostersOfMoviesOnLists().forEach { posterPath ->
+            ImageTools.buildImageCacheUrl("$moviePosterBaseUrl$posterPath")?.let { urls.add(it) }
+        }
+        return urls.toList()
+    }
+
+    companion object {
+        private const val CONNECTION_CHECK_INTERVAL = 20
+        private const val MAX_FAILURES = 10
+    }
+}
@@ -127,6 +127,8 @@ class SgSyncAdapter(context: Context) : AbstractThreadedSyncAdapter(context, tru
      * - [TmdbSync.updateConfigurationAndWatchProviders]
      * - [ShowSync.sync]
      * - [TmdbSync.updateMovies]
+     * - [TmdbSync.updateMissingShowPosters]
+     * - [PosterPrewarm.run]
      * - [HexagonSync.sync]
      * - [TraktSync.sync]
      *
@@ -144,12 +146,11 @@ class SgSyncAdapter(context: Context) : AbstractThreadedSyncAdapter(context, tru
 
         // Update show and movie data.
         // If failed for at least one show, do not proceed with other sync steps to avoid
-        // syncing with outdated show data. However, renew the search table and trigger the
+        // syncing with outdated show data. However, merge the search table and trigger the
         // notification service if at least one show was updated.
         // Note: it is still NOT guaranteed show data is up-to-date before syncing with Cloud/Trakt
         // because a show does not get updated if it was recently (see ShowSync selecting which
         // shows to update).
-        var hasAddedShows = false
         try {
             var resultCode = showSync.sync(context, currentTime, progress)
             Timber.d("Syncing: TMDB shows...DONE")
@@ -173,7 +174,6 @@ class SgSyncAdapter(context: Context) : AbstractThreadedSyncAdapter(context, tru
                         context,
                         hexagonTools.get(), movieTools.get(), progress
                     ).sync()
-                    hasAddedShows = resultHexagonSync.hasAddedShows
                     // don't overwrite failure
                     if (resultCode == UpdateResult.SUCCESS) {
                         resultCode = if (resultHexagonSync.success) {
@@ -247,18 +247,29 @@ class SgSyncAdapter(context: Context) : AbstractThreadedSyncAdapter(context, tru
                 }
                 Timber.d("Syncing: TMDB movies...DONE")
 
+                if (Thread.interrupted()) throw InterruptedException()
+
+                // Add posters missing for shows, so they do not have to be resolved when displayed
+                tmdbSync.updateMissingShowPosters()
+                Timber.d("Syncing: TMDB show posters...DONE")
+
                 updateTimeAndFailedCounter(prefs, resultCode)
+
+                if (Thread.interrupted()) throw InterruptedException()
+
+                // Download posters so they can be displayed without network access
+                PosterPrewarm(context).run()
+                Timber.d("Syncing: pre-warm posters...DONE")
             }
 
             Timber.i("Syncing: %s", resultCode.toString())
         } finally {
             // Finish some things even if interrupted
 
-            // Renew search table if shows were updated and it will not be renewed by add task,
-            // but as this is a little costly only do it when doing the less frequent multiple
-            // shows sync.
-            if (showSync.isSyncMultiple && showSync.hasUpdatedShows() && !hasAddedShows) {
-                SeriesGuideDatabase.rebuildFtsTable(context)
+            // Triggers keep the search table up to date, but each change adds a small index
+            // segment: merge some of them when doing the less frequent multiple shows sync.
+            if (showSync.isSyncMultiple && showSync.hasUpdatedShows()) {
+                SeriesGuideDatabase.mergeFtsTable(context)
             }
             // There could have been new episodes added after an update
             if (showSync.hasUpdatedShows()) {
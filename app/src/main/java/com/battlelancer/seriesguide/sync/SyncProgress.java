@@ -9,6 +9,7 @@ import androidx.annotation.Nullable;
 import com.battlelancer.seriesguide.R;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.greenrobot.eventbus.EventBus;
 import timber.log.Timber;
 
@@ -95,6 +96,8 @@ public class SyncProgress {
     @NonNull private final List<Step> stepsWithError = new LinkedList<>();
     @Nullable private Step currentStep;
     @Nullable private String importantErrorOrNull;
+    private final AtomicInteger episodeRowsWritten = new AtomicInteger();
+    private final AtomicInteger episodeRowsUnchanged = new AtomicInteger();
 
     void publish(Step step) {
         currentStep = step;
@@ -118,13 +121,32 @@ public class SyncProgress {
      * {@link #publish} or {@link #publishFinished} is called.
      * Does nothing if this was already called.
      */
-    public void setImportantErrorIfNone(@NonNull String message) {
+    public synchronized void setImportantErrorIfNone(@NonNull String message) {
         if (importantErrorOrNull == null) {
             importantErrorOrNull = message;
         }
     }
 
+    /**
+     * Add to the number of episode rows written (inserted, updated or removed) and not written as
+     * they have not changed by show updates of this sync. Safe to call from multiple threads.
+     */
+    public void addEpisodeRows(int written, int unchanged) {
+        episodeRowsWritten.addAndGet(written);
+        episodeRowsUnchanged.addAndGet(unchanged);
+    }
+
+    public int getEpisodeRowsWritten() {
+        return episodeRowsWritten.get();
+    }
+
+    public int getEpisodeRowsUnchanged() {
+        return episodeRowsUnchanged.get();
+    }
+
     void publishFinished() {
+        Timber.d("Syncing: episode rows written %d, unchanged %d",
+                episodeRowsWritten.get(), episodeRowsUnchanged.get());
         EventBus.getDefault().postSticky(
                 new SyncEvent(null, stepsWithError, importantErrorOrNull));
     }
@@ -4,21 +4,36 @@
 package com.battlelancer.seriesguide.sync
 
 import android.content.Context
+import android.os.SystemClock
 import android.text.format.DateUtils
 import com.battlelancer.seriesguide.R
 import com.battlelancer.seriesguide.SgApp
 import com.battlelancer.seriesguide.movies.MoviesSettings
+import com.battlelancer.seriesguide.movies.tools.MovieDetails
 import com.battlelancer.seriesguide.movies.tools.MovieDownloader.MovieDetailsResult
 import com.battlelancer.seriesguide.movies.tools.MovieTools
 import com.battlelancer.seriesguide.provider.SgRoomDatabase
 import com.battlelancer.seriesguide.settings.TmdbSettings
 import com.battlelancer.seriesguide.streaming.SgWatchProvider
 import com.battlelancer.seriesguide.streaming.StreamingSearch
+import com.battlelancer.seriesguide.tmdbapi.TmdbTools4
+import com.battlelancer.seriesguide.tmdbapi.TmdbTools4.TmdbErrorResponse
+import com.battlelancer.seriesguide.tmdbapi.TmdbTools4.TmdbNonNullResponse
 import com.battlelancer.seriesguide.util.Errors
+import com.battlelancer.seriesguide.util.LanguageTools
+import com.battlelancer.seriesguide.util.PosterPathResolver
 import com.uwetrottmann.androidutils.AndroidUtils
 import com.uwetrottmann.tmdb2.services.ConfigurationService
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.joinAll
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
 import timber.log.Timber
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.math.min
 
 class TmdbSync internal constructor(
     private val context: Context,
@@ -89,76 +104,248 @@ class TmdbSync internal constructor(
      * Regularly updates current and future movies (or those without a release date) with data from
      * themoviedb.org. All other movies are updated rarely.
      *
+     * Downloads details of up to [maxParallelUpdates] movies at the same time, spacing out
+     * requests to not run into TMDB rate limits. Downloaded details are written to the database
+     * in batches of [UPDATE_BATCH_SIZE] movies.
+     *
      * Note: this uses [runBlocking], so if the calling thread is interrupted this will throw
      * [InterruptedException].
      */
     @Throws(InterruptedException::class)
-    fun updateMovies(progress: SyncProgress): Boolean {
+    fun updateMovies(
+        progress: SyncProgress,
+        maxParallelUpdates: Int = MAX_PARALLEL_UPDATES
+    ): Boolean {
         val currentTimeMillis = System.currentTimeMillis()
         // update movies released 6 months ago or newer, should cover most edits
         val releasedAfter = currentTimeMillis - RELEASED_AFTER_DAYS
         // exclude movies updated in the last 7 days
         val updatedBefore = currentTimeMillis - UPDATED_BEFORE_DAYS
         val updatedBeforeOther = currentTimeMillis - UPDATED_BEFORE_90_DAYS
-        val movies = SgRoomDatabase.getInstance(context).movieHelper()
+        val database = SgRoomDatabase.getInstance(context)
+        val movies = database.movieHelper()
             .getMoviesToUpdate(releasedAfter, updatedBefore, updatedBeforeOther)
+            .filter { it.tmdbId != 0 } // skip invalid id
         Timber.d("Updating %d movie(s)...", movies.size)
+        if (movies.isEmpty()) return true
+
+        if (!AndroidUtils.isNetworkConnected(context)) {
+            return false // stop updates: no network connection
+        }
 
         val languageCode = MoviesSettings.getMoviesLanguage(context)
         val regionCode = MoviesSettings.getMoviesRegion(context)
 
-        var result = true
-        for (movie in movies) {
-            if (!AndroidUtils.isNetworkConnected(context)) {
-                return false // stop updates: no network connection
+        // All requests go to TMDB, so share one throttle.
+        val throttle = UpdateThrottle(MIN_UPDATE_INTERVAL_MS)
+        val nextMovieIndex = AtomicInteger()
+        val isDisconnected = AtomicBoolean()
+        val failedCount = AtomicInteger()
+        val notFoundCount = AtomicInteger()
+        var updatedCount = 0
+        val startTimeMs = SystemClock.elapsedRealtime()
+
+        runBlocking {
+            val updates = Channel<Pair<Int, MovieDetails>>(UPDATE_BATCH_SIZE)
+
+            // Download on IO threads.
+            val downloaders = List(min(maxParallelUpdates, movies.size)) {
+                launch(Dispatchers.IO) {
+                    while (!isDisconnected.get()) {
+                        val index = nextMovieIndex.getAndIncrement()
+                        if (index >= movies.size) break
+                        val movie = movies[index]
+
+                        if (!throttle.awaitTurn()) {
+                            isDisconnected.set(true) // stop updates: too many network errors
+                            break
+                        }
+                        val startedAtMs = throttle.now()
+                        // Update details from TMDB, but avoid extra network requests to get
+                        // details from Trakt as they are only needed when viewing details of a
+                        // movie.
+                        val detailsResult = movieTools.downloader.getMovieDetails(
+                            languageCode,
+                            regionCode,
+                            movie.tmdbId,
+                            getTraktIdsAndRating = false
+                        )
+                        when (detailsResult) {
+                            is MovieDetailsResult.Success -> {
+                                throttle.onSuccess()
+                                updates.send(Pair(movie.id, detailsResult.movieDetails))
+                            }
+
+                            is MovieDetailsResult.Error -> {
+                                // Treat as failure if updating at least one fails.
+                                failedCount.incrementAndGet()
+                                if (detailsResult.isNotFoundOnTmdb) {
+                                    notFoundCount.incrementAndGet()
+                                    reportMovieNotFound(progress, movie.tmdbId)
+                                } else if (!AndroidUtils.isNetworkConnected(context)
+                                    || !throttle.onNetworkError(startedAtMs)) {
+                                    isDisconnected.set(true) // stop updates
+                                }
+                            }
+                        }
+                    }
+                }
             }
-            if (movie.tmdbId == 0) {
-                continue // skip invalid id
+            launch {
+                downloaders.joinAll()
+                updates.close()
             }
 
-            // Update details from TMDB, but avoid extra network requests to get details from Trakt
-            // as they are only needed when viewing details of a movie.
-            val detailsResult = runBlocking {
-                movieTools.downloader.getMovieDetails(
-                    languageCode,
-                    regionCode,
-                    movie.tmdbId,
-                    getTraktIdsAndRating = false
-                )
-            }
-            when (detailsResult) {
-                is MovieDetailsResult.Success -> {
-                    // update local database
-                    movieTools.updateMovieWithRowId(movie.id, detailsResult.movieDetails)
+            // Write to the local database in batches on this thread.
+            val batch = ArrayList<Pair<Int, MovieDetails>>(UPDATE_BATCH_SIZE)
+            val writeBatch = {
+                database.runInTransaction {
+                    batch.forEach { (rowId, details) ->
+                        movieTools.updateMovieWithRowId(rowId, details)
+                    }
                 }
+                updatedCount += batch.size
+                batch.clear()
+            }
+            for (update in updates) {
+                batch.add(update)
+                if (batch.size == UPDATE_BATCH_SIZE) writeBatch()
+            }
+            if (batch.isNotEmpty()) writeBatch()
+        }
+
+        val durationMs = SystemClock.elapsedRealtime() - startTimeMs
+        Timber.i(
+            "Updated %d of %d movie(s) in %d ms (%.1f movies/s), %d failed, %d not found",
+            updatedCount,
+            movies.size,
+            durationMs,
+            updatedCount * 1000.0 / durationMs.coerceAtLeast(1),
+            failedCount.get(),
+            notFoundCount.get()
+        )
+
+        return !isDisconnected.get() && failedCount.get() == 0
+    }
+
+    /**
+     * Downloads poster paths for up to [MAX_POSTER_UPDATES] shows that have none, like shows
+     * imported from an older backup. So their posters do not have to be resolved each time they
+     * are displayed, see [PosterPathResolver]. Writes all poster paths in a single transaction.
+     *
+     * Does not try shows again until they were updated, so shows that have no poster on TMDB do
+     * not prevent others from getting one. Only if TMDB returned the show or that it does not
+     * exist, so shows are tried again if there was an error.
+     *
+     * Note: this uses [runBlocking], so if the calling thread is interrupted this will throw
+     * [InterruptedException].
+     */
+    @Throws(InterruptedException::class)
+    fun updateMissingShowPosters() {
+        val database = SgRoomDatabase.getInstance(context)
+        val showsWithoutPoster = database.sgShow2Helper().getShowsWithoutPoster()
+        // Drop attempts of shows that got a poster or were updated since.
+        val storedAttempts = TmdbSettings.getShowPosterAttempts(context)
+        val attempts = storedAttempts
+            .intersect(showsWithoutPoster.mapTo(HashSet()) { it.attemptKey })
+        val shows = showsWithoutPoster
+            .filter { !attempts.contains(it.attemptKey) }
+            .take(MAX_POSTER_UPDATES)
+        if (shows.isEmpty()) {
+            if (attempts.size != storedAttempts.size) {
+                TmdbSettings.setShowPosterAttempts(context, attempts)
+            }
+            return
+        }
+
+        if (!AndroidUtils.isNetworkConnected(context)) {
+            return // Try again next sync.
+        }
 
-                is MovieDetailsResult.Error -> {
-                    // Treat as failure if updating at least one fails.
-                    result = false
-
-                    if (detailsResult.isNotFoundOnTmdb) {
-                        val movieTitle = SgRoomDatabase.getInstance(context)
-                            .movieHelper()
-                            .getMovieTitle(movie.tmdbId)
-                        val notFoundMessage = context.getString(R.string.error_movie_not_found)
-                        // To be replaced with a properly localized message. Currently looks out of
-                        // place for RTL languages, but want to avoid giving translators a string with
-                        // placeholders.
-                        val message = "'${movieTitle}' (TMDB ID ${movie.tmdbId}) - $notFoundMessage"
-
-                        progress.setImportantErrorIfNone(message)
-                        Timber.e(message)
+        // Uses its own throttle as it runs after other updates have finished.
+        val throttle = UpdateThrottle(MIN_UPDATE_INTERVAL_MS)
+        val nextShowIndex = AtomicInteger()
+        val posterPaths = ConcurrentHashMap<Int, String>()
+        val attemptedKeys = ConcurrentHashMap.newKeySet<String>()
+        val tvService = SgApp.getServicesComponent(context).tmdb().tvService()
+        val tmdbTools = TmdbTools4()
+        runBlocking {
+            List(min(MAX_PARALLEL_UPDATES, shows.size)) {
+                launch(Dispatchers.IO) {
+                    while (throttle.awaitTurn()) {
+                        val index = nextShowIndex.getAndIncrement()
+                        if (index >= shows.size) break
+                        val show = shows[index]
+                        val language = show.language?.ifEmpty { null } ?: LanguageTools.LANGUAGE_EN
+                        val startedAtMs = throttle.now()
+                        val response = tmdbTools.awaitTmdbCall(
+                            tvService.tv(show.tmdbId, language),
+                            "show poster showTmdbId = ${show.tmdbId}"
+                        )
+                        when (response) {
+                            is TmdbNonNullResponse.Success -> {
+                                throttle.onSuccess()
+                                attemptedKeys.add(show.attemptKey)
+                                val posterPath = response.data.poster_path
+                                if (!posterPath.isNullOrEmpty()) {
+                                    posterPaths[show.tmdbId] = posterPath
+                                }
+                            }
+
+                            is TmdbErrorResponse.IsNotFound -> {
+                                throttle.onSuccess()
+                                attemptedKeys.add(show.attemptKey)
+                            }
+
+                            is TmdbErrorResponse.Other -> {
+                                // Try again next sync.
+                                throttle.onNetworkError(startedAtMs)
+                            }
+                        }
                     }
                 }
+            }.joinAll()
+        }
+
+        database.runInTransaction {
+            posterPaths.forEach { (tmdbId, posterPath) ->
+                database.sgShow2Helper().updateMissingPosterByTmdbId(tmdbId, posterPath)
             }
         }
+        // Remember tried shows, those that did not get a poster are not tried again until updated.
+        TmdbSettings.setShowPosterAttempts(context, attempts + attemptedKeys)
+        Timber.d("Added missing posters for %d of %d show(s)", posterPaths.size, shows.size)
+    }
 
-        return result
+    private fun reportMovieNotFound(progress: SyncProgress, movieTmdbId: Int) {
+        val movieTitle = SgRoomDatabase.getInstance(context)
+            .movieHelper()
+            .getMovieTitle(movieTmdbId)
+        val notFoundMessage = context.getString(R.string.error_movie_not_found)
+        // To be replaced with a properly localized message. Currently looks out of
+        // place for RTL languages, but want to avoid giving translators a string with
+        // placeholders.
+        val message = "'${movieTitle}' (TMDB ID $movieTmdbId) - $notFoundMessage"
+
+        progress.setImportantErrorIfNone(message)
+        Timber.e(message)
     }
 
     companion object {
         const val RELEASED_AFTER_DAYS = 6 * 30 * DateUtils.DAY_IN_MILLIS
         const val UPDATED_BEFORE_DAYS = 7 * DateUtils.DAY_IN_MILLIS
         const val UPDATED_BEFORE_90_DAYS = 3 * 30 * DateUtils.DAY_IN_MILLIS
+
+        /** How many movies to download at the same time by default. */
+        const val MAX_PARALLEL_UPDATES = 4
+
+        /** Minimum time between starting movie downloads, limits the request rate. */
+        private const val MIN_UPDATE_INTERVAL_MS = 100L
+
+        /** How many shows without poster to update at most per sync. */
+        private const val MAX_POSTER_UPDATES = 50
+
+        /** How many movies to update in a single database transaction. */
+        private const val UPDATE_BATCH_SIZE = 50
     }
 }
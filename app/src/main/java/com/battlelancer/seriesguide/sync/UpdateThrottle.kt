@@ -0,0 +1,86 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.sync
+
+import android.text.format.DateUtils
+import kotlinx.coroutines.delay
+import kotlin.math.max
+import kotlin.math.pow
+import kotlin.random.Random
+
+/**
+ * Shared by workers that update items in parallel.
+ *
+ * Spaces the start of updates at least [minIntervalMs] apart to limit the request rate. After a
+ * network error all workers back off for 2^n seconds + random milliseconds, with n starting at 0.
+ * Once [maxNetworkErrors] are reached (each successful update reduces the error count) the
+ * throttle trips and workers should stop updating.
+ *
+ * Errors of updates that started before the current back off ends are not counted, so an issue
+ * that fails all updates in flight at the same time only counts once.
+ *
+ * Times are read from [clock], which tests can replace, e.g. with virtual time.
+ */
+class UpdateThrottle(
+    private val minIntervalMs: Long,
+    private val maxNetworkErrors: Int = 3,
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+
+    private var networkErrors = 0
+    private var nextStartAtMs = 0L
+    private var backOffUntilMs = 0L
+
+    @get:Synchronized
+    var isTripped = false
+        private set
+
+    /**
+     * Returns the current time of this throttle, pass it to [onNetworkError] when an update
+     * starts.
+     */
+    fun now(): Long = clock()
+
+    /**
+     * Suspends until the next update may start. Returns false if the throttle has tripped.
+     */
+    suspend fun awaitTurn(): Boolean {
+        val waitMs = synchronized(this) {
+            if (isTripped) return false
+            val now = clock()
+            val startAt = max(now, max(nextStartAtMs, backOffUntilMs))
+            nextStartAtMs = startAt + minIntervalMs
+            startAt - now
+        }
+        if (waitMs > 0) delay(waitMs)
+        return !isTripped
+    }
+
+    @Synchronized
+    fun onSuccess() {
+        if (networkErrors > 0) networkErrors--
+    }
+
+    /**
+     * Returns false if this error tripped the throttle, otherwise backs off all workers.
+     *
+     * [startedAtMs] is when the failed update started, after [awaitTurn] returned.
+     */
+    @Synchronized
+    fun onNetworkError(startedAtMs: Long): Boolean {
+        if (isTripped) return false
+        // Started before the current back off ends, so likely failed due to the same issue.
+        if (startedAtMs < backOffUntilMs) return true
+        networkErrors++
+        if (networkErrors >= maxNetworkErrors) {
+            isTripped = true
+            return false
+        }
+        val n = networkErrors - 1
+        val backOffMs = (2.0.pow(n)).toLong() * DateUtils.SECOND_IN_MILLIS +
+                Random.nextInt(0, 1000)
+        backOffUntilMs = max(backOffUntilMs, clock() + backOffMs)
+        return true
+    }
+}
@@ -0,0 +1,34 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.tmdbapi
+
+import com.google.gson.annotations.SerializedName
+import retrofit2.Call
+import retrofit2.http.GET
+import retrofit2.http.Query
+
+interface TmdbChangesService {
+
+    /**
+     * IDs of shows changed between [startDate] and [endDate] (format `yyyy-MM-dd`, at most 14 days
+     * apart), 100 per page.
+     */
+    @GET("tv/changes")
+    fun tv(
+        @Query("start_date") startDate: String,
+        @Query("end_date") endDate: String,
+        @Query("page") page: Int
+    ): Call<ChangesResultsPage>
+
+}
+
+data class ChangesResultsPage(
+    val results: List<ChangedItem>?,
+    val page: Int?,
+    @SerializedName("total_pages") val totalPages: Int?
+)
+
+data class ChangedItem(
+    val id: Int?
+)
@@ -0,0 +1,29 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.tmdbapi
+
+import com.google.gson.JsonObject
+import retrofit2.Call
+import retrofit2.http.GET
+import retrofit2.http.Path
+import retrofit2.http.Query
+
+interface TmdbSeasonsService {
+
+    /**
+     * Show details with the seasons appended as `season/<number>`, like
+     * `appendToResponse = "season/1,season/2"`. At most [MAX_APPENDED] seasons can be appended.
+     */
+    @GET("tv/{tv_id}")
+    fun tvWithSeasons(
+        @Path("tv_id") showTmdbId: Int,
+        @Query("language") language: String?,
+        @Query("append_to_response") appendToResponse: String
+    ): Call<JsonObject>
+
+    companion object {
+        /** TMDB allows appending up to 20 items. */
+        const val MAX_APPENDED = 20
+    }
+}
@@ -12,13 +12,17 @@ import com.github.michaelbull.result.Err
 import com.github.michaelbull.result.Ok
 import com.github.michaelbull.result.Result
 import com.github.michaelbull.result.andThen
+import com.github.michaelbull.result.getOrElse
 import com.github.michaelbull.result.mapError
 import com.github.michaelbull.result.runCatching
+import com.uwetrottmann.tmdb2.TmdbHelper
 import com.uwetrottmann.tmdb2.entities.AppendToResponse
 import com.uwetrottmann.tmdb2.entities.TvEpisode
+import com.uwetrottmann.tmdb2.entities.TvSeason
 import com.uwetrottmann.tmdb2.entities.TvShow
 import com.uwetrottmann.tmdb2.enumerations.AppendToResponseItem
 import com.uwetrottmann.tmdb2.enumerations.ExternalSource
+import retrofit2.create
 
 /**
  * Uses third-party [Result] API for result handling. Errors are [TmdbError].
@@ -172,4 +176,72 @@ object TmdbTools3 {
         }
     }
 
+    private val seasonsGson by lazy { TmdbHelper.getGsonBuilder().create() }
+
+    /**
+     * Like [getSeason], but loads the episodes of up to [TmdbSeasonsService.MAX_APPENDED] seasons
+     * with a single request by appending them to the show details request.
+     *
+     * If the response is missing a season, loads it using [getSeason].
+     */
+    fun getSeasons(
+        showTmdbId: Int,
+        seasonNumbers: List<Int>,
+        language: String,
+        context: Context
+    ): Result<Map<Int, List<TvEpisode>>, TmdbError> {
+        val tmdb = SgApp.getServicesComponent(context).tmdb()
+        return getSeasons(
+            (tmdb as SgTmdb).retrofit.create<TmdbSeasonsService>(),
+            showTmdbId,
+            seasonNumbers,
+            language
+        ) { seasonNumber -> getSeason(showTmdbId, seasonNumber, language, context) }
+    }
+
+    /**
+     * Like [getSeasons], but uses [seasonsService] and [getSeason] to load a missing season.
+     */
+    internal fun getSeasons(
+        seasonsService: TmdbSeasonsService,
+        showTmdbId: Int,
+        seasonNumbers: List<Int>,
+        language: String,
+        getSeason: (seasonNumber: Int) -> Result<List<TvEpisode>, TmdbError>
+    ): Result<Map<Int, List<TvEpisode>>, TmdbError> {
+        require(seasonNumbers.size <= TmdbSeasonsService.MAX_APPENDED) {
+            "At most ${TmdbSeasonsService.MAX_APPENDED} seasons"
+        }
+        val action = "get seasons"
+        return runCatching {
+            seasonsService
+                .tvWithSeasons(
+                    showTmdbId,
+                    language,
+                    seasonNumbers.joinToString(",") { "season/$it" }
+                )
+                .execute()
+        }.mapError {
+            Errors.logAndReport(action, it)
+            if (it.isRetryError()) TmdbRetry else TmdbStop
+        }.andThen {
+            val body = it.body()
+            if (!it.isSuccessful || body == null) {
+                Errors.logAndReport(action, it)
+                return@andThen Err(TmdbStop)
+            }
+            val episodesBySeason = HashMap<Int, List<TvEpisode>>(seasonNumbers.size)
+            for (seasonNumber in seasonNumbers) {
+                val episodes = body.get("season/$seasonNumber")
+                    ?.takeIf { season -> season.isJsonObject }
+                    ?.let { season -> seasonsGson.fromJson(season, TvSeason::class.java) }
+                    ?.episodes
+                    ?: getSeason(seasonNumber)
+                        .getOrElse { error -> return@andThen Err(error) }
+                episodesBySeason[seasonNumber] = episodes
+            }
+            return@andThen Ok(episodesBySeason)
+        }
+    }
+
 }
\ No newline at end of file
@@ -4,12 +4,10 @@
 package com.battlelancer.seriesguide.util
 
 import android.content.Context
-import android.util.Base64
 import android.widget.ImageView
 import com.battlelancer.seriesguide.BuildConfig
 import com.battlelancer.seriesguide.R
 import com.battlelancer.seriesguide.settings.AppSettings
-import com.battlelancer.seriesguide.settings.UpdateSettings
 import com.battlelancer.seriesguide.tmdbapi.TmdbTools
 import com.battlelancer.seriesguide.util.ImageTools.buildTmdbOrTvdbImageCacheUrl
 import com.battlelancer.seriesguide.util.ImageTools.isAllowedLargeDataConnection
@@ -18,10 +16,6 @@ import com.battlelancer.seriesguide.util.ImageTools.tmdbOrTvdbPosterUrl
 import com.squareup.picasso.NetworkPolicy
 import com.squareup.picasso.Picasso
 import com.squareup.picasso.RequestCreator
-import com.uwetrottmann.androidutils.AndroidUtils
-import timber.log.Timber
-import javax.crypto.Mac
-import javax.crypto.spec.SecretKeySpec
 
 /**
  * Tools for working with the image cache server.
@@ -32,26 +26,16 @@ object ImageTools {
     private const val TVDB_MIRROR_BANNERS = "https://artworks.thetvdb.com/banners/"
     private const val TVDB_LEGACY_MIRROR_BANNERS = "https://www.thetvdb.com/banners/"
 
-    private var sha256_hmac: Mac? = null
-    private val cacheKey: String
-        get() = BuildConfig.IMAGE_CACHE_SECRET
+    private val imageUrlSigner by lazy {
+        ImageUrlSigner(BuildConfig.IMAGE_CACHE_URL, BuildConfig.IMAGE_CACHE_SECRET)
+    }
 
     /**
      * Returns false if there is an active, but metered connection and the user did not approve it
      * for large data downloads (e.g. images).
      */
     fun isAllowedLargeDataConnection(context: Context): Boolean {
-        val largeDataOverWifiOnly = UpdateSettings.isLargeDataOverWifiOnly(context)
-
-        // check connection state
-        val isConnected = if (largeDataOverWifiOnly) {
-            // only allow large data downloads over non-metered connections
-            AndroidUtils.isUnmeteredNetworkConnected(context)
-        } else {
-            AndroidUtils.isNetworkConnected(context)
-        }
-
-        return isConnected
+        return LargeDataConnectionState.isAllowed(context)
     }
 
     /**
@@ -188,30 +172,7 @@ object ImageTools {
             return imageUrl // no cache
         }
 
-        val mac = encodeImageUrl(imageUrl)
-        return if (mac != null) {
-            String.format("%s/s%s/%s", BuildConfig.IMAGE_CACHE_URL, mac, imageUrl)
-        } else {
-            null
-        }
-    }
-
-    @Synchronized
-    private fun encodeImageUrl(data: String): String? {
-        return try {
-            val mac = sha256_hmac ?: Mac.getInstance("HmacSHA256").also {
-                val secretKey = SecretKeySpec(cacheKey.toByteArray(), "HmacSHA256")
-                it.init(secretKey)
-            }
-
-            Base64.encodeToString(
-                mac.doFinal(data.toByteArray()),
-                Base64.NO_WRAP or Base64.URL_SAFE
-            )
-        } catch (e: Exception) {
-            Timber.e(e, "Signing image URL failed.")
-            null
-        }
+        return imageUrlSigner.buildSignedUrl(imageUrl)
     }
 
     /**
@@ -0,0 +1,69 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.util
+
+import android.util.Base64
+import androidx.collection.LruCache
+import timber.log.Timber
+import javax.crypto.Mac
+import javax.crypto.spec.SecretKeySpec
+
+/**
+ * Builds image cache server URLs signed with HMAC-SHA256.
+ *
+ * Each thread gets its own initialized [Mac], so signing needs no lock. The most recently built
+ * URLs are cached, so binding the same images again (like when scrolling a grid back and forth)
+ * does not sign them again.
+ */
+class ImageUrlSigner(
+    private val cacheUrl: String,
+    private val secret: String,
+    cacheSize: Int = DEFAULT_CACHE_SIZE
+) {
+
+    private val mac = object : ThreadLocal<Mac>() {
+        override fun initialValue(): Mac {
+            return Mac.getInstance(ALGORITHM).apply {
+                init(SecretKeySpec(secret.toByteArray(), ALGORITHM))
+            }
+        }
+    }
+    private val signedUrls = LruCache<String, String>(cacheSize)
+
+    /**
+     * Returns the cache server URL for [imageUrl] or null if signing failed.
+     */
+    fun buildSignedUrl(imageUrl: String): String? {
+        signedUrls[imageUrl]?.let { return it }
+
+        val signature = sign(imageUrl) ?: return null
+        val signedUrl = "$cacheUrl/s$signature/$imageUrl"
+        signedUrls.put(imageUrl, signedUrl)
+        return signedUrl
+    }
+
+    /**
+     * Signs without using or updating the cache.
+     */
+    fun sign(data: String): String? {
+        return try {
+            Base64.encodeToString(
+                mac.get()!!.doFinal(data.toByteArray()),
+                Base64.NO_WRAP or Base64.URL_SAFE
+            )
+        } catch (e: Exception) {
+            Timber.e(e, "Signing image URL failed.")
+            null
+        }
+    }
+
+    companion object {
+        private const val ALGORITHM = "HmacSHA256"
+
+        /**
+         * Enough for all posters of a large library, URLs are about 150 bytes.
+         */
+        const val DEFAULT_CACHE_SIZE = 2000
+    }
+}
@@ -0,0 +1,130 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.util
+
+import android.content.Context
+import android.content.SharedPreferences
+import android.net.ConnectivityManager
+import android.net.Network
+import android.net.NetworkCapabilities
+import android.os.Build
+import androidx.core.content.getSystemService
+import androidx.preference.PreferenceManager
+import com.battlelancer.seriesguide.settings.UpdateSettings
+import com.uwetrottmann.androidutils.AndroidUtils
+import timber.log.Timber
+
+/**
+ * Knows if large data downloads (e.g. images) are currently allowed, see [isAllowed].
+ *
+ * Instead of checking the connection on each call, keeps the state up to date using a callback
+ * for the default network and a listener for the user setting, so it can be checked for every
+ * image. If the callback can not be registered, checks the connection on each call.
+ */
+object LargeDataConnectionState {
+
+    /**
+     * Whether the default network is unmetered, or null if there is none.
+     */
+    @Volatile
+    private var isDefaultNetworkUnmetered: Boolean? = null
+
+    @Volatile
+    private var isLargeDataOverWifiOnly = false
+
+    @Volatile
+    private var isAllowed = true
+
+    @Volatile
+    private var isStarted = false
+
+    @Volatile
+    private var isCallbackRegistered = false
+
+    private var connectivityManager: ConnectivityManager? = null
+
+    // Keep a reference, preferences only keep a weak one.
+    private val preferenceListener =
+        SharedPreferences.OnSharedPreferenceChangeListener { prefs, key ->
+            if (key == UpdateSettings.KEY_ONLYWIFI) {
+                isLargeDataOverWifiOnly = prefs.getBoolean(UpdateSettings.KEY_ONLYWIFI, false)
+                update()
+            }
+        }
+
+    private val networkCallback = object : ConnectivityManager.NetworkCallback() {
+        override fun onAvailable(network: Network) {
+            // Before Android 8 capabilities are not always reported right after
+            val capabilities = connectivityManager?.getNetworkCapabilities(network)
+            isDefaultNetworkUnmetered = capabilities
+                ?.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED) == true
+            update()
+        }
+
+        override fun onCapabilitiesChanged(network: Network, capabilities: NetworkCapabilities) {
+            isDefaultNetworkUnmetered =
+                capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED)
+            update()
+        }
+
+        override fun onLost(network: Network) {
+            isDefaultNetworkUnmetered = null
+            update()
+        }
+    }
+
+    /**
+     * Returns false if there is no connection or only a metered one and the user did not approve
+     * it for large data downloads.
+     */
+    fun isAllowed(context: Context): Boolean {
+        if (!isStarted) start(context.applicationContext)
+        return if (isCallbackRegistered) isAllowed else checkConnection(context)
+    }
+
+    /**
+     * Starts tracking the connection state, if not already. Called by [isAllowed] if needed.
+     */
+    @Synchronized
+    fun start(context: Context) {
+        if (isStarted) return
+
+        isLargeDataOverWifiOnly = UpdateSettings.isLargeDataOverWifiOnly(context)
+        // Until the network callback reports the default network, check once.
+        isAllowed = checkConnection(context)
+
+        PreferenceManager.getDefaultSharedPreferences(context)
+            .registerOnSharedPreferenceChangeListener(preferenceListener)
+        val connectivityManager = context.getSystemService<ConnectivityManager>()
+        this.connectivityManager = connectivityManager
+        if (connectivityManager != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            try {
+                // Registering immediately reports the default network, if there is one.
+                connectivityManager.registerDefaultNetworkCallback(networkCallback)
+                isCallbackRegistered = true
+            } catch (e: RuntimeException) {
+                // May throw if the app registered too many callbacks.
+                Timber.e(e, "Failed to register network callback")
+            }
+        }
+        isStarted = true
+    }
+
+    private fun checkConnection(context: Context): Boolean =
+        if (isLargeDataOverWifiOnly) {
+            AndroidUtils.isUnmeteredNetworkConnected(context)
+        } else {
+            AndroidUtils.isNetworkConnected(context)
+        }
+
+    private fun update() {
+        val isDefaultNetworkUnmetered = isDefaultNetworkUnmetered
+        isAllowed = if (isLargeDataOverWifiOnly) {
+            isDefaultNetworkUnmetered == true
+        } else {
+            isDefaultNetworkUnmetered != null
+        }
+    }
+
+}
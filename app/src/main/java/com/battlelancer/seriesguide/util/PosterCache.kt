@@ -0,0 +1,167 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.util
+
+import android.content.Context
+import com.battlelancer.seriesguide.modules.HttpClientModule
+import okhttp3.Interceptor
+import okhttp3.Protocol
+import okhttp3.Response
+import okhttp3.ResponseBody.Companion.asResponseBody
+import okio.BufferedSource
+import okio.ByteString.Companion.encodeUtf8
+import okio.buffer
+import okio.sink
+import okio.source
+import java.io.File
+import java.io.FileNotFoundException
+import java.io.IOException
+
+/**
+ * Disk cache for posters of the library downloaded ahead of time by
+ * [com.battlelancer.seriesguide.sync.PosterPrewarm], so they can be displayed without network
+ * access. Picasso gets posters from it through [PosterCacheInterceptor].
+ *
+ * Unlike the HTTP cache used by Picasso, other images do not evict posters from this cache. Adding
+ * posters also does not evict others, so pre-warming never removes posters that are displayed. It
+ * only removes the least recently displayed posters if it is larger than [maxSize] (e.g. if less
+ * disk space is available) once it calculates its size.
+ */
+class PosterCache(
+    private val directory: File,
+    private val maxSize: Long
+) {
+
+    /**
+     * Size of all files, -1 if not calculated, yet.
+     */
+    private var size = -1L
+
+    /**
+     * Returns the file of the poster with [url] or null if it is not cached. Marks it as recently
+     * used.
+     */
+    fun get(url: String): File? {
+        val file = fileFor(url)
+        if (!file.exists()) return null
+        file.setLastModified(System.currentTimeMillis())
+        return file
+    }
+
+    fun contains(url: String): Boolean = fileFor(url).exists()
+
+    /**
+     * Returns false if adding more posters would evict others.
+     */
+    @Synchronized
+    fun hasSpace(): Boolean = calculateSize() < maxSize
+
+    /**
+     * Writes the image from [source] as the poster for [url]. Returns false and does not store it
+     * if it does not fit without evicting other posters.
+     */
+    @Synchronized
+    @Throws(IOException::class)
+    fun put(url: String, source: BufferedSource): Boolean {
+        val file = fileFor(url)
+        val tempFile = File(directory, "${file.name}.tmp")
+        tempFile.sink().buffer().use { it.writeAll(source) }
+
+        val newSize = calculateSize() - file.length() + tempFile.length()
+        if (newSize > maxSize) {
+            tempFile.delete()
+            return false
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete()
+            throw IOException("Failed to write poster file")
+        }
+        size = newSize
+        return true
+    }
+
+    /**
+     * Removes all posters that are not one of [urls], like of removed shows.
+     */
+    @Synchronized
+    fun retainOnly(urls: Collection<String>) {
+        val names = urls.mapTo(HashSet()) { fileFor(it).name }
+        directory.listFiles()?.forEach {
+            if (it.name !in names) it.delete()
+        }
+        size = -1L
+    }
+
+    /**
+     * If not calculated, yet, calculates the size of all files and removes the least recently
+     * displayed posters if it is larger than [maxSize].
+     */
+    private fun calculateSize(): Long {
+        if (size == -1L) {
+            val files = directory.listFiles()?.sortedBy { it.lastModified() } ?: emptyList()
+            var newSize = files.sumOf { it.length() }
+            for (file in files) {
+                if (newSize <= maxSize) break
+                val length = file.length()
+                if (file.delete()) newSize -= length
+            }
+            size = newSize
+        }
+        return size
+    }
+
+    private fun fileFor(url: String): File = File(directory, url.encodeUtf8().md5().hex())
+
+    companion object {
+
+        @Volatile
+        private var instance: PosterCache? = null
+
+        @JvmStatic
+        fun getInstance(context: Context): PosterCache {
+            return instance ?: synchronized(this) {
+                instance ?: run {
+                    val directory = HttpClientModule.createCacheDir(
+                        context.applicationContext,
+                        HttpClientModule.POSTER_CACHE
+                    )
+                    PosterCache(
+                        directory,
+                        HttpClientModule.calculatePosterDiskCacheSize(directory)
+                    ).also { instance = it }
+                }
+            }
+        }
+    }
+}
+
+/**
+ * Responds with the poster from [PosterCache] if it has one for the requested URL instead of
+ * using the network. So this also works if the network policy only allows cached images.
+ */
+class PosterCacheInterceptor(private val posterCache: PosterCache) : Interceptor {
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val request = chain.request()
+        if (request.method != "GET") return chain.proceed(request)
+
+        val file = posterCache.get(request.url.toString())
+            ?: return chain.proceed(request)
+        val length = file.length()
+        val source = try {
+            file.source().buffer()
+        } catch (e: FileNotFoundException) {
+            // Was just evicted
+            return chain.proceed(request)
+        }
+        return Response.Builder()
+            .request(request)
+            .protocol(Protocol.HTTP_1_1)
+            .code(200)
+            .message("OK")
+            .body(source.asResponseBody(null, length))
+            .build()
+    }
+
+}
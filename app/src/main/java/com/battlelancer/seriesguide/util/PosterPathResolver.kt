@@ -0,0 +1,137 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.util
+
+import android.content.Context
+import android.content.SharedPreferences
+import androidx.collection.LruCache
+import androidx.core.content.edit
+import com.battlelancer.seriesguide.SgApp
+import com.battlelancer.seriesguide.movies.MoviesSettings
+import com.battlelancer.seriesguide.movies.tools.MoviePosterDownloader
+import com.battlelancer.seriesguide.provider.SgRoomDatabase
+import com.battlelancer.seriesguide.tmdbapi.TmdbTools2
+import kotlinx.coroutines.runBlocking
+import timber.log.Timber
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.FutureTask
+
+/**
+ * Resolves TMDB poster paths of shows and movies for [SgPicassoRequestHandler].
+ *
+ * Uses the poster path of an added show or movie if it has one. Otherwise downloads it from TMDB,
+ * but if multiple images request the same show or movie at the same time only once. Downloaded
+ * paths are kept in memory and in a preferences file, so they are not downloaded again (unless
+ * the file gets too large and is cleared). Added shows without a poster path get the downloaded
+ * one, see also [com.battlelancer.seriesguide.sync.TmdbSync.updateMissingShowPosters].
+ */
+object PosterPathResolver {
+
+    private const val PREFS_FILE = "poster-paths"
+    private const val MEMORY_CACHE_SIZE = 500
+    private const val MAX_STORED_PATHS = 1000
+
+    private val pathCache = LruCache<String, String>(MEMORY_CACHE_SIZE)
+    private val lookups = ConcurrentHashMap<String, FutureTask<String?>>()
+
+    /** Count of paths in the preferences file, -1 until counted once. */
+    private var storedPathCount = -1
+
+    /**
+     * Returns the poster path of the show or null if it has none or downloading failed.
+     * Blocks while downloading.
+     */
+    fun getShowPosterPath(context: Context, showTmdbId: Int, language: String): String? {
+        val key = "show-$showTmdbId-$language"
+        pathCache[key]?.let { return it }
+
+        val showHelper = SgRoomDatabase.getInstance(context).sgShow2Helper()
+        val localPath = showHelper.getShowPosterByTmdbId(showTmdbId)
+        if (!localPath.isNullOrEmpty()) return localPath
+
+        return getStoredOrDownload(context, key) {
+            val path = TmdbTools2().getShowDetails(showTmdbId, language, context)?.poster_path
+            if (!path.isNullOrEmpty()) {
+                // If the show is added, but has no poster, also store it there.
+                showHelper.updateMissingPosterByTmdbId(showTmdbId, path)
+            }
+            path
+        }
+    }
+
+    /**
+     * Returns the poster path of the movie in [MoviesSettings.getMoviesLanguage] or null if it has
+     * none or downloading failed. Blocks while downloading.
+     */
+    fun getMoviePosterPath(context: Context, movieTmdbId: Int): String? {
+        val key = "movie-$movieTmdbId-${MoviesSettings.getMoviesLanguage(context)}"
+        pathCache[key]?.let { return it }
+
+        val localPath = SgRoomDatabase.getInstance(context).movieHelper()
+            .getMoviePoster(movieTmdbId)
+        if (!localPath.isNullOrEmpty()) return localPath
+
+        return getStoredOrDownload(context, key) {
+            runBlocking {
+                val tmdbMovies = SgApp.getServicesComponent(context).moviesService()
+                MoviePosterDownloader(context, tmdbMovies).getMoviePosterPath(movieTmdbId)
+            }
+        }
+    }
+
+    private fun getStoredOrDownload(
+        context: Context,
+        key: String,
+        download: () -> String?
+    ): String? {
+        val prefs = context.getSharedPreferences(PREFS_FILE, Context.MODE_PRIVATE)
+        prefs.getString(key, null)?.let {
+            pathCache.put(key, it)
+            return it
+        }
+
+        // Only the first caller downloads, others wait for its result.
+        val newLookup = FutureTask(download)
+        val lookup = lookups.putIfAbsent(key, newLookup) ?: newLookup
+        if (lookup !== newLookup) {
+            return getResult(lookup)
+        }
+
+        newLookup.run()
+        val path = getResult(newLookup)?.ifEmpty { null }
+        if (path != null) {
+            pathCache.put(key, path)
+            storePath(prefs, key, path)
+        }
+        lookups.remove(key)
+        return path
+    }
+
+    @Synchronized
+    private fun storePath(prefs: SharedPreferences, key: String, path: String) {
+        // Reading all values is expensive, so only count them once.
+        if (storedPathCount < 0) storedPathCount = prefs.all.size
+        val clear = storedPathCount >= MAX_STORED_PATHS
+        storedPathCount = if (clear) 1 else storedPathCount + 1
+        prefs.edit {
+            if (clear) clear()
+            putString(key, path)
+        }
+    }
+
+    private fun getResult(lookup: FutureTask<String?>): String? {
+        return try {
+            lookup.get()
+        } catch (e: ExecutionException) {
+            Timber.e(e.cause, "Failed to resolve poster path")
+            null
+        } catch (e: InterruptedException) {
+            // Image request was canceled
+            Thread.currentThread().interrupt()
+            null
+        }
+    }
+
+}
@@ -10,23 +10,19 @@ package com.battlelancer.seriesguide.util
 import android.content.Context
 import android.net.Uri
 import androidx.core.net.toUri
-import com.battlelancer.seriesguide.SgApp
-import com.battlelancer.seriesguide.movies.tools.MoviePosterDownloader
 import com.battlelancer.seriesguide.tmdbapi.TmdbTools
-import com.battlelancer.seriesguide.tmdbapi.TmdbTools2
 import com.squareup.picasso.Downloader
 import com.squareup.picasso.NetworkPolicy
 import com.squareup.picasso.Picasso.LoadedFrom.DISK
 import com.squareup.picasso.Picasso.LoadedFrom.NETWORK
 import com.squareup.picasso.Request
 import com.squareup.picasso.RequestHandler
-import kotlinx.coroutines.runBlocking
 import okhttp3.CacheControl
 import java.io.IOException
 
 /**
  * This is mostly a copy of [com.squareup.picasso.NetworkRequestHandler] that is not visible.
- * Extended to fetch the image url from a given show TVDB id or movie TMDB id.
+ * Extended to fetch the image url from a given show or movie TMDB id, see [PosterPathResolver].
  */
 class SgPicassoRequestHandler(
     private val downloader: Downloader,
@@ -54,9 +50,9 @@ class SgPicassoRequestHandler(
                 language = LanguageTools.LANGUAGE_EN
             }
 
-            val showDetails = TmdbTools2().getShowDetails(showTmdbId, language, context)
-            if (showDetails != null) {
-                val url = ImageTools.tmdbOrTvdbPosterUrl(showDetails.poster_path, context, false)
+            val posterPath = PosterPathResolver.getShowPosterPath(context, showTmdbId, language)
+            if (posterPath != null) {
+                val url = ImageTools.tmdbOrTvdbPosterUrl(posterPath, context, false)
                 if (url != null) {
                     return loadFromNetwork(url.toUri())
                 }
@@ -66,14 +62,7 @@ class SgPicassoRequestHandler(
         if (SCHEME_MOVIE_TMDB == scheme) {
             val movieTmdbId = host.toInt()
 
-            val posterPath: String? = try {
-                runBlocking {
-                    val tmdbMovies = SgApp.getServicesComponent(context).moviesService()
-                    MoviePosterDownloader(context, tmdbMovies).getMoviePosterPath(movieTmdbId)
-                }
-            } catch (e: InterruptedException) {
-                null // Do nothing
-            }
+            val posterPath = PosterPathResolver.getMoviePosterPath(context, movieTmdbId)
             if (posterPath != null) {
                 val imageUrl = TmdbTools.buildLargePosterUrl(context, posterPath)
                     .let { ImageTools.buildImageCacheUrl(it) }
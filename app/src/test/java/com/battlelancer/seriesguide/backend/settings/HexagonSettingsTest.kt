@@ -0,0 +1,35 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.backend.settings
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import com.battlelancer.seriesguide.EmptyTestApplication
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(application = EmptyTestApplication::class)
+class HexagonSettingsTest {
+
+    private val context = ApplicationProvider.getApplicationContext<Context>()
+
+    @Test
+    fun episodesUploadResumeAfterId_keptIfOtherShowUploads() {
+        HexagonSettings.setEpisodesUploadResumeAfterId(context, 1, 42)
+        assertThat(HexagonSettings.getEpisodesUploadResumeAfterId(context, 1)).isEqualTo(42)
+        assertThat(HexagonSettings.getEpisodesUploadResumeAfterId(context, 2)).isEqualTo(0)
+
+        // Other show uploaded completely or failed on its first batch
+        HexagonSettings.setEpisodesUploadResumeAfterId(context, 2, 0)
+        assertThat(HexagonSettings.getEpisodesUploadResumeAfterId(context, 1)).isEqualTo(42)
+
+        HexagonSettings.setEpisodesUploadResumeAfterId(context, 1, 0)
+        assertThat(HexagonSettings.getEpisodesUploadResumeAfterId(context, 1)).isEqualTo(0)
+    }
+
+}
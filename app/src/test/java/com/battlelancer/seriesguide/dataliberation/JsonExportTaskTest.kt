@@ -110,8 +110,9 @@ class JsonExportTaskTest {
         // With data
         `when`(sgShow2Helper.getShowsForExport()).thenReturn(listOfTestShows)
         `when`(sgSeason2Helper.getSeasonsForExport(1)).thenReturn(listOfTestSeasons)
-        `when`(sgEpisode2Helper.getEpisodesForExport(1)).thenReturn(listOfTestEpisodes)
-        `when`(sgEpisode2Helper.getEpisodesForExport(2)).thenReturn(listOfTestEpisodes)
+        `when`(sgEpisode2Helper.getEpisodesOfShowForExport(1)).thenReturn(
+            listOfTestEpisodes + listOfTestEpisodes.map { it.copy(seasonId = 2) }
+        )
 
         val withDataResult = exportTask.run(export)
         assertThat(exportTask.errorCause).isNull()
@@ -22,7 +22,11 @@ import com.battlelancer.seriesguide.tmdbapi.TmdbFindTools
 import com.battlelancer.seriesguide.tmdbapi.TmdbTools4.TmdbNonNullResponse.Success
 import com.google.common.truth.Truth.assertThat
 import com.uwetrottmann.tmdb2.entities.BaseMovie
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.test.UnconfinedTestDispatcher
+import kotlinx.coroutines.test.resetMain
 import kotlinx.coroutines.test.runTest
+import kotlinx.coroutines.test.setMain
 import org.intellij.lang.annotations.Language
 import org.junit.After
 import org.junit.Before
@@ -32,11 +36,13 @@ import org.mockito.Mockito
 import org.mockito.Mockito.mock
 import org.mockito.Mockito.verify
 import org.mockito.Mockito.`when`
+import org.mockito.kotlin.any
 import org.mockito.kotlin.eq
 import org.mockito.kotlin.whenever
 import org.robolectric.RobolectricTestRunner
 import org.robolectric.annotation.Config
 import java.io.File
+import java.io.FileOutputStream
 import java.nio.file.Files
 import kotlin.io.path.writeText
 
@@ -142,7 +148,6 @@ class JsonImportTaskTest {
         val expectedEpisode2 = JsonExportTaskTest.listOfTestEpisodes[1].copy(
             id = 0, // insert
         )
-        verify(sgEpisode2Helper).insertEpisodes(listOf(expectedEpisode1, expectedEpisode2))
 
         // Episodes of season 2
         val expectedEpisode3 = expectedEpisode1.copy(
@@ -153,7 +158,11 @@ class JsonImportTaskTest {
             seasonId = 2,
             season = 2
         )
-        verify(sgEpisode2Helper).insertEpisodes(listOf(expectedEpisode3, expectedEpisode4))
+
+        // Episodes of all seasons are inserted in one batch
+        verify(sgEpisode2Helper).insertEpisodes(
+            listOf(expectedEpisode1, expectedEpisode2, expectedEpisode3, expectedEpisode4)
+        )
     }
 
     @Test
@@ -383,4 +392,84 @@ class JsonImportTaskTest {
         assertThat(testDb.movieHelper().getAllMovies()).hasSize(0)
     }
 
-}
\ No newline at end of file
+    /**
+     * Not a precise benchmark, but imports a large synthetic backup created by [JsonExportTask]
+     * and prints how long it took.
+     */
+    @Test
+    fun importShows_largeBackup_throughput() = runTest {
+        val showCount = 200
+        val seasonsPerShow = 10
+        val episodesPerSeason = 25
+
+        // Create backup file using the export task.
+        val sgShow2Helper = mock(SgShow2Helper::class.java)
+        val sgSeason2Helper = mock(SgSeason2Helper::class.java)
+        val sgEpisode2Helper = mock(SgEpisode2Helper::class.java)
+        val testShow = JsonExportTaskTest.listOfTestShows[0]
+        whenever(sgShow2Helper.getShowsForExport()).thenReturn(
+            (1..showCount).map { testShow.copy(id = it.toLong(), tmdbId = it) }
+        )
+        val testSeason = JsonExportTaskTest.listOfTestSeasons[0]
+        whenever(sgSeason2Helper.getSeasonsForExport(any())).thenReturn(
+            (1..seasonsPerShow).map {
+                testSeason.copy(id = it.toLong(), tmdbId = it.toString(), numberOrNull = it)
+            }
+        )
+        val testEpisode = JsonExportTaskTest.listOfTestEpisodes[0]
+        whenever(sgEpisode2Helper.getEpisodesOfShowForExport(any())).thenReturn(
+            (1..seasonsPerShow).flatMap { season ->
+                (1..episodesPerSeason).map { number ->
+                    testEpisode.copy(
+                        seasonId = season.toLong(),
+                        season = season,
+                        number = number,
+                        tmdbId = season * 1000 + number
+                    )
+                }
+            }
+        )
+        val backupFile = Files.createTempFile("seriesguide-shows-json", null).toFile()
+        Dispatchers.setMain(UnconfinedTestDispatcher(testScheduler))
+        try {
+            JsonExportTask(
+                context,
+                progressListener = null,
+                isFullDump = true,
+                sgShow2Helper,
+                sgSeason2Helper,
+                sgEpisode2Helper,
+                mock(SgListHelper::class.java),
+                mock(MovieHelper::class.java)
+            ).writeJsonStreamShows(this, FileOutputStream(backupFile))
+        } finally {
+            Dispatchers.resetMain()
+        }
+
+        // Import backup file.
+        var lastProgress = 0
+        val importTask = JsonImportTask(
+            context,
+            importShows = true,
+            importLists = false,
+            importMovies = false
+        ).apply {
+            setTestBackupFiles(fileShows = backupFile)
+            progressListener = object : JsonExportTask.OnTaskProgressListener {
+                override fun onProgressUpdate(total: Int, completed: Int) {
+                    lastProgress = completed
+                }
+            }
+        }
+        val start = System.currentTimeMillis()
+        importTask.runAndAssertSuccess()
+        val duration = System.currentTimeMillis() - start
+
+        val episodeCount = showCount * seasonsPerShow * episodesPerSeason
+        println("Imported ${backupFile.length() / 1024} KB with $episodeCount episodes in $duration ms")
+        assertThat(lastProgress).isEqualTo(100)
+        assertThat(testDb.sgShow2Helper().getShowsForExport()).hasSize(showCount)
+        assertThat(testDb.sgEpisode2Helper().getStats()!!.count).isEqualTo(episodeCount)
+    }
+
+}
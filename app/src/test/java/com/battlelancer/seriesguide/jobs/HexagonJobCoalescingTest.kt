@@ -0,0 +1,77 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.jobs
+
+import com.battlelancer.seriesguide.jobs.episodes.JobAction
+import com.battlelancer.seriesguide.shows.episodes.EpisodeFlags
+import com.google.common.truth.Truth.assertThat
+import com.google.flatbuffers.FlatBufferBuilder
+import java.nio.ByteBuffer
+import org.junit.Test
+
+class HexagonJobCoalescingTest {
+
+    @Test
+    fun episodes_laterJobsOverrideEarlierJobs() {
+        // Watch season, unwatch it, then watch it again.
+        val season = listOf(1 to 1, 1 to 2, 1 to 3)
+        val jobInfos = listOf(
+            episodeJobInfo(EpisodeFlags.WATCHED, season, plays = 1),
+            episodeJobInfo(EpisodeFlags.UNWATCHED, season, plays = 0),
+            episodeJobInfo(EpisodeFlags.WATCHED, season.take(2), plays = 1)
+        )
+
+        val episodes =
+            HexagonEpisodeJob.buildEpisodesForHexagon(JobAction.EPISODE_WATCHED_FLAG, jobInfos)
+
+        assertThat(episodes).hasSize(3)
+        assertThat(episodes.map { it.episodeNumber }).containsExactly(1, 2, 3).inOrder()
+        assertThat(episodes.map { it.watchedFlag })
+            .containsExactly(EpisodeFlags.WATCHED, EpisodeFlags.WATCHED, EpisodeFlags.UNWATCHED)
+            .inOrder()
+        assertThat(episodes.map { it.plays }).containsExactly(1, 1, 0).inOrder()
+    }
+
+    @Test
+    fun movies_combinesChangesOfSameMovie() {
+        val jobs = listOf(
+            JobAction.MOVIE_WATCHLIST_ADD to movieJobInfo(10),
+            JobAction.MOVIE_COLLECTION_ADD to movieJobInfo(20),
+            JobAction.MOVIE_WATCHED_SET to movieJobInfo(10, plays = 2),
+            JobAction.MOVIE_WATCHLIST_REMOVE to movieJobInfo(10)
+        )
+
+        val movies = HexagonMovieJob.buildMoviesForHexagon(jobs)
+
+        assertThat(movies.map { it.tmdbId }).containsExactly(10, 20).inOrder()
+        val movie = movies[0]
+        assertThat(movie.isInWatchlist).isFalse()
+        assertThat(movie.isWatched).isTrue()
+        assertThat(movie.plays).isEqualTo(2)
+        assertThat(movie.isInCollection).isNull()
+        assertThat(movies[1].isInCollection).isTrue()
+    }
+
+    private fun episodeJobInfo(
+        flagValue: Int,
+        episodes: List<Pair<Int, Int>>,
+        plays: Int
+    ): SgJobInfo {
+        val builder = FlatBufferBuilder(0)
+        val episodeInfos = episodes.map { (season, number) ->
+            EpisodeInfo.createEpisodeInfo(builder, season, number, plays)
+        }.toIntArray()
+        val episodesVector = SgJobInfo.createEpisodesVector(builder, episodeInfos)
+        val jobInfo = SgJobInfo.createSgJobInfo(builder, flagValue, episodesVector, 0, 0, 42)
+        builder.finish(jobInfo)
+        return SgJobInfo.getRootAsSgJobInfo(ByteBuffer.wrap(builder.sizedByteArray()))
+    }
+
+    private fun movieJobInfo(movieTmdbId: Int, plays: Int = 0): SgJobInfo {
+        val builder = FlatBufferBuilder(0)
+        val jobInfo = SgJobInfo.createSgJobInfo(builder, 0, 0, movieTmdbId, plays, 0)
+        builder.finish(jobInfo)
+        return SgJobInfo.getRootAsSgJobInfo(ByteBuffer.wrap(builder.sizedByteArray()))
+    }
+}
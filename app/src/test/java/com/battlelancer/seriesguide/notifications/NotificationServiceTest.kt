@@ -41,15 +41,17 @@ class NotificationServiceTest {
         )
 
         // Running for the first time = default values
-        assertThat(service.shouldCheckToNotify(0, 0, episodes)).isTrue()
+        assertThat(service.shouldCheckToNotify(0, 0, firstReleaseTime(episodes))).isTrue()
 
         // Woken at or after planned time
-        assertThat(service.shouldCheckToNotify(currentTime, nextRelease, episodes)).isTrue()
+        assertThat(
+            service.shouldCheckToNotify(currentTime, nextRelease, firstReleaseTime(episodes))
+        ).isTrue()
         assertThat(
             service.shouldCheckToNotify(
                 currentTime + 5 * DateUtils.MINUTE_IN_MILLIS,
                 nextRelease,
-                episodes
+                firstReleaseTime(episodes)
             )
         ).isTrue()
 
@@ -57,32 +59,40 @@ class NotificationServiceTest {
         val beforeNextRelease = nextRelease - 5 * DateUtils.MINUTE_IN_MILLIS
         //   No upcoming episodes at all
         assertThat(
-            service.shouldCheckToNotify(beforeNextRelease, nextRelease, emptyList())
+            service.shouldCheckToNotify(
+                beforeNextRelease,
+                nextRelease,
+                firstReleaseTime(emptyList())
+            )
         ).isTrue()
         //   New upcoming episode released before planned one to notify about.
         assertThat(
-            service.shouldCheckToNotify(beforeNextRelease, nextRelease, episodes)
+            service.shouldCheckToNotify(
+                beforeNextRelease,
+                nextRelease,
+                firstReleaseTime(episodes)
+            )
         ).isTrue()
         //   No new upcoming episodes to notify about, but planned one was removed.
         assertThat(
             service.shouldCheckToNotify(
                 beforeNextRelease, nextRelease,
-                listOf(
+                firstReleaseTime(listOf(
                     sgEpisode2WithShow(1, lastNotifiedAbout - DateUtils.HOUR_IN_MILLIS),
                     sgEpisode2WithShow(2, lastNotifiedAbout),
                     sgEpisode2WithShow(4, nextRelease + 10 * DateUtils.HOUR_IN_MILLIS),
                     sgEpisode2WithShow(5, nextRelease + 14 * DateUtils.DAY_IN_MILLIS)
-                )
+                ))
             )
         ).isTrue()
         //   Earlier episodes already notified about, no new ones, find new wake-up time.
         assertThat(
             service.shouldCheckToNotify(
                 beforeNextRelease, nextRelease,
-                listOf(
+                firstReleaseTime(listOf(
                     sgEpisode2WithShow(1, lastNotifiedAbout - DateUtils.HOUR_IN_MILLIS),
                     sgEpisode2WithShow(2, lastNotifiedAbout)
-                )
+                ))
             )
         ).isTrue()
 
@@ -90,15 +100,25 @@ class NotificationServiceTest {
         assertThat(
             service.shouldCheckToNotify(
                 beforeNextRelease, nextRelease,
-                listOf(
+                firstReleaseTime(listOf(
                     sgEpisode2WithShow(3, nextRelease),
                     sgEpisode2WithShow(4, nextRelease + 10 * DateUtils.HOUR_IN_MILLIS),
                     sgEpisode2WithShow(5, nextRelease + 14 * DateUtils.DAY_IN_MILLIS)
-                )
+                ))
             )
         ).isFalse()
     }
 
+    /**
+     * Like the query of the service, returns the release time of the first of [episodes] (ordered
+     * by release time) released at or after the given time.
+     */
+    private fun firstReleaseTime(episodes: List<SgEpisode2WithShow>): (Long) -> Long? =
+        { fromReleaseTime ->
+            episodes.firstOrNull { it.episode_firstairedms >= fromReleaseTime }
+                ?.episode_firstairedms
+        }
+
     private fun sgEpisode2WithShow(idAndNumber: Int, releaseTime: Long) = SgEpisode2WithShow(
         id = idAndNumber.toLong(),
         episodetitle = null,
@@ -0,0 +1,97 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.shows
+
+import android.content.Context
+import androidx.core.content.edit
+import androidx.preference.PreferenceManager
+import androidx.test.core.app.ApplicationProvider
+import com.battlelancer.seriesguide.EmptyTestApplication
+import com.battlelancer.seriesguide.settings.DisplaySettings
+import com.battlelancer.seriesguide.shows.database.SgShow2ForLists
+import com.battlelancer.seriesguide.shows.tools.ShowStatus
+import com.google.common.truth.Truth.assertThat
+import com.jakewharton.threetenabp.AndroidThreeTen
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(application = EmptyTestApplication::class)
+class ShowItemMapperTest {
+
+    private val context = ApplicationProvider.getApplicationContext<Context>()
+
+    @Before
+    fun initThreeTen() {
+        AndroidThreeTen.init(context)
+    }
+
+    @Test
+    fun map_onlyMapsChangedShows() {
+        val mapper = ShowItemMapper(context)
+        val first = mapper.map(listOf(show(1), show(2), show(3)))
+        assertThat(first.map { it.rowId }).containsExactly(1L, 2L, 3L).inOrder()
+
+        val second = mapper.map(
+            listOf(show(3), show(1, unwatchedCount = 5), show(2))
+        )
+
+        assertThat(second.map { it.rowId }).containsExactly(3L, 1L, 2L).inOrder()
+        assertThat(second[0]).isSameInstanceAs(first[2])
+        assertThat(second[1]).isNotSameInstanceAs(first[0])
+        assertThat(second[1].remainingCount).isNotEqualTo(first[0].remainingCount)
+        assertThat(second[2]).isSameInstanceAs(first[1])
+    }
+
+    @Test
+    fun map_removedShowIsMappedAgain() {
+        val mapper = ShowItemMapper(context)
+        val first = mapper.map(listOf(show(1)))
+        mapper.map(emptyList())
+
+        val second = mapper.map(listOf(show(1)))
+
+        assertThat(second[0]).isEqualTo(first[0])
+        assertThat(second[0]).isNotSameInstanceAs(first[0])
+    }
+
+    @Test
+    fun map_settingChanged_mapsAllAgain() {
+        val mapper = ShowItemMapper(context)
+        val first = mapper.map(listOf(show(1)))
+
+        PreferenceManager.getDefaultSharedPreferences(context).edit {
+            putBoolean(DisplaySettings.KEY_DISPLAY_EXACT_DATE, true)
+        }
+        val second = mapper.map(listOf(show(1)))
+
+        assertThat(second[0]).isNotSameInstanceAs(first[0])
+    }
+
+    private fun show(id: Long, unwatchedCount: Int = 0) = SgShow2ForLists(
+        id = id,
+        tvdbId = null,
+        title = "Show $id",
+        releaseTime = -1,
+        releaseWeekDay = -1,
+        releaseCountry = null,
+        releaseTimeZone = null,
+        customReleaseTime = null,
+        customReleaseDayOffset = null,
+        customReleaseTimeZone = null,
+        network = "Network",
+        status = ShowStatus.ENDED,
+        nextEpisode = null,
+        poster = null,
+        posterSmall = null,
+        nextAirdateMs = 0,
+        nextText = "",
+        unwatchedCount = unwatchedCount,
+        favorite = false,
+        hidden = false
+    )
+}
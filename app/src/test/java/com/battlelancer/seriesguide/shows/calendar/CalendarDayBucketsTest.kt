@@ -0,0 +1,52 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.shows.calendar
+
+import android.text.format.DateUtils
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import org.threeten.bp.LocalDateTime
+import org.threeten.bp.ZoneOffset
+
+class CalendarDayBucketsTest {
+
+    private val zone = ZoneOffset.ofHours(2)
+
+    private fun time(day: Int, hour: Int, minute: Int = 0): Long =
+        LocalDateTime.of(2026, 3, day, hour, minute).toInstant(zone).toEpochMilli()
+
+    @Test
+    fun noOffset() {
+        val buckets = CalendarDayBuckets(0, zone)
+        val releaseTime = time(10, 20, 30)
+
+        assertThat(buckets.headerTime(releaseTime)).isEqualTo(time(10, 1))
+        assertThat(buckets.dayStart(releaseTime)).isEqualTo(time(10, 0))
+        assertThat(buckets.dayEnd(releaseTime)).isEqualTo(time(11, 0))
+        assertThat(buckets.dayStart(time(10, 0))).isEqualTo(time(10, 0))
+        assertThat(buckets.dayEnd(time(10, 23, 59))).isEqualTo(time(11, 0))
+    }
+
+    @Test
+    fun offset_movesToNextDay() {
+        val buckets = CalendarDayBuckets(3 * DateUtils.HOUR_IN_MILLIS, zone)
+        val releaseTime = time(10, 22)
+
+        // Displayed at 1 AM the next day.
+        assertThat(buckets.headerTime(releaseTime)).isEqualTo(time(11, 1))
+        // Boundaries are release times, so without the offset.
+        assertThat(buckets.dayStart(releaseTime)).isEqualTo(time(10, 21))
+        assertThat(buckets.dayEnd(releaseTime)).isEqualTo(time(11, 21))
+    }
+
+    @Test
+    fun negativeOffset_movesToPreviousDay() {
+        val buckets = CalendarDayBuckets(-2 * DateUtils.HOUR_IN_MILLIS, zone)
+        val releaseTime = time(10, 1)
+
+        assertThat(buckets.headerTime(releaseTime)).isEqualTo(time(9, 1))
+        assertThat(buckets.dayStart(releaseTime)).isEqualTo(time(9, 2))
+        assertThat(buckets.dayEnd(releaseTime)).isEqualTo(time(10, 2))
+    }
+}
@@ -0,0 +1,46 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.shows.search
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class EpisodeSearchQueryTest {
+
+    @Test
+    fun noWords_returnsNull() {
+        assertThat(EpisodeSearchQuery.parse(null)).isNull()
+        assertThat(EpisodeSearchQuery.parse("  ")).isNull()
+        assertThat(EpisodeSearchQuery.parse("\"*-\" ()")).isNull()
+    }
+
+    @Test
+    fun words_matchAllAsPrefix() {
+        val query = EpisodeSearchQuery.parse("Pilot  Épisode")!!
+        assertThat(query.matchExpression).isEqualTo("pilot* épisode*")
+        assertThat(query.titleMatchExpression)
+            .isEqualTo("episode_title:pilot* episode_title:épisode*")
+    }
+
+    @Test
+    fun syntax_isIgnored() {
+        val query = EpisodeSearchQuery.parse("spider-man OR NOT(title:x*)")!!
+        assertThat(query.matchExpression)
+            .isEqualTo("spider* man* or* not* title* x*")
+    }
+
+    @Test
+    fun phrase() {
+        val query = EpisodeSearchQuery.parse("\"The End\" two")!!
+        assertThat(query.matchExpression).isEqualTo("\"the end\" two*")
+        assertThat(query.titleMatchExpression)
+            .isEqualTo("episode_title:\"the end\" episode_title:two*")
+    }
+
+    @Test
+    fun unclosedPhrase_lastWordIsPrefix() {
+        val query = EpisodeSearchQuery.parse("one \"the en")!!
+        assertThat(query.matchExpression).isEqualTo("one* \"the en*\"")
+    }
+}
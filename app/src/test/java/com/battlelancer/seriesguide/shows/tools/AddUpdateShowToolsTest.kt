@@ -19,9 +19,7 @@ import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
 import org.mockito.Mockito.mock
-import org.mockito.kotlin.any
 import org.mockito.kotlin.eq
-import org.mockito.kotlin.isNull
 import org.mockito.kotlin.whenever
 import org.robolectric.RobolectricTestRunner
 import org.robolectric.annotation.Config
@@ -49,7 +47,7 @@ class AddUpdateShowToolsTest {
     // helpers to simulate failure. Which then won't allow testing if the database changes are
     // actually not applied.
     @Test
-    fun addShow_getEpisodesOfSeasonFails_rollsBackChanges() {
+    fun addShow_getEpisodesOfSeasonsFails_rollsBackChanges() {
         val testShow = ShowTestHelper.showToInsert()
         val testTmdbId = testShow.tmdbId!!
         val testLanguage = "en"
@@ -77,15 +75,10 @@ class AddUpdateShowToolsTest {
         // Fail getting episodes for season call
         val getEpisodesOfSeasonTools: GetEpisodesOfSeasonTools = mock()
         whenever(
-            getEpisodesOfSeasonTools.getEpisodesOfSeason(
-                any(),
+            getEpisodesOfSeasonTools.getEpisodesOfSeasons(
                 eq(testTmdbId),
-                any(),
-                any(),
-                any(),
-                any(),
-                isNull(),
-                isNull()
+                eq(listOf(TEST_TMDB_SEASON.season_number!!)),
+                eq(testLanguage)
             )
         ).thenReturn(Err<TmdbError>(TmdbStop))
 
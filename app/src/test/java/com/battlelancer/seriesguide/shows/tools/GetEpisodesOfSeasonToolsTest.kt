@@ -0,0 +1,99 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.shows.tools
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import com.battlelancer.seriesguide.EmptyTestApplication
+import com.battlelancer.seriesguide.shows.database.SgEpisode2Ids
+import com.battlelancer.seriesguide.shows.database.SgShow2
+import com.battlelancer.seriesguide.shows.tools.GetEpisodesOfSeasonTools.ReleaseInfo
+import com.battlelancer.seriesguide.shows.tools.GetEpisodesOfSeasonTools.SeasonEpisodes
+import com.google.common.truth.Truth.assertThat
+import com.jakewharton.threetenabp.AndroidThreeTen
+import com.uwetrottmann.tmdb2.entities.TvEpisode
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(application = EmptyTestApplication::class)
+class GetEpisodesOfSeasonToolsTest {
+
+    private val context = ApplicationProvider.getApplicationContext<Context>()
+
+    @Before
+    fun initThreeTen() {
+        AndroidThreeTen.init(context)
+    }
+
+    @Test
+    fun mapToSgEpisode2_onlyUpdatesChangedEpisodes() {
+        val tools = GetEpisodesOfSeasonTools(context)
+        val inserted = map(tools, listOf(episode(1), episode(2)), mutableMapOf())
+        assertThat(inserted.toInsert).hasSize(2)
+
+        // Store like inserted, then update with one changed episode.
+        val localEpisodes = inserted.toInsert.mapIndexed { index, it ->
+            SgEpisode2Ids(index + 10L, it.tmdbId, it.number, it.contentHash)
+        }.associateByTo(mutableMapOf()) { it.tmdbId!! }
+        val updated = map(
+            tools,
+            listOf(episode(1), episode(2, name = "Changed")),
+            localEpisodes
+        )
+
+        assertThat(updated.toInsert).isEmpty()
+        assertThat(updated.toUpdate.map { it.id }).containsExactly(11L)
+        assertThat(updated.toUpdate[0].title).isEqualTo("Changed")
+        assertThat(updated.toRemove).isEmpty()
+        assertThat(updated.unchangedCount).isEqualTo(1)
+    }
+
+    @Test
+    fun mapToSgEpisode2_updatesEpisodesWithoutContentHash() {
+        val tools = GetEpisodesOfSeasonTools(context)
+        val localEpisodes = mutableMapOf(1 to SgEpisode2Ids(10, 1, 1, null))
+
+        val updated = map(tools, listOf(episode(1)), localEpisodes)
+
+        assertThat(updated.toUpdate.map { it.id }).containsExactly(10L)
+        assertThat(updated.unchangedCount).isEqualTo(0)
+    }
+
+    private fun map(
+        tools: GetEpisodesOfSeasonTools,
+        episodes: List<TvEpisode>,
+        localEpisodesByTmdbId: MutableMap<Int, SgEpisode2Ids>
+    ) = tools.mapToSgEpisode2(
+        SeasonEpisodes(episodes, null),
+        RELEASE_INFO,
+        showId = 1,
+        seasonId = 1,
+        seasonNumber = 1,
+        localEpisodesByTmdbId,
+        mutableMapOf()
+    )
+
+    private fun episode(number: Int, name: String = "Episode $number") = TvEpisode().apply {
+        id = number
+        episode_number = number
+        this.name = name
+        overview = "Overview $number"
+    }
+
+    companion object {
+        private val RELEASE_INFO = ReleaseInfo(
+            releaseTimeZone = "America/New_York",
+            releaseTimeOrDefault = 2000,
+            customReleaseTimeZone = SgShow2.CUSTOM_RELEASE_TIME_ZONE_NOT_SET,
+            customReleaseTime = SgShow2.CUSTOM_RELEASE_TIME_NOT_SET,
+            customReleaseDayOffset = SgShow2.CUSTOM_RELEASE_DAY_OFFSET_NOT_SET,
+            releaseCountry = "US",
+            network = null
+        )
+    }
+}
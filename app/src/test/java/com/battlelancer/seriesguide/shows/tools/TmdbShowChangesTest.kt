@@ -0,0 +1,97 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.shows.tools
+
+import com.battlelancer.seriesguide.EmptyTestApplication
+import com.battlelancer.seriesguide.tmdbapi.TmdbChangesService
+import com.google.common.truth.Truth.assertThat
+import mockwebserver3.MockResponse
+import mockwebserver3.MockWebServer
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import org.threeten.bp.LocalDate
+import retrofit2.Retrofit
+import retrofit2.converter.gson.GsonConverterFactory
+import retrofit2.create
+
+/**
+ * Uses Robolectric as reporting errors logs with the Android logger.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(application = EmptyTestApplication::class)
+class TmdbShowChangesTest {
+
+    private val server = MockWebServer()
+    private lateinit var showChanges: TmdbShowChanges
+
+    @Before
+    fun startServer() {
+        server.start()
+        val changesService = Retrofit.Builder()
+            .baseUrl(server.url("/3/"))
+            .addConverterFactory(GsonConverterFactory.create())
+            .build()
+            .create<TmdbChangesService>()
+        showChanges = TmdbShowChanges(changesService)
+    }
+
+    @After
+    fun closeServer() {
+        server.close()
+    }
+
+    private fun enqueuePage(page: Int, totalPages: Int, vararg tmdbIds: Int) {
+        val results = tmdbIds.joinToString(",") { """{"id":$it,"adult":false}""" }
+        val body = """{"results":[$results],"page":$page,"total_pages":$totalPages}"""
+        server.enqueue(MockResponse.Builder().body(body).build())
+    }
+
+    @Test
+    fun getChangedShows_loadsAllPages() {
+        enqueuePage(1, 2, 1, 2)
+        enqueuePage(2, 2, 2, 3)
+
+        val result = showChanges.getChangedShows(START, END, maxPages = 2)
+
+        assertThat(result).isEqualTo(TmdbShowChanges.Result.Changed(setOf(1, 2, 3)))
+        assertThat(server.requestCount).isEqualTo(2)
+    }
+
+    @Test
+    fun getChangedShows_tooManyPages() {
+        enqueuePage(1, 3, 1)
+
+        val result = showChanges.getChangedShows(START, END, maxPages = 2)
+
+        assertThat(result).isEqualTo(TmdbShowChanges.Result.TooManyPages)
+        assertThat(server.requestCount).isEqualTo(1)
+    }
+
+    @Test
+    fun getChangedShows_noPagesAllowed() {
+        val result = showChanges.getChangedShows(START, END, maxPages = 0)
+
+        assertThat(result).isEqualTo(TmdbShowChanges.Result.TooManyPages)
+        assertThat(server.requestCount).isEqualTo(0)
+    }
+
+    @Test
+    fun getChangedShows_error() {
+        enqueuePage(1, 2, 1)
+        server.enqueue(MockResponse.Builder().code(500).build())
+
+        val result = showChanges.getChangedShows(START, END, maxPages = 2)
+
+        assertThat(result).isEqualTo(TmdbShowChanges.Result.Failed)
+    }
+
+    companion object {
+        private val START = LocalDate.of(2026, 3, 1)
+        private val END = LocalDate.of(2026, 3, 2)
+    }
+}
@@ -0,0 +1,77 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.sync
+
+import android.text.format.DateUtils
+import com.google.common.truth.Truth.assertThat
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.currentTime
+import kotlinx.coroutines.test.runTest
+import org.junit.Test
+
+@OptIn(ExperimentalCoroutinesApi::class)
+class UpdateThrottleTest {
+
+    private fun TestScope.throttle(minIntervalMs: Long) =
+        UpdateThrottle(minIntervalMs, clock = { currentTime })
+
+    @Test
+    fun awaitTurn_spacesUpdates() = runTest {
+        val throttle = throttle(minIntervalMs = 200)
+
+        val startedAtMs = List(3) {
+            assertThat(throttle.awaitTurn()).isTrue()
+            currentTime
+        }
+
+        assertThat(startedAtMs).containsExactly(0L, 200L, 400L).inOrder()
+    }
+
+    @Test
+    fun onNetworkError_backsOff() = runTest {
+        val throttle = throttle(minIntervalMs = 0)
+        assertThat(throttle.awaitTurn()).isTrue()
+
+        assertThat(throttle.onNetworkError(throttle.now())).isTrue()
+        assertThat(throttle.awaitTurn()).isTrue()
+
+        // 2^0 seconds + up to 1 second random.
+        assertThat(currentTime).isAtLeast(DateUtils.SECOND_IN_MILLIS)
+        assertThat(currentTime).isLessThan(2 * DateUtils.SECOND_IN_MILLIS)
+    }
+
+    @Test
+    fun concurrentErrors_countOnce() = runTest {
+        val throttle = throttle(minIntervalMs = 0)
+        // Workers start their updates at the same time...
+        val startedAtMs = List(4) {
+            assertThat(throttle.awaitTurn()).isTrue()
+            throttle.now()
+        }
+        // ...and all fail due to the same connection issue.
+        for (it in startedAtMs) {
+            assertThat(throttle.onNetworkError(it)).isTrue()
+        }
+
+        assertThat(throttle.isTripped).isFalse()
+    }
+
+    @Test
+    fun errorsAfterBackOff_trip() = runTest {
+        val throttle = throttle(minIntervalMs = 0)
+
+        // Each update starts after the back off of the previous error and fails again.
+        assertThat(throttle.awaitTurn()).isTrue()
+        assertThat(throttle.onNetworkError(throttle.now())).isTrue()
+        assertThat(throttle.awaitTurn()).isTrue()
+        assertThat(throttle.onNetworkError(throttle.now())).isTrue()
+        assertThat(throttle.awaitTurn()).isTrue()
+        assertThat(throttle.onNetworkError(throttle.now())).isFalse()
+
+        assertThat(throttle.isTripped).isTrue()
+        assertThat(throttle.awaitTurn()).isFalse()
+    }
+
+}
@@ -0,0 +1,126 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.tmdbapi
+
+import com.battlelancer.seriesguide.EmptyTestApplication
+import com.battlelancer.seriesguide.tmdbapi.TmdbTools3.TmdbError
+import com.battlelancer.seriesguide.tmdbapi.TmdbTools3.TmdbStop
+import com.github.michaelbull.result.Err
+import com.github.michaelbull.result.Ok
+import com.github.michaelbull.result.Result
+import com.github.michaelbull.result.get
+import com.github.michaelbull.result.getError
+import com.google.common.truth.Truth.assertThat
+import com.uwetrottmann.tmdb2.entities.TvEpisode
+import mockwebserver3.MockResponse
+import mockwebserver3.MockWebServer
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import retrofit2.Retrofit
+import retrofit2.converter.gson.GsonConverterFactory
+import retrofit2.create
+
+/**
+ * Tests [TmdbTools3.getSeasons]. Uses Robolectric as reporting errors logs with the Android logger.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(application = EmptyTestApplication::class)
+class TmdbSeasonsTest {
+
+    private val server = MockWebServer()
+    private lateinit var seasonsService: TmdbSeasonsService
+    private val fallbackSeasons = mutableListOf<Int>()
+
+    @Before
+    fun startServer() {
+        server.start()
+        seasonsService = Retrofit.Builder()
+            .baseUrl(server.url("/3/"))
+            .addConverterFactory(GsonConverterFactory.create())
+            .build()
+            .create<TmdbSeasonsService>()
+    }
+
+    @After
+    fun closeServer() {
+        server.close()
+    }
+
+    private fun season(vararg episodeNumbers: Int): String {
+        val episodes = episodeNumbers.joinToString(",") {
+            """{"id":${it * 10},"episode_number":$it,"name":"Episode $it"}"""
+        }
+        return """{"episodes":[$episodes]}"""
+    }
+
+    private fun getSeasons(
+        seasonNumbers: List<Int>,
+        fallback: (Int) -> Result<List<TvEpisode>, TmdbError> = { seasonNumber ->
+            Ok(listOf(TvEpisode().apply { episode_number = seasonNumber * 100 }))
+        }
+    ) = TmdbTools3.getSeasons(seasonsService, 1, seasonNumbers, "en") { seasonNumber ->
+        fallbackSeasons.add(seasonNumber)
+        fallback(seasonNumber)
+    }
+
+    @Test
+    fun getSeasons_groupsSeasonsInOneRequest() {
+        server.enqueue(
+            MockResponse.Builder()
+                .body("""{"id":1,"season/1":${season(1, 2)},"season/2":${season(1)}}""")
+                .build()
+        )
+
+        val episodesBySeason = getSeasons(listOf(1, 2)).get()!!
+
+        assertThat(episodesBySeason.keys).containsExactly(1, 2)
+        assertThat(episodesBySeason[1]!!.map { it.episode_number }).containsExactly(1, 2).inOrder()
+        assertThat(episodesBySeason[2]!!.map { it.episode_number }).containsExactly(1)
+        assertThat(fallbackSeasons).isEmpty()
+        assertThat(server.requestCount).isEqualTo(1)
+        assertThat(server.takeRequest().url.queryParameter("append_to_response"))
+            .isEqualTo("season/1,season/2")
+    }
+
+    @Test
+    fun getSeasons_missingOrNotObject_loadsSeason() {
+        server.enqueue(
+            MockResponse.Builder()
+                .body("""{"id":1,"season/1":${season(1)},"season/3":null,"season/4":"error"}""")
+                .build()
+        )
+
+        val episodesBySeason = getSeasons(listOf(1, 2, 3, 4)).get()!!
+
+        assertThat(fallbackSeasons).containsExactly(2, 3, 4).inOrder()
+        assertThat(episodesBySeason[1]!!.map { it.episode_number }).containsExactly(1)
+        assertThat(episodesBySeason[2]!!.map { it.episode_number }).containsExactly(200)
+        assertThat(episodesBySeason[4]!!.map { it.episode_number }).containsExactly(400)
+    }
+
+    @Test
+    fun getSeasons_loadSeasonFails() {
+        server.enqueue(MockResponse.Builder().body("""{"id":1}""").build())
+
+        val result = getSeasons(listOf(1, 2)) { Err(TmdbStop) }
+
+        assertThat(result.getError()).isEqualTo(TmdbStop)
+        assertThat(fallbackSeasons).containsExactly(1)
+    }
+
+    @Test
+    fun getSeasons_requestFails() {
+        server.enqueue(MockResponse.Builder().code(500).build())
+
+        val result = getSeasons(listOf(1))
+
+        assertThat(result.getError()).isEqualTo(TmdbStop)
+        assertThat(fallbackSeasons).isEmpty()
+    }
+
+}
@@ -0,0 +1,123 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+// Copyright 2026 Uwe Trottmann
+
+package com.battlelancer.seriesguide.util
+
+import com.google.common.truth.Truth.assertThat
+import mockwebserver3.MockResponse
+import mockwebserver3.MockWebServer
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okio.Buffer
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class PosterCacheTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private fun poster(size: Int) = Buffer().write(ByteArray(size))
+
+    @Test
+    fun putAndGet() {
+        val cache = PosterCache(folder.newFolder(), 100)
+        assertThat(cache.get(URL_1)).isNull()
+
+        cache.put(URL_1, poster(10))
+
+        assertThat(cache.contains(URL_1)).isTrue()
+        assertThat(cache.get(URL_1)!!.length()).isEqualTo(10)
+        assertThat(cache.contains(URL_2)).isFalse()
+    }
+
+    @Test
+    fun put_doesNotEvict() {
+        val cache = PosterCache(folder.newFolder(), 100)
+        assertThat(cache.put(URL_1, poster(50))).isTrue()
+        assertThat(cache.put(URL_2, poster(40))).isTrue()
+        assertThat(cache.hasSpace()).isTrue()
+
+        assertThat(cache.put(URL_3, poster(40))).isFalse()
+
+        assertThat(cache.contains(URL_1)).isTrue()
+        assertThat(cache.contains(URL_2)).isTrue()
+        assertThat(cache.contains(URL_3)).isFalse()
+
+        // Replacing a poster only needs space for the difference.
+        assertThat(cache.put(URL_1, poster(60))).isTrue()
+        assertThat(cache.hasSpace()).isFalse()
+    }
+
+    @Test
+    fun smallerMaxSize_evictsLeastRecentlyUsed() {
+        val directory = folder.newFolder()
+        val cache = PosterCache(directory, 100)
+        cache.put(URL_1, poster(50))
+        cache.put(URL_2, poster(40))
+        cache.get(URL_1)!!.setLastModified(1000)
+
+        val smallerCache = PosterCache(directory, 50)
+
+        assertThat(smallerCache.hasSpace()).isTrue()
+        assertThat(smallerCache.contains(URL_1)).isFalse()
+        assertThat(smallerCache.contains(URL_2)).isTrue()
+    }
+
+    @Test
+    fun retainOnly() {
+        val cache = PosterCache(folder.newFolder(), 100)
+        cache.put(URL_1, poster(10))
+        cache.put(URL_2, poster(10))
+
+        cache.retainOnly(listOf(URL_2, URL_3))
+
+        assertThat(cache.contains(URL_1)).isFalse()
+        assertThat(cache.contains(URL_2)).isTrue()
+    }
+
+    @Test
+    fun interceptor_cachedPosterWithoutNetwork() {
+        MockWebServer().use { server ->
+            server.start()
+            val url = server.url("/poster.jpg").toString()
+            val cache = PosterCache(folder.newFolder(), 100)
+            cache.put(url, Buffer().writeUtf8("cached"))
+
+            val body = client(cache).newCall(Request.Builder().url(url).build()).execute()
+                .use { it.body.string() }
+
+            assertThat(body).isEqualTo("cached")
+            assertThat(server.requestCount).isEqualTo(0)
+        }
+    }
+
+    @Test
+    fun interceptor_notCachedPosterFromNetwork() {
+        MockWebServer().use { server ->
+            server.start()
+            server.enqueue(MockResponse.Builder().body("network").build())
+            val url = server.url("/poster.jpg").toString()
+            val cache = PosterCache(folder.newFolder(), 100)
+
+            val body = client(cache).newCall(Request.Builder().url(url).build()).execute()
+                .use { it.body.string() }
+
+            assertThat(body).isEqualTo("network")
+            assertThat(server.requestCount).isEqualTo(1)
+            // Only pre-warming adds posters.
+            assertThat(cache.contains(url)).isFalse()
+        }
+    }
+
+    private fun client(cache: PosterCache) = OkHttpClient.Builder()
+        .addInterceptor(PosterCacheInterceptor(cache))
+        .build()
+
+    companion object {
+        private const val URL_1 = "https://example.com/1.jpg"
+        private const val URL_2 = "https://example.com/2.jpg"
+        private const val URL_3 = "https://example.com/3.jpg"
+    }
+}